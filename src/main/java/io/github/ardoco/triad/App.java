@@ -11,6 +11,7 @@ import java.util.List;
 
 import io.github.ardoco.triad.ir.JSD;
 import io.github.ardoco.triad.ir.LSI;
+import io.github.ardoco.triad.ir.LuceneVSM;
 import io.github.ardoco.triad.ir.SingleLink;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -80,6 +81,9 @@ public class App {
                 case "JSD":
                     irModel = new JSD();
                     break;
+                case "LUCENE":
+                    irModel = new LuceneVSM();
+                    break;
                 default:
                     logger.error("Unrecognized IR MODEL: {}", config.getIrMethod());
                     return;
@@ -189,7 +193,7 @@ public class App {
     private static void evaluateAndLog(
             String approachName, SimilarityMatrix results, GoldStandard goldStandard, Project project)
             throws IOException {
-        Evaluation.PRF prf = Evaluation.calculatePRF(results.getAllLinks(), goldStandard);
+        Evaluation.PRF prf = Evaluation.calculatePRF(results, goldStandard);
         double map = Evaluation.calculateMAP(results, goldStandard);
 
         logger.info("Results for: {}", approachName);
@@ -2,6 +2,7 @@
 package io.github.ardoco.triad.evaluation;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -50,6 +51,32 @@ public class Evaluation {
                 classificationResult.getPrecision(), classificationResult.getRecall(), classificationResult.getF1());
     }
 
+    /**
+     * Calculates precision, recall, and F1-score for all links present in the similarity matrix without
+     * materializing them: retrieved links are counted per cell, and only the gold links are looked up in the matrix.
+     * Gives the same result as {@link #calculatePRF(List, GoldStandard)} on {@link SimilarityMatrix#getAllLinks()},
+     * for matrices too large to flatten.
+     *
+     * @param results the similarity matrix containing retrieved links.
+     * @param goldStandard the gold standard for comparison.
+     * @return a PRF record containing the calculated metrics.
+     */
+    public static PRF calculatePRF(SimilarityMatrix results, GoldStandard goldStandard) {
+        long retrieved = results.numLinks();
+        long correct = 0;
+        for (SingleLink link : goldStandard.getLinks()) {
+            int row = results.getSourceIndex(link.getSourceArtifactId());
+            int column = results.getTargetIndex(link.getTargetArtifactId());
+            if (row >= 0 && column >= 0 && results.hasScore(row, column)) {
+                correct++;
+            }
+        }
+        int totalRelevant = goldStandard.getTotalRelevantLinks();
+        double precision = retrieved == 0 ? 0.0 : (double) correct / retrieved;
+        double recall = totalRelevant == 0 ? 0.0 : (double) correct / totalRelevant;
+        return new PRF(precision, recall, calculateFMeasure(precision, recall));
+    }
+
     public static double calculatePrecision(List<SingleLink> retrieved, GoldStandard gold) {
         if (retrieved.isEmpty()) {
             return 0.0;
@@ -129,25 +156,20 @@ public class Evaluation {
      */
     public static List<Double> getPrecisionAtRecallLevels(
             SimilarityMatrix similarityMatrix, GoldStandard gold, int levels) {
-        List<SingleLink> allLinks = similarityMatrix.getAllLinks();
-        allLinks.sort(Comparator.comparingDouble(SingleLink::getScore).reversed());
-
         int totalRelevant = gold.getTotalRelevantLinks();
         if (totalRelevant == 0) {
             return Collections.nCopies(levels, 0.0);
         }
 
-        ArrayList<Double> recalls = new ArrayList<>();
-        ArrayList<Double> precisions = new ArrayList<>();
-        int correctRetrieved = 0;
+        // Rank of each retrieved gold link in the list of all links sorted by descending score (stable, so ties keep
+        // row-major order), computed in one pass over the matrix instead of sorting every link.
+        long[] hitPositions = rankGoldLinks(similarityMatrix, gold);
 
-        for (int i = 0; i < allLinks.size(); i++) {
-            SingleLink link = allLinks.get(i);
-            if (gold.isLink(link.getSourceArtifactId(), link.getTargetArtifactId())) {
-                correctRetrieved++;
-            }
-            recalls.add((double) correctRetrieved / totalRelevant);
-            precisions.add((double) correctRetrieved / (i + 1));
+        // The precision at recall c / totalRelevant peaks where the c-th gold link is retrieved, so the
+        // interpolated precision at a level is the best c / (rank + 1) over all c reaching that level.
+        double[] bestFrom = new double[hitPositions.length + 1];
+        for (int c = hitPositions.length; c >= 1; c--) {
+            bestFrom[c - 1] = Math.max(bestFrom[c], (double) c / (hitPositions[c - 1] + 1));
         }
 
         List<Double> interpolatedPrecisions = new ArrayList<>();
@@ -155,11 +177,10 @@ public class Evaluation {
             // Adjust recall level calculation based on whether levels is 11 (0-10) or 20 (1-20)
             double recallLevel = (levels == 11) ? i / 10.0 : (i + 1.0) / levels;
             double maxPrecision = 0.0;
-            for (int j = 0; j < recalls.size(); j++) {
-                if (recalls.get(j) >= recallLevel) {
-                    if (precisions.get(j) > maxPrecision) {
-                        maxPrecision = precisions.get(j);
-                    }
+            for (int c = 1; c <= hitPositions.length; c++) {
+                if ((double) c / totalRelevant >= recallLevel) {
+                    maxPrecision = bestFrom[c - 1];
+                    break;
                 }
             }
             interpolatedPrecisions.add(maxPrecision);
@@ -167,6 +188,56 @@ public class Evaluation {
         return interpolatedPrecisions;
     }
 
+    /**
+     * @return the positions of the retrieved gold links in the stable descending-score order of
+     *     {@link SimilarityMatrix#getAllLinks()}, ascending
+     */
+    private static long[] rankGoldLinks(SimilarityMatrix matrix, GoldStandard gold) {
+        // Distinct scores of the retrieved gold links, ascending.
+        double[] hitScores = gold.getLinks().stream()
+                .filter(link -> {
+                    int row = matrix.getSourceIndex(link.getSourceArtifactId());
+                    int column = matrix.getTargetIndex(link.getTargetArtifactId());
+                    return row >= 0 && column >= 0 && matrix.hasScore(row, column);
+                })
+                .mapToDouble(link -> matrix.getScore(link.getSourceArtifactId(), link.getTargetArtifactId()))
+                .sorted()
+                .distinct()
+                .toArray();
+
+        // below[k]: cells scoring above exactly k of the distinct scores, so they outrank the gold links at those k.
+        long[] below = new long[hitScores.length + 1];
+        // Per distinct score: cells with that score seen so far in row-major order.
+        long[] equalSeen = new long[hitScores.length];
+        List<long[]> hits = new ArrayList<>();
+        for (int row = 0; row < matrix.numSources(); row++) {
+            String source = matrix.getSourceName(row);
+            for (int column = 0; column < matrix.numTargets(); column++) {
+                if (!matrix.hasScore(row, column)) {
+                    continue;
+                }
+                int k = Arrays.binarySearch(hitScores, matrix.getScore(row, column));
+                if (k >= 0) {
+                    if (gold.isLink(source, matrix.getTargetName(column))) {
+                        hits.add(new long[] {k, equalSeen[k]});
+                    }
+                    equalSeen[k]++;
+                    below[k]++;
+                } else {
+                    below[-k - 1]++;
+                }
+            }
+        }
+        long[] outranking = new long[hitScores.length + 1];
+        for (int k = hitScores.length - 1; k >= 0; k--) {
+            outranking[k] = outranking[k + 1] + below[k + 1];
+        }
+        return hits.stream()
+                .mapToLong(hit -> outranking[(int) hit[0]] + hit[1])
+                .sorted()
+                .toArray();
+    }
+
     public static double calculatePValue(List<Double> sample1, List<Double> sample2) {
         if (sample1.size() != sample2.size() || sample1.isEmpty()) {
             throw new IllegalArgumentException("Samples must have the same, non-zero size.");
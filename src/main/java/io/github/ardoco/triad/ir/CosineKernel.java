@@ -0,0 +1,290 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Cosine similarity of every query row against every document row, computed as one normalised matrix product.
+ * <p>
+ * Row norms are computed once per matrix. Query rows are then processed in blocks of {@link #BLOCK}: the block is
+ * scattered into a dense, term-major accumulator, and every document row is streamed once against it. The inner
+ * micro-kernel keeps one running dot product per query row of the block in registers, so each stored document
+ * entry is loaded once for {@link #BLOCK} products. Dot products still add up matching terms in ascending term
+ * order, so the scores equal those of a pairwise sparse merge.
+ * <p>
+ * Dense vectors, such as latent LSI coordinates, go through the same blocking with a dense micro-kernel. Query
+ * blocks are independent and are distributed by {@link RowPartitioner}.
+ * <p>
+ * When queries and documents are the same matrix, the similarity matrix is symmetric: only the documents from the
+ * first row of each query block onwards are scored, and the upper triangle is mirrored into the lower one.
+ * <p>
+ * Sparse matrices can alternatively be scored term at a time against an {@link InvertedIndex} of the documents,
+ * which skips document rows that share no term with the query.
+ * <p>
+ * Instead of a similarity matrix, scores can also be streamed into a {@link TopKLinks.Collector}, which only keeps
+ * the best documents of every query.
+ */
+final class CosineKernel {
+    static final int BLOCK = 4;
+
+    private CosineKernel() {}
+
+    /**
+     * Write the cosine similarity of every (query, document) pair into {@code sims}, addressed by row indices.
+     * The sources and targets of {@code sims} must be indexed in the order of the query and document rows.
+     * Pairs where either vector is zero get a score of 0.0 under their trimmed names, as the models always did.
+     * Query blocks are scored on {@code parallelism} threads. Passing the same matrix as queries and documents
+     * computes a self-similarity matrix from its upper triangle.
+     */
+    static void computeSimilarities(
+            TermDocumentMatrix queries, TermDocumentMatrix documents, SimilarityMatrix sims, int parallelism) {
+        Queue<int[]> untrimmedZeros = new ConcurrentLinkedQueue<>();
+        boolean symmetric = queries == documents;
+        score(queries, documents, symmetric, parallelism, (i, j, dot, cross) -> store(
+                sims, i, j, dot, cross, untrimmedZeros));
+        finish(sims, untrimmedZeros, symmetric);
+    }
+
+    /**
+     * Stream the cosine similarity of every (query, document) pair into a top-k collector instead of a matrix.
+     * Pairs where either vector is zero are offered with a score of 0.0.
+     */
+    static void computeTopK(
+            TermDocumentMatrix queries,
+            TermDocumentMatrix documents,
+            TopKLinks.Collector collector,
+            int parallelism) {
+        score(queries, documents, false, parallelism, (i, j, dot, cross) -> collector.offer(
+                i, j, cross != 0.0 ? dot / cross : 0.0));
+    }
+
+    private static void score(
+            TermDocumentMatrix queries,
+            TermDocumentMatrix documents,
+            boolean symmetric,
+            int parallelism,
+            PairSink sink) {
+        double[] queryNorms = norms(queries);
+        double[] documentNorms = norms(documents);
+        RowPartitioner.scoreRows(queries.numDocs(), parallelism, BLOCK, (from, to) -> {
+            double[] accumulator = new double[queries.numTerms() * BLOCK];
+            double[] dots = new double[BLOCK];
+            for (int first = from; first < to; first += BLOCK) {
+                int rows = Math.min(BLOCK, to - first);
+                scatter(queries, first, rows, accumulator, false);
+                for (int j = symmetric ? first : 0; j < documents.numDocs(); j++) {
+                    dotBlock(documents, j, accumulator, dots);
+                    for (int r = 0; r < rows; r++) {
+                        sink.accept(first + r, j, dots[r], queryNorms[first + r] * documentNorms[j]);
+                    }
+                }
+                scatter(queries, first, rows, accumulator, true);
+            }
+        });
+    }
+
+    /**
+     * Variant of {@link #computeSimilarities(TermDocumentMatrix, TermDocumentMatrix, SimilarityMatrix, int)} that
+     * scores every query against an {@link InvertedIndex} of the documents, so only documents sharing a term with
+     * the query are visited. Scores are identical to the blocked product.
+     */
+    static void computeSimilaritiesByPostings(
+            TermDocumentMatrix queries, TermDocumentMatrix documents, SimilarityMatrix sims, int parallelism) {
+        Queue<int[]> untrimmedZeros = new ConcurrentLinkedQueue<>();
+        boolean symmetric = queries == documents;
+        scoreByPostings(queries, documents, symmetric, parallelism, (i, j, dot, cross) -> store(
+                sims, i, j, dot, cross, untrimmedZeros));
+        finish(sims, untrimmedZeros, symmetric);
+    }
+
+    private static void scoreByPostings(
+            TermDocumentMatrix queries,
+            TermDocumentMatrix documents,
+            boolean symmetric,
+            int parallelism,
+            PairSink sink) {
+        double[] queryNorms = norms(queries);
+        double[] documentNorms = norms(documents);
+        InvertedIndex index = new InvertedIndex(documents);
+        RowPartitioner.scoreRows(queries.numDocs(), parallelism, 1, (from, to) -> {
+            double[] dots = new double[index.numDocs()];
+            for (int i = from; i < to; i++) {
+                index.accumulate(queries, i, dots);
+                for (int j = symmetric ? i : 0; j < dots.length; j++) {
+                    sink.accept(i, j, dots[j], queryNorms[i] * documentNorms[j]);
+                }
+                Arrays.fill(dots, 0.0);
+            }
+        });
+    }
+
+    /**
+     * Dense variant of {@link #computeSimilarities(TermDocumentMatrix, TermDocumentMatrix, SimilarityMatrix, int)}
+     * for vectors of equal length, such as latent document coordinates. Passing the same array as queries and
+     * documents computes a self-similarity matrix from its upper triangle.
+     */
+    static void computeSimilarities(double[][] queries, double[][] documents, SimilarityMatrix sims, int parallelism) {
+        Queue<int[]> untrimmedZeros = new ConcurrentLinkedQueue<>();
+        boolean symmetric = queries == documents;
+        score(queries, documents, symmetric, parallelism, (i, j, dot, cross) -> store(
+                sims, i, j, dot, cross, untrimmedZeros));
+        finish(sims, untrimmedZeros, symmetric);
+    }
+
+    /**
+     * Dense variant of {@link #computeTopK(TermDocumentMatrix, TermDocumentMatrix, TopKLinks.Collector, int)}.
+     */
+    static void computeTopK(double[][] queries, double[][] documents, TopKLinks.Collector collector, int parallelism) {
+        score(queries, documents, false, parallelism, (i, j, dot, cross) -> collector.offer(
+                i, j, cross != 0.0 ? dot / cross : 0.0));
+    }
+
+    private static void score(
+            double[][] queries, double[][] documents, boolean symmetric, int parallelism, PairSink sink) {
+        double[] queryNorms = norms(queries);
+        double[] documentNorms = norms(documents);
+        double[] zero = new double[queries.length == 0 ? 0 : queries[0].length];
+        RowPartitioner.scoreRows(queries.length, parallelism, BLOCK, (from, to) -> {
+            double[] dots = new double[BLOCK];
+            for (int first = from; first < to; first += BLOCK) {
+                int rows = Math.min(BLOCK, to - first);
+                double[] q0 = queries[first];
+                double[] q1 = rows > 1 ? queries[first + 1] : zero;
+                double[] q2 = rows > 2 ? queries[first + 2] : zero;
+                double[] q3 = rows > 3 ? queries[first + 3] : zero;
+                for (int j = symmetric ? first : 0; j < documents.length; j++) {
+                    denseDotBlock(q0, q1, q2, q3, documents[j], dots);
+                    for (int r = 0; r < rows; r++) {
+                        sink.accept(first + r, j, dots[r], queryNorms[first + r] * documentNorms[j]);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Receives the dot product and the product of norms of one scored (query, document) pair.
+     */
+    private interface PairSink {
+        void accept(int i, int j, double dot, double cross);
+    }
+
+    private static void store(
+            SimilarityMatrix sims, int i, int j, double dot, double cross, Queue<int[]> untrimmedZeros) {
+        if (cross != 0.0) {
+            sims.storeScore(i, j, dot / cross);
+        } else if (isTrimmed(sims.getSourceName(i)) && isTrimmed(sims.getTargetName(j))) {
+            sims.storeScore(i, j, 0.0);
+        } else {
+            untrimmedZeros.add(new int[] {i, j});
+        }
+    }
+
+    private static void finish(SimilarityMatrix sims, Queue<int[]> untrimmedZeros, boolean symmetric) {
+        if (symmetric) {
+            sims.mirrorUpperTriangle();
+        }
+        sims.refreshCounts();
+        // Zero links of padded ids may introduce new rows or columns, so they are added on this thread.
+        for (int[] pair : untrimmedZeros) {
+            if (symmetric && pair[0] > pair[1]) continue;
+            sims.addLink(sims.getSourceName(pair[0]).trim(), sims.getTargetName(pair[1]).trim(), 0.0);
+            if (symmetric) {
+                sims.addLink(sims.getSourceName(pair[1]).trim(), sims.getTargetName(pair[0]).trim(), 0.0);
+            }
+        }
+    }
+
+    private static boolean isTrimmed(String name) {
+        return name.length() == name.trim().length();
+    }
+
+    /**
+     * @return the Euclidean norm of every row
+     */
+    static double[] norms(TermDocumentMatrix matrix) {
+        double[] norms = new double[matrix.numDocs()];
+        for (int i = 0; i < matrix.numDocs(); i++) {
+            double squared = 0.0;
+            for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                double value = matrix.valueAt(k);
+                squared += value * value;
+            }
+            norms[i] = Math.sqrt(squared);
+        }
+        return norms;
+    }
+
+    /**
+     * @return the Euclidean norm of every dense row
+     */
+    static double[] norms(double[][] vectors) {
+        double[] norms = new double[vectors.length];
+        for (int i = 0; i < vectors.length; i++) {
+            double squared = 0.0;
+            for (double value : vectors[i]) {
+                squared += value * value;
+            }
+            norms[i] = Math.sqrt(squared);
+        }
+        return norms;
+    }
+
+    /**
+     * Copy (or, when clearing, zero) the rows {@code first .. first + rows} into the term-major accumulator, where
+     * the weight of term {@code t} in block row {@code r} lives at {@code t * BLOCK + r}.
+     */
+    private static void scatter(TermDocumentMatrix queries, int first, int rows, double[] accumulator, boolean clear) {
+        for (int r = 0; r < rows; r++) {
+            for (int k = queries.rowStart(first + r); k < queries.rowEnd(first + r); k++) {
+                accumulator[queries.termAt(k) * BLOCK + r] = clear ? 0.0 : queries.valueAt(k);
+            }
+        }
+    }
+
+    /**
+     * Micro-kernel: dot products of one document row with all {@link #BLOCK} query rows of the accumulator.
+     */
+    private static void dotBlock(TermDocumentMatrix documents, int j, double[] accumulator, double[] dots) {
+        double d0 = 0.0;
+        double d1 = 0.0;
+        double d2 = 0.0;
+        double d3 = 0.0;
+        for (int k = documents.rowStart(j); k < documents.rowEnd(j); k++) {
+            int base = documents.termAt(k) * BLOCK;
+            double value = documents.valueAt(k);
+            d0 += accumulator[base] * value;
+            d1 += accumulator[base + 1] * value;
+            d2 += accumulator[base + 2] * value;
+            d3 += accumulator[base + 3] * value;
+        }
+        dots[0] = d0;
+        dots[1] = d1;
+        dots[2] = d2;
+        dots[3] = d3;
+    }
+
+    /**
+     * Dense micro-kernel: dot products of one document vector with four query vectors.
+     */
+    private static void denseDotBlock(
+            double[] q0, double[] q1, double[] q2, double[] q3, double[] document, double[] dots) {
+        double d0 = 0.0;
+        double d1 = 0.0;
+        double d2 = 0.0;
+        double d3 = 0.0;
+        for (int c = 0; c < document.length; c++) {
+            double value = document[c];
+            d0 += q0[c] * value;
+            d1 += q1[c] * value;
+            d2 += q2[c] * value;
+            d3 += q3[c] * value;
+        }
+        dots[0] = d0;
+        dots[1] = d1;
+        dots[2] = d2;
+        dots[3] = d3;
+    }
+}
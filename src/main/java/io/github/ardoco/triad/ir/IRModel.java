@@ -2,11 +2,47 @@
 package io.github.ardoco.triad.ir;
 
 public interface IRModel {
-    SimilarityMatrix Compute(ArtifactsCollection source, ArtifactsCollection target);
+    /**
+     * Compute similarities between source and target using a vocabulary private to this call.
+     */
+    default SimilarityMatrix Compute(ArtifactsCollection source, ArtifactsCollection target) {
+        return Compute(source, target, new TermDictionary());
+    }
 
-    String getModelName();
+    /**
+     * Compute similarities between source and target, interning all terms into the given dictionary.
+     * Sharing one dictionary across a run keeps term indices stable, so matrices never need re-aligning.
+     */
+    default SimilarityMatrix Compute(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
+        return ComputeResult(source, target, dictionary).similarities();
+    }
+
+    /**
+     * Compute similarities between source and target together with the term-document matrices they were scored
+     * from. Implementations keep no state between calls, so one model can serve concurrent pipeline stages.
+     */
+    IRResult ComputeResult(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary);
 
-    TermDocumentMatrix getTermDocumentMatrixOfQueries();
+    /**
+     * Compute only the best links of every source: at most {@code k} targets scoring at least
+     * {@code relativeThreshold} times the source's best score. Models that can stream their scores override this to
+     * keep {@code sources × k} candidates instead of materializing the full similarity matrix.
+     */
+    default TopKLinks ComputeTopK(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            TermDictionary dictionary,
+            int k,
+            double relativeThreshold) {
+        return TopKLinks.of(Compute(source, target, dictionary), k, relativeThreshold);
+    }
+
+    String getModelName();
 
-    TermDocumentMatrix getTermDocumentMatrixOfDocuments();
+    /**
+     * @return number of threads used to score query rows, {@code -Dtriad.ir.parallelism} by default
+     */
+    default int getParallelism() {
+        return RowPartitioner.configuredParallelism();
+    }
 }
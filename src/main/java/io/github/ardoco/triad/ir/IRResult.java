@@ -0,0 +1,13 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+/**
+ * The outcome of one {@link IRModel} computation: the similarity matrix and the term-document matrices its query
+ * (source) and document (target) rows were scored from. A result belongs to its call alone, so a model instance can
+ * serve any number of concurrent calls.
+ *
+ * @param similarities source × target similarity scores
+ * @param queries weighted source rows, as the model scored them
+ * @param documents weighted target rows, as the model scored them
+ */
+public record IRResult(SimilarityMatrix similarities, TermDocumentMatrix queries, TermDocumentMatrix documents) {}
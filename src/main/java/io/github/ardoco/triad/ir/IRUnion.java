@@ -3,10 +3,13 @@ package io.github.ardoco.triad.ir;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Computes a union of IR models by taking the element-wise average of their similarity scores.
  * This class combines VSM, LSI, and JSD models.
+ * Unless {@code -Dtriad.ir.parallelism=1} is set, the three models run concurrently.
  */
 public final class IRUnion {
     private IRUnion() {}
@@ -19,14 +22,101 @@ public final class IRUnion {
      * @return element-wise average of per-model similarity scores
      */
     public static SimilarityMatrix computeUnion(ArtifactsCollection source, ArtifactsCollection target) {
-        IRModel vsm = new VSM();
-        IRModel lsi = new LSI();
-        IRModel jsd = new JSD();
+        return computeUnion(source, target, new TermDictionary());
+    }
 
-        SimilarityMatrix sV = vsm.Compute(source, target);
-        SimilarityMatrix sL = lsi.Compute(source, target);
-        SimilarityMatrix sJ = jsd.Compute(source, target);
+    /**
+     * Compute the average union of VSM, LSI, and JSD similarities over a shared vocabulary.
+     *
+     * @param source source artifacts
+     * @param target target artifacts
+     * @param dictionary term dictionary shared by all three models
+     * @return element-wise average of per-model similarity scores
+     */
+    public static SimilarityMatrix computeUnion(
+            ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
+        return computeUnion(source, target, dictionary, null);
+    }
 
+    /**
+     * Compute the average union of VSM, LSI, and JSD similarities, with LSI folding the artifacts into a shared
+     * latent space instead of decomposing them on every call.
+     *
+     * @param source source artifacts
+     * @param target target artifacts
+     * @param dictionary term dictionary shared by all three models
+     * @param latentSpace decomposition shared by all LSI calls of a run, or null to decompose per call
+     * @return element-wise average of per-model similarity scores
+     */
+    public static SimilarityMatrix computeUnion(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            TermDictionary dictionary,
+            LatentSpace latentSpace) {
+        int parallelism = RowPartitioner.configuredParallelism();
+        return computeUnion(
+                source,
+                target,
+                dictionary,
+                new VSM(parallelism),
+                new LSI(parallelism, latentSpace),
+                new JSD(parallelism));
+    }
+
+    /**
+     * Compute the average union of the given VSM, LSI, and JSD models. Models keep no state between calls, so a run
+     * can create them once and pass the same instances to every union, also from concurrent pipeline stages.
+     *
+     * @param source source artifacts
+     * @param target target artifacts
+     * @param dictionary term dictionary shared by all three models
+     * @param vsm vector space model
+     * @param lsi latent semantic indexing model
+     * @param jsd Jensen-Shannon model
+     * @return element-wise average of per-model similarity scores
+     */
+    public static SimilarityMatrix computeUnion(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            TermDictionary dictionary,
+            IRModel vsm,
+            IRModel lsi,
+            IRModel jsd) {
+        int parallelism = RowPartitioner.configuredParallelism();
+        SimilarityMatrix sV;
+        SimilarityMatrix sL;
+        SimilarityMatrix sJ;
+        if (parallelism <= 1) {
+            sV = vsm.Compute(source, target, dictionary);
+            sL = lsi.Compute(source, target, dictionary);
+            sJ = jsd.Compute(source, target, dictionary);
+        } else {
+            // Intern all terms in the order VSM would, so term ids do not depend on which model reaches a term first.
+            ArtifactsCollection bothSourceAndTarget = new ArtifactsCollection();
+            bothSourceAndTarget.putAll(source);
+            bothSourceAndTarget.putAll(target);
+            TermDocumentMatrix.internTerms(bothSourceAndTarget, dictionary);
+
+            // The models build their matrices in the caller's term arena and scratch store, which outlive the joins.
+            ForkJoinPool pool = RowPartitioner.pool(parallelism);
+            ForkJoinTask<SimilarityMatrix> vsmTask =
+                    pool.submit(ThreadScope.propagate(() -> vsm.Compute(source, target, dictionary)));
+            ForkJoinTask<SimilarityMatrix> lsiTask =
+                    pool.submit(ThreadScope.propagate(() -> lsi.Compute(source, target, dictionary)));
+            ForkJoinTask<SimilarityMatrix> jsdTask =
+                    pool.submit(ThreadScope.propagate(() -> jsd.Compute(source, target, dictionary)));
+            sV = vsmTask.join();
+            sL = lsiTask.join();
+            sJ = jsdTask.join();
+        }
+
+        return average(sV, sL, sJ);
+    }
+
+    /**
+     * Element-wise average of a VSM, LSI and JSD similarity matrix; pairs averaging to zero are left out.
+     */
+    static SimilarityMatrix average(SimilarityMatrix sV, SimilarityMatrix sL, SimilarityMatrix sJ) {
         Set<String> sources = new HashSet<>();
         sources.addAll(sV.getSourceArtifacts());
         sources.addAll(sL.getSourceArtifacts());
@@ -37,7 +127,7 @@ public final class IRUnion {
         targets.addAll(sL.getTargetArtifacts());
         targets.addAll(sJ.getTargetArtifacts());
 
-        SimilarityMatrix out = new SimilarityMatrix();
+        SimilarityMatrix out = new SimilarityMatrix(sources, targets);
         for (String s : sources) {
             for (String t : targets) {
                 double v = sV.getScore(s, t);
@@ -0,0 +1,289 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.ardoco.triad.model.Artifact;
+
+/**
+ * VSM similarities between a source and a target collection that are kept up to date while single artifacts are
+ * added, updated or removed, instead of recomputing every matrix from scratch.
+ * <p>
+ * The engine keeps the term frequencies of every artifact of the union, the document frequencies of all terms and
+ * the TF-IDF vector each artifact was last scored with, together with the IDF values it was weighted with. A change
+ * only touches the term frequencies of the changed artifact and the document frequencies of its terms. The next
+ * {@link #getSimilarities()} call re-weights every changed artifact, and every other artifact whose vector drifted
+ * by more than the tolerance under the new IDF, measured as {@code ||w_new - w_old|| / ||w_old||}. Only the rows and
+ * columns of re-weighted artifacts are scored again. With a tolerance of 0.0, every artifact whose IDF changed is
+ * re-weighted and the scores equal those of {@link VSM} on the current collections; adding or removing an artifact
+ * changes the IDF of every term, so a small tolerance is what keeps those updates incremental.
+ * <p>
+ * The default tolerance is {@code -Dtriad.incremental.tolerance} (0.01).
+ */
+public final class IncrementalVSM {
+    static final String TOLERANCE_PROPERTY = "triad.incremental.tolerance";
+
+    private static final Logger logger = LoggerFactory.getLogger(IncrementalVSM.class);
+
+    private final TermDictionary dictionary;
+    private final double tolerance;
+    private final Set<String> sources = new TreeSet<>();
+    private final Set<String> targets = new TreeSet<>();
+    private final Map<String, TermVector> vectors = new HashMap<>();
+    private final Set<String> changed = new HashSet<>();
+    private Set<String> reweighted = Set.of();
+    private int[] df = new int[0];
+    private SimilarityMatrix sims;
+    private boolean removed;
+
+    /**
+     * Term frequencies of one artifact, and the TF-IDF weights and norm it was last scored with.
+     */
+    private static final class TermVector {
+        final int[] terms;
+        final double[] tf;
+        final double[] idf;
+        final double[] weights;
+        double norm;
+
+        TermVector(int[] terms, double[] tf) {
+            this.terms = terms;
+            this.tf = tf;
+            this.idf = new double[terms.length];
+            this.weights = new double[terms.length];
+        }
+    }
+
+    /**
+     * Index two collections with the configured drift tolerance.
+     */
+    public IncrementalVSM(ArtifactsCollection source, ArtifactsCollection target) {
+        this(source, target, new TermDictionary(), Double.parseDouble(System.getProperty(TOLERANCE_PROPERTY, "0.01")));
+    }
+
+    /**
+     * Index two collections.
+     *
+     * @param source source artifacts
+     * @param target target artifacts
+     * @param dictionary vocabulary all artifacts are interned into
+     * @param tolerance relative change of an unchanged artifact's TF-IDF vector above which it is scored again
+     */
+    public IncrementalVSM(
+            ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary, double tolerance) {
+        this.dictionary = dictionary;
+        this.tolerance = tolerance;
+        ArtifactsCollection bothSourceAndTarget = new ArtifactsCollection();
+        bothSourceAndTarget.putAll(source);
+        bothSourceAndTarget.putAll(target);
+        for (Artifact artifact : bothSourceAndTarget.values()) {
+            put(artifact);
+        }
+        sources.addAll(source.keySet());
+        targets.addAll(target.keySet());
+        sims = new SimilarityMatrix(sources, targets);
+    }
+
+    /**
+     * Add a source artifact, or replace the text of an artifact with the same identifier.
+     */
+    public void addSource(Artifact artifact) {
+        put(artifact);
+        sources.add(artifact.getIdentifier());
+    }
+
+    /**
+     * Add a target artifact, or replace the text of an artifact with the same identifier.
+     */
+    public void addTarget(Artifact artifact) {
+        put(artifact);
+        targets.add(artifact.getIdentifier());
+    }
+
+    /**
+     * Replace the text of a source or target artifact.
+     *
+     * @throws IllegalArgumentException if no artifact with this identifier is indexed
+     */
+    public void update(Artifact artifact) {
+        if (!vectors.containsKey(artifact.getIdentifier())) {
+            throw new IllegalArgumentException("Unknown artifact " + artifact.getIdentifier());
+        }
+        put(artifact);
+    }
+
+    /**
+     * Remove an artifact from the sources and targets.
+     */
+    public void remove(String id) {
+        if (unindex(id)) {
+            sources.remove(id);
+            targets.remove(id);
+            removed = true;
+        }
+    }
+
+    /**
+     * Bring the scores up to date with all changes since the last call.
+     *
+     * @return the current source × target similarities, which the engine keeps updating: they are only valid until
+     *     the next change, so take a {@link SimilarityMatrix#deepCopy()} to keep them
+     */
+    public SimilarityMatrix getSimilarities() {
+        if (removed) {
+            sims = retain(sims);
+            removed = false;
+        }
+        reweighted = new HashSet<>(changed);
+        for (Map.Entry<String, TermVector> entry : vectors.entrySet()) {
+            if (!changed.contains(entry.getKey()) && drift(entry.getValue()) > tolerance) {
+                reweighted.add(entry.getKey());
+            }
+        }
+        for (String id : reweighted) {
+            weigh(vectors.get(id));
+        }
+        changed.clear();
+
+        for (String id : reweighted) {
+            TermVector vector = vectors.get(id);
+            if (sources.contains(id)) {
+                for (String target : targets) {
+                    sims.setScore(id, target, score(vector, vectors.get(target)));
+                }
+            }
+            if (targets.contains(id)) {
+                for (String source : sources) {
+                    // A pair of two re-weighted artifacts was scored with the row of the source.
+                    if (!reweighted.contains(source)) {
+                        sims.setScore(source, id, score(vectors.get(source), vector));
+                    }
+                }
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Re-weighted {} of {} artifacts", reweighted.size(), vectors.size());
+        }
+        return sims;
+    }
+
+    /**
+     * @return the artifacts whose weights the last {@link #getSimilarities()} call brought up to date
+     */
+    Set<String> getReweighted() {
+        return Set.copyOf(reweighted);
+    }
+
+    private void put(Artifact artifact) {
+        String id = artifact.getIdentifier();
+        unindex(id);
+
+        ArtifactsCollection single = new ArtifactsCollection();
+        single.put(id, artifact);
+        TermDocumentMatrix counts = new TermDocumentMatrix(single, dictionary);
+        int[] terms = new int[counts.rowEnd(0)];
+        double[] tf = new double[terms.length];
+        double sum = 0.0;
+        for (int k = 0; k < terms.length; k++) {
+            sum += counts.valueAt(k);
+        }
+        for (int k = 0; k < terms.length; k++) {
+            terms[k] = counts.termAt(k);
+            tf[k] = sum == 0.0 ? counts.valueAt(k) : counts.valueAt(k) / sum;
+        }
+        if (dictionary.size() > df.length) {
+            df = Arrays.copyOf(df, Math.max(dictionary.size(), 2 * df.length));
+        }
+        for (int term : terms) {
+            df[term]++;
+        }
+        vectors.put(id, new TermVector(terms, tf));
+        changed.add(id);
+    }
+
+    private boolean unindex(String id) {
+        TermVector vector = vectors.remove(id);
+        if (vector == null) {
+            return false;
+        }
+        for (int term : vector.terms) {
+            df[term]--;
+        }
+        changed.remove(id);
+        return true;
+    }
+
+    /**
+     * Drop the rows and columns of removed artifacts, keeping all other scores.
+     */
+    private SimilarityMatrix retain(SimilarityMatrix matrix) {
+        SimilarityMatrix retained = new SimilarityMatrix(sources, targets);
+        for (String source : sources) {
+            int row = matrix.getSourceIndex(source);
+            for (String target : targets) {
+                int column = matrix.getTargetIndex(target);
+                if (row != -1 && column != -1 && matrix.hasScore(row, column)) {
+                    retained.setScore(source, target, matrix.getScore(row, column));
+                }
+            }
+        }
+        return retained;
+    }
+
+    private double idf(int term) {
+        return Math.log(vectors.size() / (double) df[term]);
+    }
+
+    private void weigh(TermVector vector) {
+        double squared = 0.0;
+        for (int k = 0; k < vector.terms.length; k++) {
+            vector.idf[k] = idf(vector.terms[k]);
+            vector.weights[k] = vector.tf[k] * vector.idf[k];
+            squared += vector.weights[k] * vector.weights[k];
+        }
+        vector.norm = Math.sqrt(squared);
+    }
+
+    /**
+     * @return the relative change of a vector's weights under the current IDF
+     */
+    private double drift(TermVector vector) {
+        double squared = 0.0;
+        for (int k = 0; k < vector.terms.length; k++) {
+            double delta = vector.tf[k] * (idf(vector.terms[k]) - vector.idf[k]);
+            squared += delta * delta;
+        }
+        if (vector.norm == 0.0) {
+            return squared == 0.0 ? 0.0 : Double.POSITIVE_INFINITY;
+        }
+        return Math.sqrt(squared) / vector.norm;
+    }
+
+    /**
+     * Cosine of two weighted vectors, adding up shared terms in ascending term order like {@link VSM}.
+     */
+    private static double score(TermVector source, TermVector target) {
+        double dot = 0.0;
+        int a = 0;
+        int b = 0;
+        while (a < source.terms.length && b < target.terms.length) {
+            if (source.terms[a] == target.terms[b]) {
+                dot += source.weights[a++] * target.weights[b++];
+            } else if (source.terms[a] < target.terms[b]) {
+                a++;
+            } else {
+                b++;
+            }
+        }
+        double cross = source.norm * target.norm;
+        return cross != 0.0 ? dot / cross : 0.0;
+    }
+}
@@ -0,0 +1,103 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Arrays;
+
+/**
+ * Postings lists of a term-document matrix: for every term, the documents containing it and their weights, in
+ * document order. The lists are stored back to back in two flat arrays, addressed by per-term offsets.
+ * <p>
+ * A query row is scored term at a time: the postings of each of its terms are added into one accumulator slot per
+ * document, so documents that share no term with the query are never visited. Query terms are processed in
+ * ascending order, which adds up the products of every document in the same order as a pairwise sparse merge.
+ */
+final class InvertedIndex {
+    private final int numDocs;
+    private final int[] termStarts;
+    private final int[] documents;
+    private final double[] weights;
+
+    /**
+     * Invert the rows of a matrix.
+     */
+    InvertedIndex(TermDocumentMatrix matrix) {
+        int numTerms = 0;
+        for (int k = 0; k < matrix.numNonZeros(); k++) {
+            numTerms = Math.max(numTerms, matrix.termAt(k) + 1);
+        }
+        this.numDocs = matrix.numDocs();
+        this.termStarts = new int[numTerms + 1];
+        for (int k = 0; k < matrix.numNonZeros(); k++) {
+            termStarts[matrix.termAt(k) + 1]++;
+        }
+        for (int term = 0; term < numTerms; term++) {
+            termStarts[term + 1] += termStarts[term];
+        }
+        this.documents = new int[matrix.numNonZeros()];
+        this.weights = new double[matrix.numNonZeros()];
+        int[] next = Arrays.copyOf(termStarts, numTerms);
+        for (int j = 0; j < numDocs; j++) {
+            for (int k = matrix.rowStart(j); k < matrix.rowEnd(j); k++) {
+                int position = next[matrix.termAt(k)]++;
+                documents[position] = j;
+                weights[position] = matrix.valueAt(k);
+            }
+        }
+    }
+
+    /**
+     * @return number of indexed documents; accumulators must have at least this length
+     */
+    int numDocs() {
+        return numDocs;
+    }
+
+    /**
+     * @return number of indexed terms; larger term indices have no postings
+     */
+    int numTerms() {
+        return termStarts.length - 1;
+    }
+
+    /**
+     * @return position of the first posting of a term
+     */
+    int postingsStart(int term) {
+        return termStarts[term];
+    }
+
+    /**
+     * @return position after the last posting of a term
+     */
+    int postingsEnd(int term) {
+        return termStarts[term + 1];
+    }
+
+    /**
+     * @return document row of the posting at {@code position}
+     */
+    int documentAt(int position) {
+        return documents[position];
+    }
+
+    /**
+     * @return weight of the posting at {@code position}
+     */
+    double weightAt(int position) {
+        return weights[position];
+    }
+
+    /**
+     * Add the dot product of query row {@code i} with every indexed document to {@code dots}.
+     */
+    void accumulate(TermDocumentMatrix queries, int i, double[] dots) {
+        for (int k = queries.rowStart(i); k < queries.rowEnd(i); k++) {
+            int term = queries.termAt(k);
+            if (term >= numTerms()) break;
+            double value = queries.valueAt(k);
+            for (int p = termStarts[term]; p < termStarts[term + 1]; p++) {
+                dots[documents[p]] += value * weights[p];
+            }
+        }
+    }
+}
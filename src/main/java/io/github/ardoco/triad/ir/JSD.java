@@ -1,113 +1,199 @@
 /* Licensed under MIT 2025. */
 package io.github.ardoco.triad.ir;
 
-import java.util.Collections;
 import java.util.List;
 
+/**
+ * Jensen-Shannon similarity {@code max(0, 1 - JSD(p, q))} between the term distributions of source and target
+ * artifacts.
+ * <p>
+ * A term that occurs in only one of the two documents contributes exactly half its probability to the divergence
+ * ({@code -(p/2) log(p/2) + (p log p)/2 = p/2} in bits). The divergence therefore starts from half the mass of both
+ * documents, and only the shared terms are visited to swap that contribution for the exact one. Every entry's
+ * {@code p log p} is computed once per matrix, and a pair costs one pass over the target document's non-zero terms
+ * against the scattered source document, without allocating.
+ */
 public class JSD implements IRModel {
-    private TermDocumentMatrix queries;
-    private TermDocumentMatrix documents;
+    private final int parallelism;
+
+    /**
+     * Create a JSD model using the configured parallelism level.
+     */
+    public JSD() {
+        this(RowPartitioner.configuredParallelism());
+    }
+
+    /**
+     * Create a JSD model that scores query rows on the given number of threads.
+     */
+    public JSD(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
 
     @Override
-    public SimilarityMatrix Compute(ArtifactsCollection source, ArtifactsCollection target) {
-        return Compute(new TermDocumentMatrix(source), new TermDocumentMatrix(target));
+    public IRResult ComputeResult(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
+        boolean symmetric = source.equals(target);
+        TermDocumentMatrix sourceMatrix = new TermDocumentMatrix(source, dictionary);
+        return Compute(sourceMatrix, symmetric ? sourceMatrix : new TermDocumentMatrix(target, dictionary), symmetric);
     }
 
-    private SimilarityMatrix Compute(TermDocumentMatrix source, TermDocumentMatrix target) {
+    private IRResult Compute(TermDocumentMatrix source, TermDocumentMatrix target, boolean symmetric) {
         List<TermDocumentMatrix> matrices = TermDocumentMatrix.equalize(source, target);
-        queries = distributionMatrix(matrices.get(0));
-        documents = distributionMatrix(matrices.get(1));
-        SimilarityMatrix sims = new SimilarityMatrix();
-
-        for (int i = 0; i < queries.numDocs(); i++) {
-            LinksList list = new LinksList();
-            for (int j = 0; j < documents.numDocs(); j++) {
-                list.add(new SingleLink(
-                        queries.getDocumentName(i),
-                        documents.getDocumentName(j),
-                        documentSimilarity(getDocument(queries, i), getDocument(documents, j))));
-            }
-            Collections.sort(list, Collections.reverseOrder());
-            for (SingleLink link : list) {
-                sims.addLink(link.getSourceArtifactId(), link.getTargetArtifactId(), link.getScore());
-            }
+        TermDocumentMatrix queries = distributionMatrix(matrices.get(0));
+        TermDocumentMatrix documents = symmetric ? queries : distributionMatrix(matrices.get(1));
+        return new IRResult(computeSimilarities(queries, documents, parallelism), queries, documents);
+    }
+
+    @Override
+    public TopKLinks ComputeTopK(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            TermDictionary dictionary,
+            int k,
+            double relativeThreshold) {
+        List<TermDocumentMatrix> matrices = TermDocumentMatrix.equalize(
+                new TermDocumentMatrix(source, dictionary), new TermDocumentMatrix(target, dictionary));
+        TermDocumentMatrix queries = distributionMatrix(matrices.get(0));
+        TermDocumentMatrix documents = distributionMatrix(matrices.get(1));
+        TopKLinks.Collector collector = new TopKLinks.Collector(
+                queries.getDocumentNames(), documents.getDocumentNames(), k, relativeThreshold);
+        computeTopK(queries, documents, collector, parallelism);
+        return collector.finish();
+    }
+
+    /**
+     * Score every pair of rows of two distribution matrices that share a vocabulary. Passing the same matrix twice
+     * computes a self-similarity matrix from its upper triangle, since the divergence is symmetric.
+     *
+     * @param rows source distributions, one per row
+     * @param columns target distributions, one per row
+     * @param parallelism number of threads scoring source rows
+     */
+    static SimilarityMatrix computeSimilarities(TermDocumentMatrix rows, TermDocumentMatrix columns, int parallelism) {
+        SimilarityMatrix sims = new SimilarityMatrix(rows.getDocumentNames(), columns.getDocumentNames());
+        boolean symmetric = rows == columns;
+        score(rows, columns, symmetric, parallelism, sims::storeScore);
+        if (symmetric) {
+            sims.mirrorUpperTriangle();
         }
+        sims.refreshCounts();
         return sims;
     }
 
-    private double[] getDocument(TermDocumentMatrix matrix, int docIndex) {
-        double[] docVector = new double[matrix.numTerms()];
-        for (int i = 0; i < matrix.numTerms(); i++) {
-            docVector[i] = matrix.getValue(docIndex, i);
-        }
-        return docVector;
+    /**
+     * Stream the similarity of every pair of rows of two distribution matrices into a top-k collector.
+     */
+    static void computeTopK(
+            TermDocumentMatrix rows, TermDocumentMatrix columns, TopKLinks.Collector collector, int parallelism) {
+        score(rows, columns, false, parallelism, collector::offer);
+    }
+
+    private static void score(
+            TermDocumentMatrix rows,
+            TermDocumentMatrix columns,
+            boolean symmetric,
+            int parallelism,
+            ScoreSink sink) {
+        double[] rowPlogp = plogps(rows);
+        double[] columnPlogp = plogps(columns);
+        double[] rowMass = masses(rows);
+        double[] columnMass = masses(columns);
+        int numTerms = Math.max(maxTerm(rows), maxTerm(columns)) + 1;
+        RowPartitioner.scoreRows(rows.numDocs(), parallelism, 1, (from, to) -> {
+            // Scratch rows of the block: the scattered query distribution and its p log p entries.
+            double[] queryValues = new double[numTerms];
+            double[] queryPlogp = new double[numTerms];
+            for (int i = from; i < to; i++) {
+                for (int k = rows.rowStart(i); k < rows.rowEnd(i); k++) {
+                    queryValues[rows.termAt(k)] = rows.valueAt(k);
+                    queryPlogp[rows.termAt(k)] = rowPlogp[k];
+                }
+                for (int j = symmetric ? i : 0; j < columns.numDocs(); j++) {
+                    double divergence = (rowMass[i] + columnMass[j]) / 2;
+                    for (int k = columns.rowStart(j); k < columns.rowEnd(j); k++) {
+                        int term = columns.termAt(k);
+                        if (queryValues[term] == 0.0) continue;
+                        double mixture = 0.5 * (queryValues[term] + columns.valueAt(k));
+                        divergence += (queryPlogp[term] + columnPlogp[k]) / 2 - plogp(mixture) - mixture;
+                    }
+                    sink.accept(i, j, Math.max(0, 1 - divergence));
+                }
+                for (int k = rows.rowStart(i); k < rows.rowEnd(i); k++) {
+                    queryValues[rows.termAt(k)] = 0.0;
+                    queryPlogp[rows.termAt(k)] = 0.0;
+                }
+            }
+        });
     }
 
-    private double documentSimilarity(double[] document1, double[] document2) {
-        double similarity;
-        double[] temp;
-        temp = sumDocument(document1, document2);
-        temp = mulDocument(0.5, temp);
-        similarity = entropy(temp);
-        similarity = similarity - (entropy(document1) + entropy(document2)) / 2;
-        similarity = Math.max(0, 1 - similarity);
-        return similarity;
+    /**
+     * Receives the similarity of one scored (row, column) pair.
+     */
+    private interface ScoreSink {
+        void accept(int i, int j, double score);
     }
 
-    private TermDocumentMatrix distributionMatrix(TermDocumentMatrix matrix) {
+    /**
+     * Normalize every non-empty row of a count matrix in place to a probability distribution.
+     */
+    static TermDocumentMatrix distributionMatrix(TermDocumentMatrix matrix) {
         for (int i = 0; i < matrix.numDocs(); i++) {
-            double[] document = getDocument(matrix, i);
             double sum = 0;
-            for (double v : document) {
-                sum += v;
+            for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                sum += matrix.valueAt(k);
             }
             if (sum > 0) {
-                for (int j = 0; j < document.length; j++) {
-                    matrix.setValue(i, j, document[j] / sum);
+                for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                    matrix.setValueAt(k, matrix.valueAt(k) / sum);
                 }
             }
         }
         return matrix;
     }
 
-    private double entropy(double[] docDistrib) {
-        double entropia = 0;
-        for (double v : docDistrib) {
-            if (v > 0) {
-                entropia = entropia - v * (Math.log(v) / Math.log(2.0));
-            }
+    /**
+     * {@code p log p} of every stored entry, computed once per matrix instead of once per pair.
+     */
+    private static double[] plogps(TermDocumentMatrix matrix) {
+        double[] plogp = new double[matrix.numNonZeros()];
+        for (int k = 0; k < plogp.length; k++) {
+            plogp[k] = plogp(matrix.valueAt(k));
         }
-        return entropia;
+        return plogp;
     }
 
-    private double[] sumDocument(double[] document1, double[] document2) {
-        double[] sum = new double[document1.length];
-        for (int i = 0; i < sum.length; i++) {
-            sum[i] = document1[i] + document2[i];
+    /**
+     * Total probability mass of every document: 1, or 0 for a document without terms.
+     */
+    private static double[] masses(TermDocumentMatrix matrix) {
+        double[] mass = new double[matrix.numDocs()];
+        for (int i = 0; i < matrix.numDocs(); i++) {
+            for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                mass[i] += matrix.valueAt(k);
+            }
         }
-        return sum;
+        return mass;
     }
 
-    private double[] mulDocument(double pScalar, double[] pVector) {
-        double[] mul = new double[pVector.length];
-        for (int i = 0; i < mul.length; i++) {
-            mul[i] = pScalar * pVector[i];
+    private static int maxTerm(TermDocumentMatrix matrix) {
+        int max = -1;
+        for (int k = 0; k < matrix.numNonZeros(); k++) {
+            max = Math.max(max, matrix.termAt(k));
         }
-        return mul;
+        return max;
     }
 
-    @Override
-    public String getModelName() {
-        return "JSD";
+    private static double plogp(double v) {
+        return v > 0 ? v * (Math.log(v) / Math.log(2.0)) : 0.0;
     }
 
     @Override
-    public TermDocumentMatrix getTermDocumentMatrixOfQueries() {
-        return queries;
+    public String getModelName() {
+        return "JSD";
     }
 
     @Override
-    public TermDocumentMatrix getTermDocumentMatrixOfDocuments() {
-        return documents;
+    public int getParallelism() {
+        return parallelism;
     }
 }
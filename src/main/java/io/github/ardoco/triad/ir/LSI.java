@@ -1,93 +1,266 @@
 /* Licensed under MIT 2025. */
 package io.github.ardoco.triad.ir;
 
-import java.util.Collections;
-import java.util.List;
+import java.util.Arrays;
+import java.util.TreeSet;
 
 import org.apache.commons.math3.linear.MatrixUtils;
 import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.SingularValueDecomposition;
 
+/**
+ * Latent semantic indexing over the TF-IDF weighted union of source and target artifacts.
+ * <p>
+ * By default the TF-IDF matrix is decomposed with a {@link TruncatedSVD} of rank {@code min(|S|, |T|, MAX_K)} and
+ * artifacts are compared by the cosine of their latent coordinates. {@code -Dtriad.lsi.mode=reconstruct} restores
+ * the original behaviour: a full SVD whose rank-k reconstruction replaces the positive TF-IDF entries before
+ * comparing in term space. An LSI model created with a {@link LatentSpace} skips the per-call decomposition and compares artifacts by
+ * their coordinates in that shared space, folding in artifacts the space has not seen (see
+ * {@code -Dtriad.lsi.mode=foldin}).
+ */
 public class LSI implements IRModel {
-    private TermDocumentMatrix queries;
-    private TermDocumentMatrix documents;
-    private int LSI_K;
+    static final String MODE_PROPERTY = "triad.lsi.mode";
+    public static final int MAX_K = 100;
+
+    private final int parallelism;
+    private final boolean reconstruct;
+    private final LatentSpace latentSpace;
+
+    /**
+     * Create a LSI model using the configured parallelism level.
+     */
+    public LSI() {
+        this(RowPartitioner.configuredParallelism());
+    }
+
+    /**
+     * Create a LSI model that scores query rows on the given number of threads.
+     */
+    public LSI(int parallelism) {
+        this(parallelism, null);
+    }
+
+    /**
+     * Create a LSI model that folds artifacts into a precomputed latent space instead of decomposing per call.
+     *
+     * @param parallelism number of threads scoring query rows
+     * @param latentSpace shared decomposition, or null to decompose the artifacts of every call
+     */
+    public LSI(int parallelism, LatentSpace latentSpace) {
+        this.parallelism = Math.max(1, parallelism);
+        this.reconstruct = "reconstruct".equalsIgnoreCase(System.getProperty(MODE_PROPERTY, "latent"));
+        this.latentSpace = latentSpace;
+    }
+
+    /**
+     * @return true if {@code -Dtriad.lsi.mode=foldin} asks for one shared latent space per pipeline run
+     */
+    public static boolean isFoldInConfigured() {
+        return "foldin".equalsIgnoreCase(System.getProperty(MODE_PROPERTY, "latent"));
+    }
 
     @Override
-    public SimilarityMatrix Compute(ArtifactsCollection source, ArtifactsCollection target) {
-        LSI_K = Math.min(Math.min(source.size(), target.size()), 100);
+    public IRResult ComputeResult(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
+        int rank = rank(source, target);
         ArtifactsCollection bothSourceAndTarget = new ArtifactsCollection();
         bothSourceAndTarget.putAll(source);
         bothSourceAndTarget.putAll(target);
 
+        TermDocumentMatrix both = new TermDocumentMatrix(bothSourceAndTarget, dictionary);
+        if (latentSpace != null) {
+            return ComputeFoldInSimilarities(source, target, bothSourceAndTarget, both);
+        }
         return Compute(
-                new TermDocumentMatrix(source),
-                new TermDocumentMatrix(target),
-                new TermDocumentMatrix(bothSourceAndTarget));
+                both.selectDocuments(new TreeSet<>(source.keySet())),
+                both.selectDocuments(new TreeSet<>(target.keySet())),
+                both,
+                rank);
+    }
+
+    /**
+     * @return the LSI rank of a call: the size of the smaller artifact set, at most {@link #MAX_K}
+     */
+    private static int rank(ArtifactsCollection source, ArtifactsCollection target) {
+        return Math.min(Math.min(source.size(), target.size()), MAX_K);
     }
 
-    private SimilarityMatrix Compute(TermDocumentMatrix source, TermDocumentMatrix target, TermDocumentMatrix both) {
+    private IRResult Compute(TermDocumentMatrix source, TermDocumentMatrix target, TermDocumentMatrix both, int rank) {
 
         TermDocumentMatrix TF = ComputeTF(both);
         double[] IDF = ComputeIDF(ComputeDF(both), both.numDocs());
         TermDocumentMatrix TFIDF_Origin = ComputeTFIDF(TF, IDF);
 
-        TermDocumentMatrix TFIDF_svd = svd(TFIDF_Origin);
-        TermDocumentMatrix sourceIDs = ComputeIdentities(source);
-        TermDocumentMatrix targetIDs = ComputeIdentities(target);
+        if (!reconstruct) {
+            return ComputeLatentSimilarities(source, target, TFIDF_Origin, rank);
+        }
 
-        TermDocumentMatrix sourceWithTFIDF = ReplaceIDWithTFIDF(sourceIDs, TFIDF_svd);
-        TermDocumentMatrix targetWithTFIDF = ReplaceIDWithTFIDF(targetIDs, TFIDF_svd);
+        TermDocumentMatrix TFIDF_svd = svd(TFIDF_Origin, rank);
 
-        return ComputeSimilarities(sourceWithTFIDF, targetWithTFIDF);
+        TermDocumentMatrix sourceWithTFIDF = TFIDF_svd.selectDocuments(source.getDocumentNames());
+        TermDocumentMatrix targetWithTFIDF = source.getDocumentNames().equals(target.getDocumentNames())
+                ? sourceWithTFIDF
+                : TFIDF_svd.selectDocuments(target.getDocumentNames());
+
+        return new IRResult(
+                ComputeSimilarities(sourceWithTFIDF, targetWithTFIDF), sourceWithTFIDF, targetWithTFIDF);
     }
 
-    private TermDocumentMatrix svd(TermDocumentMatrix tfidf_origin) {
-        RealMatrix realMatrix = convertTermDocumentMatrixToRealMatrix(tfidf_origin);
-        RealMatrix rebuildMatrix = SVD.compute(realMatrix, LSI_K);
-        return convertRealMatrixToTermDocumentMatrix(rebuildMatrix, tfidf_origin);
+    private IRResult ComputeLatentSimilarities(
+            TermDocumentMatrix source, TermDocumentMatrix target, TermDocumentMatrix tfidf, int rank) {
+        TruncatedSVD svd = TruncatedSVD.decompose(tfidf, rank);
+        TermDocumentMatrix queries = tfidf.selectDocuments(source.getDocumentNames());
+        TermDocumentMatrix documents = tfidf.selectDocuments(target.getDocumentNames());
+
+        SimilarityMatrix sims = new SimilarityMatrix(source.getDocumentNames(), target.getDocumentNames());
+        double[][] sourceCoordinates = latentCoordinates(svd, tfidf, source);
+        double[][] targetCoordinates = source.getDocumentNames().equals(target.getDocumentNames())
+                ? sourceCoordinates
+                : latentCoordinates(svd, tfidf, target);
+        CosineKernel.computeSimilarities(sourceCoordinates, targetCoordinates, sims, parallelism);
+        return new IRResult(sims, queries, documents);
     }
 
-    private RealMatrix convertTermDocumentMatrixToRealMatrix(TermDocumentMatrix tfidf_origin) {
-        double[][] dates = new double[tfidf_origin.numTerms()][tfidf_origin.numDocs()];
-        for (int i = 0; i < tfidf_origin.numTerms(); i++) {
-            for (int j = 0; j < tfidf_origin.numDocs(); j++) {
-                dates[i][j] = tfidf_origin.getValue(j, i);
-            }
+    private IRResult ComputeFoldInSimilarities(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            ArtifactsCollection bothSourceAndTarget,
+            TermDocumentMatrix both) {
+        TermDocumentMatrix queries = both.selectDocuments(new TreeSet<>(source.keySet()));
+        TermDocumentMatrix documents = both.selectDocuments(new TreeSet<>(target.keySet()));
+
+        SimilarityMatrix sims = new SimilarityMatrix(queries.getDocumentNames(), documents.getDocumentNames());
+        double[][] sourceCoordinates = latentSpace.coordinates(bothSourceAndTarget, queries.getDocumentNames(), both);
+        double[][] targetCoordinates = queries.getDocumentNames().equals(documents.getDocumentNames())
+                ? sourceCoordinates
+                : latentSpace.coordinates(bothSourceAndTarget, documents.getDocumentNames(), both);
+        CosineKernel.computeSimilarities(sourceCoordinates, targetCoordinates, sims, parallelism);
+        return new IRResult(sims, queries, documents);
+    }
+
+    /**
+     * Stream the latent (or folded-in) cosine scores into per-source top-k heaps. The reconstruct mode compares in
+     * term space after a full SVD and still builds the complete matrix.
+     */
+    @Override
+    public TopKLinks ComputeTopK(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            TermDictionary dictionary,
+            int k,
+            double relativeThreshold) {
+        if (reconstruct && latentSpace == null) {
+            return IRModel.super.ComputeTopK(source, target, dictionary, k, relativeThreshold);
         }
-        return MatrixUtils.createRealMatrix(dates);
+        ArtifactsCollection bothSourceAndTarget = new ArtifactsCollection();
+        bothSourceAndTarget.putAll(source);
+        bothSourceAndTarget.putAll(target);
+        TermDocumentMatrix both = new TermDocumentMatrix(bothSourceAndTarget, dictionary);
+
+        TermDocumentMatrix queries;
+        TermDocumentMatrix documents;
+        double[][] sourceCoordinates;
+        double[][] targetCoordinates;
+        if (latentSpace != null) {
+            queries = both.selectDocuments(new TreeSet<>(source.keySet()));
+            documents = both.selectDocuments(new TreeSet<>(target.keySet()));
+            sourceCoordinates = latentSpace.coordinates(bothSourceAndTarget, queries.getDocumentNames(), both);
+            targetCoordinates = latentSpace.coordinates(bothSourceAndTarget, documents.getDocumentNames(), both);
+        } else {
+            TermDocumentMatrix TF = ComputeTF(both);
+            TermDocumentMatrix tfidf = ComputeTFIDF(TF, ComputeIDF(ComputeDF(both), both.numDocs()));
+            TruncatedSVD svd = TruncatedSVD.decompose(tfidf, rank(source, target));
+            queries = tfidf.selectDocuments(new TreeSet<>(source.keySet()));
+            documents = tfidf.selectDocuments(new TreeSet<>(target.keySet()));
+            sourceCoordinates = latentCoordinates(svd, tfidf, queries);
+            targetCoordinates = latentCoordinates(svd, tfidf, documents);
+        }
+
+        TopKLinks.Collector collector = new TopKLinks.Collector(
+                queries.getDocumentNames(), documents.getDocumentNames(), k, relativeThreshold);
+        CosineKernel.computeTopK(sourceCoordinates, targetCoordinates, collector, parallelism);
+        return collector.finish();
     }
 
-    private TermDocumentMatrix convertRealMatrixToTermDocumentMatrix(
-            RealMatrix rebuildMatrix, TermDocumentMatrix tfidf_origin) {
-        for (int i = 0; i < rebuildMatrix.getRowDimension(); i++) {
-            for (int j = 0; j < rebuildMatrix.getColumnDimension(); j++) {
-                if (rebuildMatrix.getEntry(i, j) > 0.0) {
-                    tfidf_origin.setValue(j, i, rebuildMatrix.getEntry(i, j));
-                }
+    private double[][] latentCoordinates(TruncatedSVD svd, TermDocumentMatrix tfidf, TermDocumentMatrix selection) {
+        double[][] coordinates = new double[selection.numDocs()][];
+        for (int i = 0; i < selection.numDocs(); i++) {
+            int row = tfidf.getDocumentIndex(selection.getDocumentName(i));
+            coordinates[i] = row == -1 ? new double[svd.getRank()] : svd.getDocumentCoordinates()[row];
+        }
+        return coordinates;
+    }
+
+    private TermDocumentMatrix svd(TermDocumentMatrix tfidf_origin, int rank) {
+        // The dictionary may be shared with other matrices of the run, so only decompose the terms in use.
+        int[] usedTerms = usedTerms(tfidf_origin);
+        RealMatrix realMatrix = convertTermDocumentMatrixToRealMatrix(tfidf_origin, usedTerms);
+        RealMatrix rebuildMatrix = SVD.compute(realMatrix, rank);
+        return convertRealMatrixToTermDocumentMatrix(rebuildMatrix, tfidf_origin, usedTerms);
+    }
+
+    private int[] usedTerms(TermDocumentMatrix matrix) {
+        boolean[] used = new boolean[matrix.numTerms()];
+        int count = 0;
+        for (int k = 0; k < matrix.numNonZeros(); k++) {
+            if (!used[matrix.termAt(k)]) {
+                used[matrix.termAt(k)] = true;
+                count++;
             }
         }
-        return tfidf_origin;
+        int[] usedTerms = new int[count];
+        int position = 0;
+        for (int term = 0; term < used.length; term++) {
+            if (used[term]) usedTerms[position++] = term;
+        }
+        return usedTerms;
     }
 
-    private TermDocumentMatrix ReplaceIDWithTFIDF(TermDocumentMatrix ids, TermDocumentMatrix tfidf) {
-        List<TermDocumentMatrix> matrices = TermDocumentMatrix.equalize(ids, tfidf);
-        ids = matrices.get(0);
-        tfidf = matrices.get(1);
+    private RealMatrix convertTermDocumentMatrixToRealMatrix(TermDocumentMatrix tfidf_origin, int[] usedTerms) {
+        int[] compactIndex = new int[tfidf_origin.numTerms()];
+        for (int i = 0; i < usedTerms.length; i++) {
+            compactIndex[usedTerms[i]] = i;
+        }
+        double[][] dates = new double[usedTerms.length][tfidf_origin.numDocs()];
+        for (int j = 0; j < tfidf_origin.numDocs(); j++) {
+            for (int k = tfidf_origin.rowStart(j); k < tfidf_origin.rowEnd(j); k++) {
+                dates[compactIndex[tfidf_origin.termAt(k)]][j] = tfidf_origin.valueAt(k);
+            }
+        }
+        return MatrixUtils.createRealMatrix(dates);
+    }
 
-        for (int i = 0; i < ids.numDocs(); i++) {
-            for (int j = 0; j < ids.numTerms(); j++) {
-                ids.setValue(i, j, tfidf.getValue(ids.getDocumentName(i), ids.getTermName(j)));
+    private TermDocumentMatrix convertRealMatrixToTermDocumentMatrix(
+            RealMatrix rebuildMatrix, TermDocumentMatrix tfidf_origin, int[] usedTerms) {
+        // Positive reconstructed entries replace the original weights; all other entries keep them.
+        int numTerms = rebuildMatrix.getRowDimension();
+        int numDocs = rebuildMatrix.getColumnDimension();
+        int[] rowPointers = new int[numDocs + 1];
+        int[] termIndices = new int[numDocs * numTerms];
+        double[] values = new double[numDocs * numTerms];
+        int position = 0;
+        for (int j = 0; j < numDocs; j++) {
+            for (int i = 0; i < numTerms; i++) {
+                double rebuilt = rebuildMatrix.getEntry(i, j);
+                double value = rebuilt > 0.0 ? rebuilt : tfidf_origin.getValue(j, usedTerms[i]);
+                if (value != 0.0) {
+                    termIndices[position] = usedTerms[i];
+                    values[position] = value;
+                    position++;
+                }
             }
+            rowPointers[j + 1] = position;
         }
-        return ids;
+        return new TermDocumentMatrix(
+                tfidf_origin.getDocumentNames(),
+                tfidf_origin.getDictionary(),
+                rowPointers,
+                Arrays.copyOf(termIndices, position),
+                Arrays.copyOf(values, position));
     }
 
     private TermDocumentMatrix ComputeTFIDF(TermDocumentMatrix tf, double[] idf) {
-        for (int i = 0; i < tf.numDocs(); i++) {
-            for (int j = 0; j < tf.numTerms(); j++) {
-                tf.setValue(i, j, tf.getValue(i, j) * idf[j]);
-            }
+        for (int k = 0; k < tf.numNonZeros(); k++) {
+            tf.setValueAt(k, tf.valueAt(k) * idf[tf.termAt(k)]);
         }
         return tf;
     }
@@ -106,10 +279,9 @@ public class LSI implements IRModel {
 
     private double[] ComputeDF(TermDocumentMatrix matrix) {
         double[] df = new double[matrix.numTerms()];
-        for (int j = 0; j < matrix.numTerms(); j++) {
-            df[j] = 0.0;
-            for (int i = 0; i < matrix.numDocs(); i++) {
-                df[j] += (matrix.getValue(i, j) > 0.0) ? 1.0 : 0.0;
+        for (int k = 0; k < matrix.numNonZeros(); k++) {
+            if (matrix.valueAt(k) > 0.0) {
+                df[matrix.termAt(k)] += 1.0;
             }
         }
         return df;
@@ -118,64 +290,21 @@ public class LSI implements IRModel {
     private TermDocumentMatrix ComputeTF(TermDocumentMatrix matrix) {
         for (int i = 0; i < matrix.numDocs(); i++) {
             double max = 0.0;
-            for (int k = 0; k < matrix.numTerms(); k++) {
-                max += matrix.getValue(i, k);
+            for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                max += matrix.valueAt(k);
             }
             if (max > 0) {
-                for (int j = 0; j < matrix.numTerms(); j++) {
-                    matrix.setValue(i, j, (matrix.getValue(i, j) / max));
+                for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                    matrix.setValueAt(k, matrix.valueAt(k) / max);
                 }
             }
         }
         return matrix;
     }
 
-    private TermDocumentMatrix ComputeIdentities(TermDocumentMatrix matrix) {
-        for (int i = 0; i < matrix.numDocs(); i++) {
-            for (int j = 0; j < matrix.numTerms(); j++) {
-                matrix.setValue(i, j, ((matrix.getValue(i, j) > 0.0) ? 1.0 : 0.0));
-            }
-        }
-        return matrix;
-    }
-
     private SimilarityMatrix ComputeSimilarities(TermDocumentMatrix ids, TermDocumentMatrix tfidf) {
-        SimilarityMatrix sims = new SimilarityMatrix();
-        List<TermDocumentMatrix> matrices = TermDocumentMatrix.equalize(ids, tfidf);
-
-        queries = matrices.get(0);
-        documents = matrices.get(1);
-
-        for (int i = 0; i < ids.numDocs(); i++) {
-            LinksList links = new LinksList();
-            for (int j = 0; j < tfidf.numDocs(); j++) {
-                double product = 0.0;
-                double asquared = 0.0;
-                double bsquared = 0.0;
-                for (int k = 0; k < matrices.get(0).numTerms(); k++) {
-                    double a = matrices.get(0).getValue(i, k);
-                    double b = matrices.get(1).getValue(j, k);
-                    product += (a * b);
-                    asquared += Math.pow(a, 2);
-                    bsquared += Math.pow(b, 2);
-                }
-                double cross = Math.sqrt(asquared) * Math.sqrt(bsquared);
-                if (cross == 0.0) {
-                    links.add(new SingleLink(
-                            ids.getDocumentName(i).trim(),
-                            tfidf.getDocumentName(j).trim(),
-                            0.0));
-                } else {
-                    links.add(new SingleLink(ids.getDocumentName(i), tfidf.getDocumentName(j), product / cross));
-                }
-            }
-
-            Collections.sort(links, Collections.reverseOrder());
-
-            for (SingleLink link : links) {
-                sims.addLink(link.getSourceArtifactId(), link.getTargetArtifactId(), link.getScore());
-            }
-        }
+        SimilarityMatrix sims = new SimilarityMatrix(ids.getDocumentNames(), tfidf.getDocumentNames());
+        CosineKernel.computeSimilarities(ids, tfidf, sims, parallelism);
         return sims;
     }
 
@@ -185,13 +314,8 @@ public class LSI implements IRModel {
     }
 
     @Override
-    public TermDocumentMatrix getTermDocumentMatrixOfQueries() {
-        return queries;
-    }
-
-    @Override
-    public TermDocumentMatrix getTermDocumentMatrixOfDocuments() {
-        return documents;
+    public int getParallelism() {
+        return parallelism;
     }
 }
 
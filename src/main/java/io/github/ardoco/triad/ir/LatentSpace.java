@@ -0,0 +1,330 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.ardoco.triad.model.Artifact;
+
+/**
+ * A persisted LSI decomposition of a whole corpus (typically S∪M∪T) that other documents are folded into.
+ * <p>
+ * The corpus is TF-IDF weighted and decomposed once with {@link TruncatedSVD}. The space keeps the corpus IDF, the
+ * left singular vectors U_k of every term, the singular values Σ_k and the latent coordinates Σ_k v_j of every
+ * corpus document. A document whose text is unchanged since the decomposition keeps its stored coordinates; any
+ * other document, such as an enriched artifact, is folded in as {@code U_kᵀ d} for its TF-IDF vector {@code d}
+ * weighted with the corpus IDF, which equals {@code Σ_k v̂} for the fold-in estimate {@code v̂ = Σ_k⁻¹ U_kᵀ d}.
+ * Terms unknown to the corpus do not contribute.
+ * <p>
+ * Spaces are stored under {@code -Dtriad.lsi.dir} (default: {@code triad-lsi} in the temporary directory), keyed by
+ * a hash of the corpus and k, so later runs on the same dataset load the decomposition instead of recomputing it.
+ */
+public final class LatentSpace {
+    static final String DIRECTORY_PROPERTY = "triad.lsi.dir";
+
+    private static final Logger logger = LoggerFactory.getLogger(LatentSpace.class);
+    private static final int MAGIC = 0x4c534932; // "LSI2"
+    private static final int DIGEST_BYTES = 32;
+
+    private final int rank;
+    private final double[] singularValues;
+    private final Map<String, Integer> termIndex;
+    private final double[] idf;
+    private final double[][] termVectors;
+    private final Map<String, StoredDocument> documents;
+
+    private record StoredDocument(byte[] textDigest, double[] coordinates) {}
+
+    private LatentSpace(
+            int rank,
+            double[] singularValues,
+            Map<String, Integer> termIndex,
+            double[] idf,
+            double[][] termVectors,
+            Map<String, StoredDocument> documents) {
+        this.rank = rank;
+        this.singularValues = singularValues;
+        this.termIndex = termIndex;
+        this.idf = idf;
+        this.termVectors = termVectors;
+        this.documents = documents;
+    }
+
+    /**
+     * Load the space of a corpus from the configured directory, or decompose the corpus and store it there.
+     * Failing to read or write the file only costs the reuse; the space is then computed in memory.
+     *
+     * @param corpus all artifacts the space should be built from
+     * @param k number of latent dimensions
+     */
+    public static LatentSpace loadOrBuild(ArtifactsCollection corpus, int k) {
+        Path directory = Path.of(System.getProperty(
+                DIRECTORY_PROPERTY, Path.of(System.getProperty("java.io.tmpdir"), "triad-lsi").toString()));
+        Path file = directory.resolve("lsi-" + corpusKey(corpus, Integer.toString(k)) + ".bin");
+        if (Files.isRegularFile(file)) {
+            try {
+                LatentSpace space = load(file);
+                logger.info("Loaded LSI decomposition from {}", file);
+                return space;
+            } catch (IOException e) {
+                logger.warn("Could not read LSI decomposition {}, recomputing it: {}", file, e.getMessage());
+            }
+        }
+        LatentSpace space = build(corpus, k);
+        try {
+            Files.createDirectories(directory);
+            space.save(file);
+            logger.info("Stored LSI decomposition in {}", file);
+        } catch (IOException e) {
+            logger.warn("Could not store LSI decomposition {}: {}", file, e.getMessage());
+        }
+        return space;
+    }
+
+    /**
+     * Decompose a corpus into a k-dimensional latent space.
+     */
+    public static LatentSpace build(ArtifactsCollection corpus, int k) {
+        TermDocumentMatrix matrix = new TermDocumentMatrix(corpus);
+
+        double[] df = new double[matrix.numTerms()];
+        for (int position = 0; position < matrix.numNonZeros(); position++) {
+            df[matrix.termAt(position)] += 1.0;
+        }
+        double[] corpusIdf = new double[df.length];
+        for (int term = 0; term < df.length; term++) {
+            corpusIdf[term] = df[term] > 0.0 ? Math.log(matrix.numDocs() / df[term]) : 0.0;
+        }
+        for (int i = 0; i < matrix.numDocs(); i++) {
+            double sum = rowSum(matrix, i);
+            for (int position = matrix.rowStart(i); position < matrix.rowEnd(i); position++) {
+                int term = matrix.termAt(position);
+                matrix.setValueAt(position, matrix.valueAt(position) / sum * corpusIdf[term]);
+            }
+        }
+
+        TruncatedSVD svd = TruncatedSVD.decompose(matrix, k);
+        Map<String, Integer> termIndex = new HashMap<>();
+        List<double[]> termVectors = new ArrayList<>();
+        List<Double> idf = new ArrayList<>();
+        for (int term = 0; term < matrix.numTerms(); term++) {
+            double[] vector = svd.getTermVector(term);
+            if (vector == null) continue;
+            termIndex.put(matrix.getTermName(term), termVectors.size());
+            termVectors.add(vector);
+            idf.add(corpusIdf[term]);
+        }
+
+        Map<String, StoredDocument> documents = new HashMap<>();
+        for (int i = 0; i < matrix.numDocs(); i++) {
+            String id = matrix.getDocumentName(i);
+            documents.put(id, new StoredDocument(textDigest(corpus.get(id)), svd.getDocumentCoordinates()[i]));
+        }
+        return new LatentSpace(
+                svd.getRank(),
+                svd.getSingularValues(),
+                termIndex,
+                idf.stream().mapToDouble(Double::doubleValue).toArray(),
+                termVectors.toArray(new double[0][]),
+                documents);
+    }
+
+    /**
+     * @return number of latent dimensions
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * @return the singular values of the decomposition, in descending order
+     */
+    public double[] getSingularValues() {
+        return singularValues.clone();
+    }
+
+    /**
+     * Latent coordinates of the given artifacts, in the order of {@code ids}. Artifacts stored unchanged in the
+     * space reuse their decomposed coordinates; all others, and ids missing from {@code artifacts}, are folded in.
+     *
+     * @param artifacts artifacts keyed by identifier
+     * @param ids identifiers to return coordinates for
+     * @param counts term counts of every id, as built by {@link TermDocumentMatrix}
+     */
+    double[][] coordinates(ArtifactsCollection artifacts, List<String> ids, TermDocumentMatrix counts) {
+        int[] spaceIndex = new int[counts.numTerms()];
+        for (int term = 0; term < spaceIndex.length; term++) {
+            spaceIndex[term] = termIndex.getOrDefault(counts.getTermName(term), -1);
+        }
+
+        double[][] result = new double[ids.size()][];
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            StoredDocument stored = documents.get(id);
+            Artifact artifact = artifacts.get(id);
+            if (stored != null
+                    && artifact != null
+                    && MessageDigest.isEqual(stored.textDigest(), textDigest(artifact))) {
+                result[i] = stored.coordinates();
+                continue;
+            }
+            double[] coordinates = new double[rank];
+            int row = counts.getDocumentIndex(id);
+            if (row != -1) {
+                double sum = rowSum(counts, row);
+                for (int position = counts.rowStart(row); position < counts.rowEnd(row); position++) {
+                    int index = spaceIndex[counts.termAt(position)];
+                    if (index == -1) continue;
+                    double weight = counts.valueAt(position) / sum * idf[index];
+                    double[] vector = termVectors[index];
+                    for (int c = 0; c < rank; c++) {
+                        coordinates[c] += weight * vector[c];
+                    }
+                }
+            }
+            result[i] = coordinates;
+        }
+        return result;
+    }
+
+    /**
+     * Write the space to a file. The space is written to a temporary file first and moved into place, so an
+     * interrupted write never leaves a partial space behind for later runs to load.
+     */
+    public void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, "lsi-", ".tmp");
+        try {
+            write(temporary);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(rank);
+            writeVector(out, singularValues);
+            out.writeInt(termIndex.size());
+            String[] terms = new String[termIndex.size()];
+            termIndex.forEach((term, index) -> terms[index] = term);
+            for (int index = 0; index < terms.length; index++) {
+                out.writeUTF(terms[index]);
+                out.writeDouble(idf[index]);
+                writeVector(out, termVectors[index]);
+            }
+            out.writeInt(documents.size());
+            for (String id : new TreeSet<>(documents.keySet())) {
+                StoredDocument document = documents.get(id);
+                out.writeUTF(id);
+                out.write(document.textDigest());
+                writeVector(out, document.coordinates());
+            }
+        }
+    }
+
+    /**
+     * Read a space written by {@link #save(Path)}.
+     */
+    public static LatentSpace load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an LSI decomposition: " + file);
+            }
+            int rank = in.readInt();
+            double[] singularValues = readVector(in, rank);
+            int numTerms = in.readInt();
+            Map<String, Integer> termIndex = new HashMap<>();
+            double[] idf = new double[numTerms];
+            double[][] termVectors = new double[numTerms][];
+            for (int index = 0; index < numTerms; index++) {
+                termIndex.put(in.readUTF(), index);
+                idf[index] = in.readDouble();
+                termVectors[index] = readVector(in, rank);
+            }
+            int numDocuments = in.readInt();
+            Map<String, StoredDocument> documents = new HashMap<>();
+            for (int i = 0; i < numDocuments; i++) {
+                String id = in.readUTF();
+                byte[] textDigest = new byte[DIGEST_BYTES];
+                in.readFully(textDigest);
+                documents.put(id, new StoredDocument(textDigest, readVector(in, rank)));
+            }
+            return new LatentSpace(rank, singularValues, termIndex, idf, termVectors, documents);
+        }
+    }
+
+    private static void writeVector(DataOutputStream out, double[] vector) throws IOException {
+        for (double value : vector) {
+            out.writeDouble(value);
+        }
+    }
+
+    private static double[] readVector(DataInputStream in, int length) throws IOException {
+        double[] vector = new double[length];
+        for (int c = 0; c < length; c++) {
+            vector[c] = in.readDouble();
+        }
+        return vector;
+    }
+
+    private static double rowSum(TermDocumentMatrix matrix, int row) {
+        double sum = 0.0;
+        for (int position = matrix.rowStart(row); position < matrix.rowEnd(row); position++) {
+            sum += matrix.valueAt(position);
+        }
+        return sum;
+    }
+
+    /**
+     * @return the SHA-256 digest of an artifact's processed text, which decides whether its stored coordinates apply
+     */
+    private static byte[] textDigest(Artifact artifact) {
+        String text = artifact.getTextBody();
+        return sha256().digest((text == null ? "" : text).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * @return a hex key identifying the ids and texts of a corpus together with a variant, such as the rank
+     */
+    static String corpusKey(ArtifactsCollection corpus, String variant) {
+        MessageDigest digest = sha256();
+        digest.update(variant.getBytes(StandardCharsets.UTF_8));
+        for (String id : new TreeSet<>(corpus.keySet())) {
+            String text = corpus.get(id).getTextBody();
+            digest.update(id.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update((text == null ? "" : text).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, 16);
+    }
+}
@@ -0,0 +1,563 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.TermFrequencyAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInvertState;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.ardoco.triad.model.Artifact;
+
+/**
+ * VSM backed by an on-disk Lucene index of the union of source and target artifacts.
+ * <p>
+ * Artifacts are weighted exactly like {@link VSM} (term frequency over the document length, times
+ * {@code ln(N / df)} over the union) and every document vector is length-normalised before it is indexed. Lucene
+ * has no per-term payload in its scoring path, so each normalised weight is stored as the term frequency
+ * {@code round(weight × 2^22)}, and a {@link Similarity} scores a term as {@code boost × freq / 2^22}. A source is
+ * queried as a disjunction of its terms, boosted by its own normalised weights and filtered to the target ids, so
+ * a hit scores the cosine of the two TF-IDF vectors. Scores carry Lucene's float precision and the quantization of
+ * the document weights, about six significant digits; pairs sharing no term score 0.0 as in {@link VSM}.
+ * <p>
+ * Only the document frequencies of the union are kept in memory: every artifact is weighted on its own while it is
+ * indexed or queried, so {@link #ComputeTopK} holds the index and {@code sources × k} links, never a term-document
+ * matrix. Sources are searched on {@link #getParallelism()} threads against one shared searcher, and
+ * {@link #ComputeTopK} hands each query to Lucene's top-k collector, which skips documents that cannot reach the top
+ * k. Sources with many terms are queried as nested disjunctions of at most {@value #CLAUSES_PER_GROUP} terms each,
+ * which stay below Lucene's clause limit without raising that JVM-wide setting.
+ * <p>
+ * The index lives in a memory-mapped directory under {@code -Dtriad.lucene.dir} (default: {@code triad-lucene} in
+ * the temporary directory), keyed by a hash of the union, so later runs on the same artifacts open it instead of
+ * indexing again. Only the {@code -Dtriad.lucene.maxIndexes} (default {@value #DEFAULT_MAX_INDEXES}) most recently
+ * used indexes are kept; older ones are deleted. If the directory cannot be written, the index is built in memory.
+ */
+public class LuceneVSM implements IRModel {
+    static final String DIRECTORY_PROPERTY = "triad.lucene.dir";
+    static final String MAX_INDEXES_PROPERTY = "triad.lucene.maxIndexes";
+    static final int DEFAULT_MAX_INDEXES = 8;
+    static final int CLAUSES_PER_GROUP = 512;
+
+    private static final Logger logger = LoggerFactory.getLogger(LuceneVSM.class);
+    private static final String ID_FIELD = "id";
+    private static final String TERMS_FIELD = "terms";
+    private static final String KEY_DATA = "triad.corpus";
+    private static final float SCALE = 1 << 22;
+    private static final FieldType TERMS_TYPE = new FieldType();
+
+    static {
+        TERMS_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+        TERMS_TYPE.setTokenized(true);
+        TERMS_TYPE.setOmitNorms(true);
+        TERMS_TYPE.freeze();
+    }
+
+    /** Guards the index directories that calls on the same union share. */
+    private static final Object INDEX_LOCK = new Object();
+
+    private final int parallelism;
+
+    /**
+     * Create a Lucene VSM model using the configured parallelism level.
+     */
+    public LuceneVSM() {
+        this(RowPartitioner.configuredParallelism());
+    }
+
+    /**
+     * Create a Lucene VSM model that searches sources on the given number of threads.
+     */
+    public LuceneVSM(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * Normalised TF-IDF weights of one artifact, in ascending term order.
+     */
+    private record Row(int[] terms, double[] weights) {}
+
+    /**
+     * The union of a call's artifacts and the document frequencies of its terms, from which the row of any of its
+     * artifacts is weighted on demand.
+     */
+    private static final class UnionWeights {
+        private final ArtifactsCollection bothSourceAndTarget;
+        private final TermDictionary dictionary;
+        private double[] df = new double[0];
+
+        UnionWeights(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
+            this.bothSourceAndTarget = new ArtifactsCollection();
+            bothSourceAndTarget.putAll(source);
+            bothSourceAndTarget.putAll(target);
+            this.dictionary = dictionary;
+            // Intern in the order a matrix of the union would, so term ids match those of VSM.
+            for (String id : new TreeSet<>(bothSourceAndTarget.keySet())) {
+                int[] ids = termIds(bothSourceAndTarget.get(id));
+                if (dictionary.size() > df.length) {
+                    df = Arrays.copyOf(df, Math.max(dictionary.size(), 2 * df.length));
+                }
+                for (int k = 0; k < ids.length; k++) {
+                    if (k == 0 || ids[k] != ids[k - 1]) df[ids[k]] += 1.0;
+                }
+            }
+        }
+
+        /**
+         * @return the sorted term ids of an artifact's text body, one per occurrence
+         */
+        private int[] termIds(Artifact artifact) {
+            String[] terms = artifact.getTextBody().split("\\s+");
+            int[] ids = new int[terms.length];
+            int count = 0;
+            for (String term : terms) {
+                if (term == null || term.isBlank()) continue;
+                ids[count++] = dictionary.intern(term);
+            }
+            ids = Arrays.copyOf(ids, count);
+            Arrays.sort(ids);
+            return ids;
+        }
+
+        /**
+         * @return the normalised TF-IDF row of an artifact of the union, computed in the same order as {@link VSM}
+         */
+        Row row(String id) {
+            int[] ids = termIds(bothSourceAndTarget.get(id));
+            int[] terms = new int[ids.length];
+            double[] weights = new double[ids.length];
+            int length = 0;
+            for (int k = 0; k < ids.length; k++) {
+                if (k > 0 && ids[k] == ids[k - 1]) {
+                    weights[length - 1] += 1.0;
+                } else {
+                    terms[length] = ids[k];
+                    weights[length++] = 1.0;
+                }
+            }
+            double sum = 0.0;
+            for (int k = 0; k < length; k++) {
+                sum += weights[k];
+            }
+            int numDocs = bothSourceAndTarget.size();
+            double squared = 0.0;
+            for (int k = 0; k < length; k++) {
+                double documentFrequency = df[terms[k]];
+                double idf = documentFrequency > 0.0 ? Math.log(numDocs / documentFrequency) : 0.0;
+                double weight = sum == 0.0 ? 0.0 : weights[k] / sum * idf;
+                weights[k] = weight;
+                squared += weight * weight;
+            }
+            double norm = Math.sqrt(squared);
+            for (int k = 0; k < length; k++) {
+                weights[k] = norm == 0.0 ? 0.0 : weights[k] / norm;
+            }
+            return new Row(Arrays.copyOf(terms, length), Arrays.copyOf(weights, length));
+        }
+
+        /**
+         * @return the rows of the given artifacts as a matrix over the shared dictionary
+         */
+        TermDocumentMatrix matrix(List<String> ids) {
+            Row[] rows = new Row[ids.size()];
+            int[] rowPointers = new int[ids.size() + 1];
+            for (int i = 0; i < rows.length; i++) {
+                rows[i] = row(ids.get(i));
+                rowPointers[i + 1] = rowPointers[i] + rows[i].terms().length;
+            }
+            int[] terms = new int[rowPointers[rows.length]];
+            double[] weights = new double[terms.length];
+            for (int i = 0; i < rows.length; i++) {
+                System.arraycopy(rows[i].terms(), 0, terms, rowPointers[i], rows[i].terms().length);
+                System.arraycopy(rows[i].weights(), 0, weights, rowPointers[i], rows[i].weights().length);
+            }
+            return new TermDocumentMatrix(ids, dictionary, rowPointers, terms, weights);
+        }
+    }
+
+    @Override
+    public IRResult ComputeResult(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
+        UnionWeights weights = new UnionWeights(source, target, dictionary);
+        List<String> sources = new ArrayList<>(new TreeSet<>(source.keySet()));
+        List<String> targets = new ArrayList<>(new TreeSet<>(target.keySet()));
+        SimilarityMatrix sims = new SimilarityMatrix(sources, targets);
+        search(weights, targets, (searcher, columns, filter) -> {
+            RowPartitioner.scoreRows(sources.size(), parallelism, 1, (from, to) -> {
+                for (int i = from; i < to; i++) {
+                    // Pairs sharing no term score 0.0; hits overwrite their cells.
+                    for (int j = 0; j < targets.size(); j++) {
+                        sims.storeScore(i, j, 0.0);
+                    }
+                    Query query = query(weights.row(sources.get(i)), dictionary, filter);
+                    if (query != null) {
+                        search(searcher, query, new RowCollector(columns, sims, i));
+                    }
+                }
+            });
+        });
+        sims.refreshCounts();
+        return new IRResult(sims, weights.matrix(sources), weights.matrix(targets));
+    }
+
+    @Override
+    public TopKLinks ComputeTopK(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            TermDictionary dictionary,
+            int k,
+            double relativeThreshold) {
+        UnionWeights weights = new UnionWeights(source, target, dictionary);
+        List<String> sources = new ArrayList<>(new TreeSet<>(source.keySet()));
+        List<String> targets = new ArrayList<>(new TreeSet<>(target.keySet()));
+        TopKLinks.Collector collector = new TopKLinks.Collector(sources, targets, k, relativeThreshold);
+        search(weights, targets, (searcher, columns, filter) -> {
+            RowPartitioner.scoreRows(sources.size(), parallelism, 1, (from, to) -> {
+                boolean[] hit = new boolean[targets.size()];
+                for (int i = from; i < to; i++) {
+                    Query query = query(weights.row(sources.get(i)), dictionary, filter);
+                    if (query != null && k > 0) {
+                        for (ScoreDoc scoreDoc : search(searcher, query, k)) {
+                            int column = columns[scoreDoc.doc];
+                            collector.offer(i, column, scoreDoc.score);
+                            hit[column] = true;
+                        }
+                    }
+                    // Targets without a shared term score 0.0 and fill the rows that have fewer than k hits.
+                    for (int j = 0; j < hit.length; j++) {
+                        if (!hit[j] && collector.entryScore(i) <= 0.0) collector.offer(i, j, 0.0);
+                        hit[j] = false;
+                    }
+                }
+            });
+        });
+        return collector.finish();
+    }
+
+    /**
+     * @return a disjunction of the terms of a row, boosted by their weights and restricted to the targets, or null
+     *     if the row has no weighted term
+     */
+    private static Query query(Row row, TermDictionary dictionary, Query filter) {
+        List<Query> terms = new ArrayList<>();
+        for (int k = 0; k < row.terms().length; k++) {
+            if (row.weights()[k] == 0.0) continue;
+            Query term = new TermQuery(new Term(TERMS_FIELD, dictionary.getTerm(row.terms()[k])));
+            terms.add(new BoostQuery(term, (float) row.weights()[k]));
+        }
+        if (terms.isEmpty()) {
+            return null;
+        }
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        if (terms.size() < CLAUSES_PER_GROUP) {
+            for (Query term : terms) {
+                builder.add(term, BooleanClause.Occur.SHOULD);
+            }
+        } else {
+            // Long code artifacts can have more distinct terms than Lucene's default limit of 1024 clauses per query.
+            for (int from = 0; from < terms.size(); from += CLAUSES_PER_GROUP) {
+                BooleanQuery.Builder group = new BooleanQuery.Builder();
+                for (Query term : terms.subList(from, Math.min(terms.size(), from + CLAUSES_PER_GROUP))) {
+                    group.add(term, BooleanClause.Occur.SHOULD);
+                }
+                builder.add(group.build(), BooleanClause.Occur.SHOULD);
+            }
+        }
+        builder.add(filter, BooleanClause.Occur.FILTER);
+        builder.setMinimumNumberShouldMatch(1);
+        return builder.build();
+    }
+
+    private static ScoreDoc[] search(IndexSearcher searcher, Query query, int k) {
+        try {
+            return searcher.search(query, k).scoreDocs;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not search the Lucene index", e);
+        }
+    }
+
+    private static void search(IndexSearcher searcher, Query query, RowCollector collector) {
+        try {
+            searcher.search(query, collector);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not search the Lucene index", e);
+        }
+    }
+
+    private interface IndexTask {
+        void run(IndexSearcher searcher, int[] columns, Query filter) throws IOException;
+    }
+
+    /**
+     * Open (or write) the index of the union and run a task against it.
+     *
+     * @param targets target ids in column order
+     */
+    private static void search(UnionWeights weights, List<String> targets, IndexTask task) {
+        String key = LatentSpace.corpusKey(weights.bothSourceAndTarget, "lucene-vsm");
+        Map<String, Integer> targetColumns = new HashMap<>();
+        for (int j = 0; j < targets.size(); j++) {
+            targetColumns.put(targets.get(j), j);
+        }
+        try (Directory directory = open(weights, key);
+                DirectoryReader reader = DirectoryReader.open(directory)) {
+            IndexSearcher searcher = new IndexSearcher(reader);
+            searcher.setSimilarity(new WeightSimilarity());
+
+            int[] columns = new int[reader.maxDoc()];
+            Set<String> idOnly = Set.of(ID_FIELD);
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                columns[doc] = targetColumns.getOrDefault(reader.document(doc, idOnly).get(ID_FIELD), -1);
+            }
+            List<BytesRef> targetIds = new ArrayList<>();
+            for (String id : targets) {
+                targetIds.add(new BytesRef(id));
+            }
+            task.run(searcher, columns, new TermInSetQuery(ID_FIELD, targetIds));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not search the Lucene index " + key, e);
+        }
+    }
+
+    /**
+     * Open the stored index of the union if its commit carries the same key, or index the union again.
+     */
+    private static Directory open(UnionWeights weights, String key) throws IOException {
+        synchronized (INDEX_LOCK) {
+            return openOrWrite(weights, key);
+        }
+    }
+
+    private static Path indexRoot() {
+        return Path.of(System.getProperty(
+                DIRECTORY_PROPERTY, Path.of(System.getProperty("java.io.tmpdir"), "triad-lucene").toString()));
+    }
+
+    private static Directory openOrWrite(UnionWeights weights, String key) throws IOException {
+        Path path = indexRoot().resolve(key);
+        try {
+            Files.createDirectories(path);
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            Directory directory = new MMapDirectory(path);
+            prune(path);
+            if (DirectoryReader.indexExists(directory)) {
+                try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                    if (key.equals(reader.getIndexCommit().getUserData().get(KEY_DATA))) {
+                        logger.info("Opened Lucene index {}", path);
+                        return directory;
+                    }
+                }
+            }
+            write(directory, weights, key);
+            logger.info("Stored Lucene index in {}", path);
+            return directory;
+        } catch (IOException e) {
+            logger.warn("Could not store Lucene index {}, indexing in memory: {}", path, e.getMessage());
+            Directory directory = new ByteBuffersDirectory();
+            write(directory, weights, key);
+            return directory;
+        }
+    }
+
+    /**
+     * Delete the least recently used indexes next to {@code current} beyond the configured number. Failing to delete
+     * one only costs disk space.
+     */
+    private static void prune(Path current) {
+        int maxIndexes = Math.max(1, Integer.getInteger(MAX_INDEXES_PROPERTY, DEFAULT_MAX_INDEXES));
+        List<Path> indexes;
+        try (Stream<Path> children = Files.list(current.getParent())) {
+            indexes = new ArrayList<>(children.filter(Files::isDirectory).toList());
+        } catch (IOException e) {
+            logger.warn("Could not list Lucene indexes in {}: {}", current.getParent(), e.getMessage());
+            return;
+        }
+        indexes.remove(current);
+        indexes.sort(Comparator.comparing(LuceneVSM::lastModified).reversed());
+        for (Path stale : indexes.subList(Math.min(indexes.size(), maxIndexes - 1), indexes.size())) {
+            try (Stream<Path> files = Files.walk(stale)) {
+                for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.deleteIfExists(file);
+                }
+                logger.info("Deleted least recently used Lucene index {}", stale);
+            } catch (IOException e) {
+                logger.warn("Could not delete Lucene index {}: {}", stale, e.getMessage());
+            }
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static void write(Directory directory, UnionWeights weights, String key) throws IOException {
+        IndexWriterConfig config = new IndexWriterConfig()
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setSimilarity(new WeightSimilarity())
+                .setMergePolicy(new LogDocMergePolicy());
+        // Every artifact is indexed once, whether it is a source, a target or both, and weighted only then.
+        try (IndexWriter writer = new IndexWriter(directory, config)) {
+            for (String id : new TreeSet<>(weights.bothSourceAndTarget.keySet())) {
+                Document document = new Document();
+                document.add(new StringField(ID_FIELD, id, Field.Store.YES));
+                document.add(new Field(TERMS_FIELD, new WeightedTerms(weights.row(id), weights.dictionary), TERMS_TYPE));
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+            writer.setLiveCommitData(Map.of(KEY_DATA, key).entrySet());
+            writer.commit();
+        }
+    }
+
+    /**
+     * Emits every weighted term of one row once, with its quantized weight as term frequency.
+     */
+    private static final class WeightedTerms extends TokenStream {
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final TermFrequencyAttribute frequencyAttribute = addAttribute(TermFrequencyAttribute.class);
+        private final Row row;
+        private final TermDictionary dictionary;
+        private int position;
+
+        WeightedTerms(Row row, TermDictionary dictionary) {
+            this.row = row;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            position = 0;
+        }
+
+        @Override
+        public boolean incrementToken() {
+            while (position < row.terms().length) {
+                int frequency = Math.round((float) row.weights()[position] * SCALE);
+                String term = dictionary.getTerm(row.terms()[position]);
+                position++;
+                if (frequency > 0) {
+                    clearAttributes();
+                    termAttribute.setEmpty().append(term);
+                    frequencyAttribute.setTermFrequency(frequency);
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Scores a term as its query boost times its quantized document weight.
+     */
+    private static final class WeightSimilarity extends Similarity {
+        @Override
+        public long computeNorm(FieldInvertState state) {
+            return 1L;
+        }
+
+        @Override
+        public SimScorer scorer(float boost, CollectionStatistics collectionStats, TermStatistics... termStats) {
+            return new SimScorer() {
+                @Override
+                public float score(float freq, long norm) {
+                    return boost * freq / SCALE;
+                }
+            };
+        }
+    }
+
+    /**
+     * Stores the score of every matching target in one row of a similarity matrix.
+     */
+    private static final class RowCollector extends SimpleCollector {
+        private final int[] columns;
+        private final SimilarityMatrix sims;
+        private final int row;
+        private Scorable scorer;
+        private int docBase;
+
+        RowCollector(int[] columns, SimilarityMatrix sims, int row) {
+            this.columns = columns;
+            this.sims = sims;
+            this.row = row;
+        }
+
+        @Override
+        protected void doSetNextReader(LeafReaderContext context) {
+            docBase = context.docBase;
+        }
+
+        @Override
+        public void setScorer(Scorable scorer) {
+            this.scorer = scorer;
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            sims.storeScore(row, columns[docBase + doc], scorer.score());
+        }
+
+        @Override
+        public ScoreMode scoreMode() {
+            return ScoreMode.COMPLETE;
+        }
+    }
+
+    @Override
+    public String getModelName() {
+        return "LuceneVSM";
+    }
+
+    @Override
+    public int getParallelism() {
+        return parallelism;
+    }
+}
@@ -0,0 +1,286 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Score array for a row-major {@code rows × columns} grid, stored as 32-bit floats in a memory-mapped file instead of
+ * on the heap, so a grid may be larger than the heap or physical memory; the operating system pages it in and out.
+ * <p>
+ * Cells are laid out in square tiles of {@value #TILE} × {@value #TILE} (16 KB), tile after tile along a row of
+ * tiles. A tile is a contiguous page run, so walking a row, a column, or a block of rows and columns touches few
+ * pages, which keeps Transitivity's column lookups and the row-partitioned kernels from thrashing.
+ * <p>
+ * The array records which cells hold a score: each cell is stored XOR the bits of {@link Float#NaN}, so the zero
+ * bytes of a freshly extended file read as NaN, meaning absent, and need no initialisation. Storing NaN clears a
+ * cell. The file holds nothing but the tiles; {@link SimilarityMatrix#save} writes the identifiers beside it.
+ * <p>
+ * A scratch grid is used by setting {@value #STORE_PROPERTY}{@code =mapped}: every similarity matrix of at least
+ * {@value #MIN_CELLS_PROPERTY} cells (default {@value #DEFAULT_MIN_CELLS}) is then mapped to a file in
+ * {@value #DIRECTORY_PROPERTY} (default {@code <java.io.tmpdir>/triad-scores}). The file is deleted as soon as its
+ * matrix grows into a new grid, when the {@link ScratchStore} it was created in is closed, or at the latest when the
+ * JVM exits.
+ */
+final class MappedScoreArray extends ScoreArray {
+    static final String STORE_PROPERTY = "triad.similarity.store";
+    static final String DIRECTORY_PROPERTY = "triad.similarity.dir";
+    static final String MIN_CELLS_PROPERTY = "triad.similarity.mapCells";
+    static final long DEFAULT_MIN_CELLS = 1L << 24;
+
+    static final int TILE = 64;
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_MASK = TILE - 1;
+    private static final int TILE_BYTES_SHIFT = 2 * TILE_SHIFT + 2;
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+    private static final int ABSENT = Float.floatToRawIntBits(Float.NaN);
+
+    private final Path file;
+    private final int rows;
+    private final int columns;
+    private final int tilesPerRow;
+    private final MappedByteBuffer[] chunks;
+    // The store deleting this scratch file, or null for files that are not scratch or outlive every store.
+    private ScratchStore store;
+    private final boolean scratch;
+
+    private MappedScoreArray(Path file, int rows, int columns, boolean create) {
+        this(file, rows, columns, create, false);
+    }
+
+    private MappedScoreArray(Path file, int rows, int columns, boolean create, boolean scratch) {
+        this.file = file;
+        this.scratch = scratch;
+        this.rows = rows;
+        this.columns = columns;
+        this.tilesPerRow = (columns + TILE_MASK) >>> TILE_SHIFT;
+        long bytes = byteSize(rows, columns);
+        try (FileChannel channel = create
+                ? FileChannel.open(
+                        file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (create) {
+                // Extend sparsely: the file system hands out zero pages, which read as absent cells.
+                channel.write(ByteBuffer.allocate(1), bytes - 1);
+            } else if (channel.size() != bytes) {
+                throw new IllegalStateException(
+                        "Expected " + bytes + " bytes for a " + rows + "x" + columns + " grid in " + file + " but found "
+                                + channel.size());
+            }
+            this.chunks = new MappedByteBuffer[(int) ((bytes + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_MASK + 1, bytes - start));
+                chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map similarity scores in " + file, e);
+        }
+    }
+
+    /**
+     * Create (or truncate) the file and map an empty grid onto it.
+     */
+    static MappedScoreArray create(Path file, int rows, int columns) {
+        return new MappedScoreArray(file, rows, columns, true);
+    }
+
+    /**
+     * Map a grid previously written with the same dimensions.
+     */
+    static MappedScoreArray open(Path file, int rows, int columns) {
+        return new MappedScoreArray(file, rows, columns, false);
+    }
+
+    /**
+     * Map an empty grid onto a new file in {@code directory}, owned by the current {@link ScratchStore} and deleted
+     * when the JVM exits at the latest.
+     */
+    static MappedScoreArray scratch(Path directory, int rows, int columns) {
+        try {
+            Files.createDirectories(directory);
+            Path file = Files.createTempFile(directory, "scores-", ".tiles");
+            file.toFile().deleteOnExit();
+            MappedScoreArray array = new MappedScoreArray(file, rows, columns, true, true);
+            array.moveTo(ScratchStore.current());
+            return array;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create a score file in " + directory, e);
+        }
+    }
+
+    /**
+     * @return the directory to map a grid of {@code cells} cells into, or null if it belongs on the heap
+     */
+    static Path scratchDirectory(long cells) {
+        if (cells < Long.getLong(MIN_CELLS_PROPERTY, DEFAULT_MIN_CELLS)) {
+            return null;
+        }
+        return configuredDirectory();
+    }
+
+    /**
+     * @return the directory mapped grids are kept in, or null unless {@value #STORE_PROPERTY}{@code =mapped}
+     */
+    static Path configuredDirectory() {
+        if (!"mapped".equals(System.getProperty(STORE_PROPERTY, "heap").toLowerCase(Locale.ROOT))) {
+            return null;
+        }
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory != null
+                ? Path.of(directory)
+                : Path.of(System.getProperty("java.io.tmpdir"), "triad-scores");
+    }
+
+    /**
+     * @return the file size of a {@code rows × columns} grid, rounded up to whole tiles
+     */
+    static long byteSize(int rows, int columns) {
+        long tileRows = (rows + TILE_MASK) >>> TILE_SHIFT;
+        long tileColumns = (columns + TILE_MASK) >>> TILE_SHIFT;
+        return (tileRows * tileColumns) << TILE_BYTES_SHIFT;
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    /**
+     * Write modified pages back to the file.
+     */
+    void force() {
+        for (MappedByteBuffer chunk : chunks) {
+            chunk.force();
+        }
+    }
+
+    @Override
+    ScorePrecision precision() {
+        return ScorePrecision.FLOAT;
+    }
+
+    @Override
+    long length() {
+        return (long) rows * columns;
+    }
+
+    /**
+     * @return the stored score, or NaN if the cell is absent
+     */
+    @Override
+    double get(long index) {
+        return Float.intBitsToFloat(raw(index) ^ ABSENT);
+    }
+
+    @Override
+    void set(long index, double value) {
+        putRaw(index, Float.floatToRawIntBits((float) value) ^ ABSENT);
+    }
+
+    @Override
+    ScoreArray allocateGrid(int rows, int columns) {
+        return scratch(file.toAbsolutePath().getParent(), rows, columns);
+    }
+
+    @Override
+    boolean tracksPresence() {
+        return true;
+    }
+
+    /**
+     * Delete the file of a scratch grid; files of saved matrices are left alone. The operating system keeps the
+     * pages mapped until the buffers are collected, but this array must not be used any more.
+     */
+    @Override
+    void release() {
+        if (!scratch) {
+            return;
+        }
+        synchronized (this) {
+            if (store != null) {
+                store.remove(this);
+                store = null;
+            }
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Some platforms refuse to delete a mapped file; it is still deleted when the JVM exits.
+        }
+    }
+
+    /**
+     * Hand this scratch grid to another store, or to none if {@code newStore} is null.
+     */
+    synchronized void moveTo(ScratchStore newStore) {
+        store = newStore;
+        if (newStore != null) {
+            newStore.add(this);
+        }
+    }
+
+    /**
+     * Copy cells, including their presence. When both arrays have the same layout the tiles are copied as a whole.
+     */
+    @Override
+    void copyTo(long from, ScoreArray destination, long to, long length) {
+        if (destination instanceof MappedScoreArray mapped) {
+            if (from == 0 && to == 0 && length == length() && mapped.rows == rows && mapped.columns == columns) {
+                for (int i = 0; i < chunks.length; i++) {
+                    mapped.chunks[i].put(0, chunks[i], 0, chunks[i].limit());
+                }
+                return;
+            }
+            for (long i = 0; i < length; i++) {
+                mapped.putRaw(to + i, raw(from + i));
+            }
+            return;
+        }
+        for (long i = 0; i < length; i++) {
+            destination.set(to + i, get(from + i));
+        }
+    }
+
+    @Override
+    void swap(long i, long j) {
+        int value = raw(i);
+        putRaw(i, raw(j));
+        putRaw(j, value);
+    }
+
+    private int raw(long index) {
+        long offset = offset(index);
+        return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+    }
+
+    private void putRaw(long index, int value) {
+        long offset = offset(index);
+        chunks[(int) (offset >>> CHUNK_SHIFT)].putInt((int) (offset & CHUNK_MASK), value);
+    }
+
+    private long offset(long index) {
+        int row = (int) (index / columns);
+        int column = (int) (index - (long) row * columns);
+        long tile = (long) (row >>> TILE_SHIFT) * tilesPerRow + (column >>> TILE_SHIFT);
+        int inTile = ((row & TILE_MASK) << TILE_SHIFT) | (column & TILE_MASK);
+        return (tile << TILE_BYTES_SHIFT) + ((long) inTile << 2);
+    }
+}
@@ -0,0 +1,215 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Arrays;
+
+/**
+ * Exact top-k cosine retrieval over an {@link InvertedIndex} with MaxScore dynamic pruning.
+ * <p>
+ * Every term gets an upper bound on what it can add to a cosine: the query weight times the largest
+ * length-normalised weight in the term's postings, divided by the query norm. Query terms are sorted by bound.
+ * Once a source's heap of k links is full, the longest prefix of terms whose bounds together stay below the entry
+ * score of the heap is <em>non-essential</em>: a document containing only those terms cannot enter the top k. The
+ * postings of the remaining <em>essential</em> terms are traversed document at a time, and a candidate is scored
+ * only if its essential bounds plus the non-essential prefix can still beat the heap.
+ * <p>
+ * Candidates that survive are scored by merging the query row with the document row in ascending term order, so
+ * every score is bit-identical to the full product; bounds only decide what is skipped. Documents sharing no term
+ * with the query score 0.0 and are offered afterwards while they can still enter the heap, which keeps ties in
+ * target order exactly as for a full row.
+ * <p>
+ * An instance holds the postings, norms and term maxima of one set of documents, so repeated queries against the
+ * same documents, as in {@link VSMIndex}, do not index them again.
+ */
+final class MaxScore {
+    // Bounds are sums of rounded products; a little slack keeps them above the exactly rounded scores.
+    private static final double BOUND_SLACK = 1e-9;
+    // Low bits of a sort key that hold the position of a query term instead of bound mantissa bits.
+    private static final long POSITION_MASK = 0xFFFFFFFFL;
+
+    private final TermDocumentMatrix documents;
+    private final double[] documentNorms;
+    private final InvertedIndex index;
+    private final double[] termMaxima;
+
+    /**
+     * Index document rows once, so that any number of queries can be scored against them.
+     *
+     * @param documents document rows, in the column order of every collector passed in
+     */
+    MaxScore(TermDocumentMatrix documents) {
+        this.documents = documents;
+        this.documentNorms = CosineKernel.norms(documents);
+        this.index = new InvertedIndex(documents);
+        this.termMaxima = termMaxima(index, documentNorms);
+    }
+
+    /**
+     * Stream the best documents of every query row into a top-k collector.
+     *
+     * @param queries query rows, in the row order of the collector
+     * @param documents document rows, in the column order of the collector
+     * @param collector receives at least every link that belongs to the top k of its row
+     * @param parallelism number of threads scoring query rows
+     */
+    static void computeTopK(
+            TermDocumentMatrix queries,
+            TermDocumentMatrix documents,
+            TopKLinks.Collector collector,
+            int parallelism) {
+        new MaxScore(documents).computeTopK(queries, collector, parallelism);
+    }
+
+    /**
+     * Stream the best indexed documents of every query row into a top-k collector.
+     *
+     * @param queries query rows, in the row order of the collector
+     * @param collector receives at least every link that belongs to the top k of its row
+     * @param parallelism number of threads scoring query rows
+     */
+    void computeTopK(TermDocumentMatrix queries, TopKLinks.Collector collector, int parallelism) {
+        double[] queryNorms = CosineKernel.norms(queries);
+        RowPartitioner.scoreRows(queries.numDocs(), parallelism, 1, (from, to) -> {
+            int[] visited = new int[documents.numDocs()];
+            Arrays.fill(visited, -1);
+            for (int i = from; i < to; i++) {
+                scoreRow(queries, i, queryNorms[i], collector, i, visited);
+            }
+        });
+    }
+
+    /**
+     * Stream the best indexed documents of query row {@code i} into row {@code row} of a top-k collector.
+     *
+     * @param visited one slot per document, none of them holding {@code i} yet
+     */
+    void scoreRow(
+            TermDocumentMatrix queries,
+            int i,
+            double queryNorm,
+            TopKLinks.Collector collector,
+            int row,
+            int[] visited) {
+        if (queryNorm != 0.0) {
+            scoreQuery(queries, i, queryNorm, collector, row, visited);
+        }
+        // Documents without a shared term score 0.0; they matter only while 0.0 can still enter the heap.
+        for (int j = 0; j < documents.numDocs(); j++) {
+            if (collector.entryScore(row) > 0.0) break;
+            if (visited[j] != i) collector.offer(row, j, 0.0);
+        }
+    }
+
+    private void scoreQuery(
+            TermDocumentMatrix queries,
+            int i,
+            double queryNorm,
+            TopKLinks.Collector collector,
+            int row,
+            int[] visited) {
+        int numTerms = 0;
+        for (int k = queries.rowStart(i); k < queries.rowEnd(i); k++) {
+            int term = queries.termAt(k);
+            if (term < index.numTerms() && index.postingsStart(term) < index.postingsEnd(term)) numTerms++;
+        }
+        int[] terms = new int[numTerms];
+        double[] bounds = new double[numTerms];
+        // Non-negative doubles order like their bits, so the high half of the bits followed by the term's position
+        // sorts terms by bound on a primitive array. Bounds closer than 2^-20 relative may swap, which only changes
+        // how much is pruned: any order of the terms yields the same links.
+        long[] order = new long[numTerms];
+        int n = 0;
+        for (int k = queries.rowStart(i); k < queries.rowEnd(i); k++) {
+            int term = queries.termAt(k);
+            if (term < index.numTerms() && index.postingsStart(term) < index.postingsEnd(term)) {
+                terms[n] = term;
+                bounds[n] = Math.abs(queries.valueAt(k)) * termMaxima[term] / queryNorm;
+                order[n] = (Double.doubleToLongBits(bounds[n]) & ~POSITION_MASK) | n;
+                n++;
+            }
+        }
+        Arrays.sort(order);
+
+        // Cursors and bounds in ascending bound order; prefix[e] bounds the first e (non-essential) terms.
+        int[] cursors = new int[numTerms];
+        int[] ends = new int[numTerms];
+        double[] sortedBounds = new double[numTerms];
+        double[] prefix = new double[numTerms + 1];
+        for (int t = 0; t < numTerms; t++) {
+            int position = (int) (order[t] & POSITION_MASK);
+            cursors[t] = index.postingsStart(terms[position]);
+            ends[t] = index.postingsEnd(terms[position]);
+            sortedBounds[t] = bounds[position];
+            prefix[t + 1] = prefix[t] + sortedBounds[t];
+        }
+
+        int essential = 0;
+        double entry = collector.entryScore(row);
+        while (true) {
+            int candidate = Integer.MAX_VALUE;
+            for (int t = essential; t < numTerms; t++) {
+                if (cursors[t] < ends[t]) candidate = Math.min(candidate, index.documentAt(cursors[t]));
+            }
+            if (candidate == Integer.MAX_VALUE) break;
+
+            double upper = prefix[essential];
+            for (int t = essential; t < numTerms; t++) {
+                if (cursors[t] < ends[t] && index.documentAt(cursors[t]) == candidate) {
+                    upper += sortedBounds[t];
+                    cursors[t]++;
+                }
+            }
+            visited[candidate] = i;
+            if (upper + BOUND_SLACK * upper < entry) continue;
+
+            double cross = queryNorm * documentNorms[candidate];
+            double dot = dot(queries, i, documents, candidate);
+            collector.offer(row, candidate, cross != 0.0 ? dot / cross : 0.0);
+
+            double updated = collector.entryScore(row);
+            if (updated != entry) {
+                entry = updated;
+                while (essential < numTerms && prefix[essential + 1] + BOUND_SLACK * prefix[essential + 1] < entry) {
+                    essential++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dot product of two sparse rows, adding up matching terms in ascending term order like the blocked product.
+     */
+    private static double dot(TermDocumentMatrix queries, int i, TermDocumentMatrix documents, int j) {
+        double dot = 0.0;
+        int a = queries.rowStart(i);
+        int b = documents.rowStart(j);
+        while (a < queries.rowEnd(i) && b < documents.rowEnd(j)) {
+            int queryTerm = queries.termAt(a);
+            int documentTerm = documents.termAt(b);
+            if (queryTerm == documentTerm) {
+                dot += queries.valueAt(a++) * documents.valueAt(b++);
+            } else if (queryTerm < documentTerm) {
+                a++;
+            } else {
+                b++;
+            }
+        }
+        return dot;
+    }
+
+    /**
+     * @return for every term, the largest absolute posting weight divided by the norm of its document
+     */
+    private static double[] termMaxima(InvertedIndex index, double[] documentNorms) {
+        double[] maxima = new double[index.numTerms()];
+        for (int term = 0; term < index.numTerms(); term++) {
+            for (int p = index.postingsStart(term); p < index.postingsEnd(term); p++) {
+                double norm = documentNorms[index.documentAt(p)];
+                if (norm != 0.0) {
+                    maxima[term] = Math.max(maxima[term], Math.abs(index.weightAt(p)) / norm);
+                }
+            }
+        }
+        return maxima;
+    }
+}
@@ -0,0 +1,89 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import io.github.ardoco.triad.util.Parallelism;
+
+/**
+ * Splits the query rows of a similarity computation into contiguous blocks and scores them on a ForkJoin pool.
+ * <p>
+ * Every block writes only its own rows of the result, so the output does not depend on how blocks are scheduled.
+ * The parallelism level defaults to the number of available processors and can be overridden with
+ * {@code -Dtriad.ir.parallelism=N}; a level of 1 runs everything on the calling thread.
+ */
+final class RowPartitioner {
+    static final String PARALLELISM_PROPERTY = "triad.ir.parallelism";
+
+    /** Blocks per worker thread, so that uneven rows still balance across the pool. */
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private static final Map<Integer, ForkJoinPool> pools = new ConcurrentHashMap<>();
+
+    private RowPartitioner() {}
+
+    /**
+     * Scores a contiguous range of query rows.
+     */
+    interface RowBlockScorer {
+        void scoreRows(int from, int to);
+    }
+
+    /**
+     * @return the parallelism level configured via {@value #PARALLELISM_PROPERTY}, at least 1
+     */
+    static int configuredParallelism() {
+        return Parallelism.configured(PARALLELISM_PROPERTY);
+    }
+
+    /**
+     * @return the shared pool for a parallelism level
+     */
+    static ForkJoinPool pool(int parallelism) {
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
+    }
+
+    /**
+     * Score rows {@code 0 .. rows} in blocks whose size is a multiple of {@code granularity}, and wait for all of
+     * them to finish.
+     */
+    static void scoreRows(int rows, int parallelism, int granularity, RowBlockScorer scorer) {
+        if (parallelism <= 1 || rows <= granularity) {
+            scorer.scoreRows(0, rows);
+            return;
+        }
+        int blocks = parallelism * BLOCKS_PER_THREAD;
+        int blockSize = Math.max(granularity, (rows + blocks - 1) / blocks);
+        blockSize = (blockSize + granularity - 1) / granularity * granularity;
+        pool(parallelism).invoke(new RowBlockTask(scorer, 0, rows, blockSize));
+    }
+
+    private static final class RowBlockTask extends RecursiveAction {
+        private final RowBlockScorer scorer;
+        private final int from;
+        private final int to;
+        private final int blockSize;
+
+        RowBlockTask(RowBlockScorer scorer, int from, int to, int blockSize) {
+            this.scorer = scorer;
+            this.from = from;
+            this.to = to;
+            this.blockSize = blockSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= blockSize) {
+                scorer.scoreRows(from, to);
+                return;
+            }
+            int blocks = (to - from + blockSize - 1) / blockSize;
+            int middle = from + blocks / 2 * blockSize;
+            invokeAll(
+                    new RowBlockTask(scorer, from, middle, blockSize), new RowBlockTask(scorer, middle, to, blockSize));
+        }
+    }
+}
@@ -0,0 +1,421 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.file.Path;
+
+/**
+ * Fixed-length array of scores or weights stored in a {@link ScorePrecision}. Values are read and written as
+ * {@code double} and rounded on every write. Indices are {@code long} so that a {@link MappedScoreArray} can hold
+ * more than {@code 2^31} cells; heap arrays are limited to {@code int} lengths.
+ * <p>
+ * Distinct indices may be written from different threads at the same time, as the row-partitioned kernels do.
+ */
+abstract class ScoreArray {
+
+    /**
+     * @return a zero-filled array of the given precision
+     */
+    static ScoreArray allocate(ScorePrecision precision, int length) {
+        return switch (precision) {
+            case DOUBLE -> new Doubles(new double[length]);
+            case FLOAT -> new Floats(new float[length]);
+            case FIXED16 -> new Fixed16(new short[length]);
+            case FIXED8 -> new Fixed8(new byte[length]);
+        };
+    }
+
+    /**
+     * @param arena the arena owning {@code buffer}; every access fails once it is closed
+     * @return an array of {@code length} values of the given precision in {@code buffer}, which must hold exactly
+     *     that many; {@link ScorePrecision#DOUBLE} and {@link ScorePrecision#FLOAT} only, as used for term weights
+     */
+    static ScoreArray direct(ScorePrecision precision, ByteBuffer buffer, TermArena arena) {
+        return switch (precision) {
+            case DOUBLE -> new DirectDoubles(buffer.asDoubleBuffer(), arena);
+            case FLOAT -> new DirectFloats(buffer.asFloatBuffer(), arena);
+            default -> throw new IllegalArgumentException("No direct storage for " + precision + " values");
+        };
+    }
+
+    /**
+     * @return an array for a row-major {@code rows × columns} grid of similarity scores: mapped to a scratch file if
+     *     {@code -Dtriad.similarity.store=mapped} covers a grid of that size, otherwise on the heap
+     */
+    static ScoreArray allocateGrid(ScorePrecision precision, int rows, int columns) {
+        Path directory = MappedScoreArray.scratchDirectory((long) rows * columns);
+        return directory != null
+                ? MappedScoreArray.scratch(directory, rows, columns)
+                : allocate(precision, Math.toIntExact((long) rows * columns));
+    }
+
+    /**
+     * @return an array of the given precision holding {@code values}; a {@link ScorePrecision#DOUBLE} array wraps
+     *     them without copying
+     */
+    static ScoreArray of(ScorePrecision precision, double[] values) {
+        if (precision == ScorePrecision.DOUBLE) {
+            return new Doubles(values);
+        }
+        ScoreArray array = allocate(precision, values.length);
+        for (int i = 0; i < values.length; i++) {
+            array.set(i, values[i]);
+        }
+        return array;
+    }
+
+    abstract ScorePrecision precision();
+
+    abstract long length();
+
+    abstract double get(long index);
+
+    abstract void set(long index, double value);
+
+    /**
+     * @return a new, empty array for a row-major {@code rows × columns} grid backed like this one
+     */
+    ScoreArray allocateGrid(int rows, int columns) {
+        return allocate(precision(), Math.toIntExact((long) rows * columns));
+    }
+
+    /**
+     * Free the storage of an array that is no longer used, such as the scratch file of a mapped grid. Heap arrays
+     * are left to the collector.
+     */
+    void release() {}
+
+    /**
+     * @return true if the array itself records which cells hold a value: absent cells read as NaN, and storing NaN
+     *     clears a cell. Other arrays need a separate presence flag per cell.
+     */
+    boolean tracksPresence() {
+        return false;
+    }
+
+    /**
+     * Copy {@code length} stored values to an array of the same precision, like {@link System#arraycopy}. The
+     * values are copied as stored, without rounding them again.
+     */
+    abstract void copyTo(long from, ScoreArray destination, long to, long length);
+
+    /**
+     * Copy value by value, for a destination of the same precision but another backing store. Since both round
+     * the same way, this does not change the stored values either.
+     */
+    final void copyEach(long from, ScoreArray destination, long to, long length) {
+        if (from < to && destination == this) {
+            for (long i = length - 1; i >= 0; i--) {
+                destination.set(to + i, get(from + i));
+            }
+        } else {
+            for (long i = 0; i < length; i++) {
+                destination.set(to + i, get(from + i));
+            }
+        }
+    }
+
+    /**
+     * Swap the stored values at two indices.
+     */
+    abstract void swap(long i, long j);
+
+    /**
+     * @throws IllegalStateException if the storage of this array was released with its {@link TermArena}
+     */
+    void checkOpen() {}
+
+    private static final class Doubles extends ScoreArray {
+        private final double[] values;
+
+        Doubles(double[] values) {
+            this.values = values;
+        }
+
+        @Override
+        ScorePrecision precision() {
+            return ScorePrecision.DOUBLE;
+        }
+
+        @Override
+        long length() {
+            return values.length;
+        }
+
+        @Override
+        double get(long index) {
+            return values[(int) index];
+        }
+
+        @Override
+        void set(long index, double value) {
+            values[(int) index] = value;
+        }
+
+        @Override
+        void copyTo(long from, ScoreArray destination, long to, long length) {
+            if (destination instanceof Doubles array) {
+                System.arraycopy(values, (int) from, array.values, (int) to, (int) length);
+            } else {
+                copyEach(from, destination, to, length);
+            }
+        }
+
+        @Override
+        void swap(long i, long j) {
+            double value = values[(int) i];
+            values[(int) i] = values[(int) j];
+            values[(int) j] = value;
+        }
+    }
+
+    private static final class Floats extends ScoreArray {
+        private final float[] values;
+
+        Floats(float[] values) {
+            this.values = values;
+        }
+
+        @Override
+        ScorePrecision precision() {
+            return ScorePrecision.FLOAT;
+        }
+
+        @Override
+        long length() {
+            return values.length;
+        }
+
+        @Override
+        double get(long index) {
+            return values[(int) index];
+        }
+
+        @Override
+        void set(long index, double value) {
+            values[(int) index] = (float) value;
+        }
+
+        @Override
+        void copyTo(long from, ScoreArray destination, long to, long length) {
+            if (destination instanceof Floats array) {
+                System.arraycopy(values, (int) from, array.values, (int) to, (int) length);
+            } else {
+                copyEach(from, destination, to, length);
+            }
+        }
+
+        @Override
+        void swap(long i, long j) {
+            float value = values[(int) i];
+            values[(int) i] = values[(int) j];
+            values[(int) j] = value;
+        }
+    }
+
+    private static final class Fixed16 extends ScoreArray {
+        private static final double SCALE = Short.MAX_VALUE;
+
+        private final short[] values;
+
+        Fixed16(short[] values) {
+            this.values = values;
+        }
+
+        @Override
+        ScorePrecision precision() {
+            return ScorePrecision.FIXED16;
+        }
+
+        @Override
+        long length() {
+            return values.length;
+        }
+
+        @Override
+        double get(long index) {
+            return values[(int) index] / SCALE;
+        }
+
+        @Override
+        void set(long index, double value) {
+            values[(int) index] = (short) Math.round(Math.max(-1.0, Math.min(1.0, value)) * SCALE);
+        }
+
+        @Override
+        void copyTo(long from, ScoreArray destination, long to, long length) {
+            if (destination instanceof Fixed16 array) {
+                System.arraycopy(values, (int) from, array.values, (int) to, (int) length);
+            } else {
+                copyEach(from, destination, to, length);
+            }
+        }
+
+        @Override
+        void swap(long i, long j) {
+            short value = values[(int) i];
+            values[(int) i] = values[(int) j];
+            values[(int) j] = value;
+        }
+    }
+
+    private static final class Fixed8 extends ScoreArray {
+        private static final double SCALE = Byte.MAX_VALUE;
+
+        private final byte[] values;
+
+        Fixed8(byte[] values) {
+            this.values = values;
+        }
+
+        @Override
+        ScorePrecision precision() {
+            return ScorePrecision.FIXED8;
+        }
+
+        @Override
+        long length() {
+            return values.length;
+        }
+
+        @Override
+        double get(long index) {
+            return values[(int) index] / SCALE;
+        }
+
+        @Override
+        void set(long index, double value) {
+            values[(int) index] = (byte) Math.round(Math.max(-1.0, Math.min(1.0, value)) * SCALE);
+        }
+
+        @Override
+        void copyTo(long from, ScoreArray destination, long to, long length) {
+            if (destination instanceof Fixed8 array) {
+                System.arraycopy(values, (int) from, array.values, (int) to, (int) length);
+            } else {
+                copyEach(from, destination, to, length);
+            }
+        }
+
+        @Override
+        void swap(long i, long j) {
+            byte value = values[(int) i];
+            values[(int) i] = values[(int) j];
+            values[(int) j] = value;
+        }
+    }
+
+    private static final class DirectDoubles extends ScoreArray {
+        private final DoubleBuffer values;
+        private final TermArena arena;
+
+        DirectDoubles(DoubleBuffer values, TermArena arena) {
+            this.values = values;
+            this.arena = arena;
+        }
+
+        @Override
+        void checkOpen() {
+            arena.checkOpen();
+        }
+
+        @Override
+        ScorePrecision precision() {
+            return ScorePrecision.DOUBLE;
+        }
+
+        @Override
+        long length() {
+            return values.capacity();
+        }
+
+        @Override
+        double get(long index) {
+            arena.checkOpen();
+            return values.get((int) index);
+        }
+
+        @Override
+        void set(long index, double value) {
+            arena.checkOpen();
+            values.put((int) index, value);
+        }
+
+        @Override
+        void copyTo(long from, ScoreArray destination, long to, long length) {
+            arena.checkOpen();
+            destination.checkOpen();
+            if (destination instanceof DirectDoubles array && array != this) {
+                array.values.put((int) to, values, (int) from, (int) length);
+            } else {
+                copyEach(from, destination, to, length);
+            }
+        }
+
+        @Override
+        void swap(long i, long j) {
+            arena.checkOpen();
+            double value = values.get((int) i);
+            values.put((int) i, values.get((int) j));
+            values.put((int) j, value);
+        }
+    }
+
+    private static final class DirectFloats extends ScoreArray {
+        private final FloatBuffer values;
+        private final TermArena arena;
+
+        DirectFloats(FloatBuffer values, TermArena arena) {
+            this.values = values;
+            this.arena = arena;
+        }
+
+        @Override
+        void checkOpen() {
+            arena.checkOpen();
+        }
+
+        @Override
+        ScorePrecision precision() {
+            return ScorePrecision.FLOAT;
+        }
+
+        @Override
+        long length() {
+            return values.capacity();
+        }
+
+        @Override
+        double get(long index) {
+            arena.checkOpen();
+            return values.get((int) index);
+        }
+
+        @Override
+        void set(long index, double value) {
+            arena.checkOpen();
+            values.put((int) index, (float) value);
+        }
+
+        @Override
+        void copyTo(long from, ScoreArray destination, long to, long length) {
+            arena.checkOpen();
+            destination.checkOpen();
+            if (destination instanceof DirectFloats array && array != this) {
+                array.values.put((int) to, values, (int) from, (int) length);
+            } else {
+                copyEach(from, destination, to, length);
+            }
+        }
+
+        @Override
+        void swap(long i, long j) {
+            arena.checkOpen();
+            float value = values.get((int) i);
+            values.put((int) i, values.get((int) j));
+            values.put((int) j, value);
+        }
+    }
+}
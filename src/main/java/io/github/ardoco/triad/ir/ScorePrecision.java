@@ -0,0 +1,66 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Locale;
+
+/**
+ * Storage precision of similarity scores and term weights, set with {@code -Dtriad.score.precision}.
+ * <p>
+ * All arithmetic stays in {@code double}; a precision only decides how a value is rounded when it is stored. Scores
+ * are cosines, divergences and their averages, so they lie in {@code [-1, 1]}; the quantized modes map that range
+ * onto signed integers and clamp anything outside it. Term-document matrices hold unbounded weights and use
+ * {@link #FLOAT} storage in every reduced mode (see {@link #termPrecision()}).
+ * <p>
+ * Bytes per similarity cell, including its presence flag: 9 for {@link #DOUBLE}, 5 for {@link #FLOAT}, 3 for
+ * {@link #FIXED16} and 2 for {@link #FIXED8}. Evaluation rounds scores to four decimals; the storage error of
+ * {@link #FLOAT} and {@link #FIXED16} stays below that resolution.
+ */
+public enum ScorePrecision {
+    /** 64-bit storage; scores are stored exactly. */
+    DOUBLE(0.0),
+    /**
+     * 32-bit IEEE storage. A stored score is off by at most half an ulp, {@code 2^-25} in {@code [-1, 1]}. With float
+     * term weights as well, VSM and JSD scores differ from the double path by less than {@code 1e-6}; LSI scores
+     * additionally move with the decomposition, by the weight error over the gap between singular values.
+     */
+    FLOAT(0x1p-25),
+    /** 16-bit fixed point, {@code round(score × 32767)}: at most {@code 1 / 65534 ≈ 1.5e-5} off. */
+    FIXED16(1.0 / (2 * 32767)),
+    /** 8-bit fixed point, {@code round(score × 127)}: at most {@code 1 / 254 ≈ 3.9e-3} off; for ranking only. */
+    FIXED8(1.0 / (2 * 127));
+
+    static final String PRECISION_PROPERTY = "triad.score.precision";
+
+    private final double storageError;
+
+    ScorePrecision(double storageError) {
+        this.storageError = storageError;
+    }
+
+    /**
+     * @return the precision configured via {@value #PRECISION_PROPERTY}, {@link #DOUBLE} by default or if the value
+     *     names no precision
+     */
+    public static ScorePrecision configured() {
+        try {
+            return valueOf(System.getProperty(PRECISION_PROPERTY, "double").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return DOUBLE;
+        }
+    }
+
+    /**
+     * @return the largest absolute difference between a score in {@code [-1, 1]} and its stored value
+     */
+    public double storageError() {
+        return storageError;
+    }
+
+    /**
+     * @return the precision term-document matrices use under this score precision: {@link #DOUBLE} or
+     *     {@link #FLOAT}, since term weights have no fixed range to quantize
+     */
+    public ScorePrecision termPrecision() {
+        return this == DOUBLE ? DOUBLE : FLOAT;
+    }
+}
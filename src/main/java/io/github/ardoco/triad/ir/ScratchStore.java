@@ -0,0 +1,113 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Scope that owns the scratch files of the mapped similarity matrices built while it is open (see
+ * {@link MappedScoreArray}), typically one pipeline run.
+ * <p>
+ * With {@code -Dtriad.similarity.store=mapped}, every large similarity matrix, every {@link SimilarityMatrix#deepCopy()
+ * copy} of one and every grid a matrix grows into lives in a file of its own. A grid left behind by growing is
+ * deleted right away; all other files of a store are deleted when it is closed, except those of matrices passed to
+ * {@link #keep(SimilarityMatrix)}, such as the result of the run. Kept files, and files created outside any store,
+ * are deleted when the JVM exits.
+ * <p>
+ * Stores nest per thread like {@link TermArena}: {@link #open()} makes the new store current for the calling thread
+ * until it is closed, and work handed to other threads joins it through
+ * {@link ThreadScope#propagate(java.util.concurrent.Callable)}. A matrix whose file was deleted must not be used any
+ * more.
+ *
+ * <pre>{@code
+ * try (ScratchStore scratch = ScratchStore.open()) {
+ *     result = runStages();
+ *     scratch.keep(result);
+ * }
+ * }</pre>
+ */
+public final class ScratchStore implements AutoCloseable {
+    private static final ThreadScope<ScratchStore> SCOPES = new ThreadScope<>("Scratch stores");
+
+    private final ScratchStore enclosing;
+    private final Thread owner;
+    // Identity set of the scratch arrays created in this store that are still in use.
+    private final Map<ScoreArray, Boolean> arrays = new IdentityHashMap<>();
+    private boolean closed;
+
+    private ScratchStore(ScratchStore enclosing) {
+        this.enclosing = enclosing;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * Open a store and make it current for the calling thread.
+     */
+    public static ScratchStore open() {
+        ScratchStore store = new ScratchStore(SCOPES.current());
+        SCOPES.enter(store);
+        return store;
+    }
+
+    /**
+     * @return the store current for the calling thread, or null if there is none
+     */
+    static ScratchStore current() {
+        return SCOPES.current();
+    }
+
+    /**
+     * Keep the file of a matrix beyond this store: it moves to the enclosing store, or lives until the JVM exits.
+     */
+    public void keep(SimilarityMatrix matrix) {
+        ScoreArray array = matrix.scores();
+        boolean owned;
+        synchronized (this) {
+            owned = arrays.remove(array) != null;
+        }
+        if (owned && array instanceof MappedScoreArray mapped) {
+            mapped.moveTo(enclosing);
+        }
+    }
+
+    /**
+     * Delete the files of all matrices of this store that were not kept, and make the enclosing store, if any,
+     * current again.
+     *
+     * @throws IllegalStateException if called from another thread than the one that opened the store, or before a
+     *     store opened inside this one is closed
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        SCOPES.exit(this, enclosing, owner);
+        closed = true;
+        List<ScoreArray> released;
+        synchronized (this) {
+            released = new ArrayList<>(arrays.keySet());
+            arrays.clear();
+        }
+        for (ScoreArray array : released) {
+            array.release();
+        }
+    }
+
+    synchronized void add(ScoreArray array) {
+        arrays.put(array, Boolean.TRUE);
+    }
+
+    synchronized void remove(ScoreArray array) {
+        arrays.remove(array);
+    }
+
+    /**
+     * @return the number of scratch arrays this store would delete on close
+     */
+    synchronized int size() {
+        return arrays.size();
+    }
+}
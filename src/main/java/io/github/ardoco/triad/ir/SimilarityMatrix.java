@@ -1,54 +1,217 @@
 /* Licensed under MIT 2025. */
 package io.github.ardoco.triad.ir;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+/**
+ * Source × target similarity scores backed by a dense, row-major score array.
+ * <p>
+ * Source and target identifiers are mapped to row and column indices the first time they are seen, so reading or
+ * writing a score is a hash lookup plus an array access. A cell either holds a score or is absent; absent cells read
+ * as 0.0 through {@link #getScore(String, String)} but are not returned as links. The String-based methods are a
+ * view over the index-based ones.
+ * <p>
+ * {@link #transpose()} returns a target × source view that shares the scores and indices of this matrix, so writes
+ * through either matrix are visible in both.
+ * <p>
+ * Scores are stored in the {@link ScorePrecision} configured with {@code -Dtriad.score.precision} (double by
+ * default), so a score read back may differ from the one written by up to {@link ScorePrecision#storageError()}.
+ * <p>
+ * With {@code -Dtriad.similarity.store=mapped}, large matrices keep their scores as float tiles in a memory-mapped
+ * file instead of on the heap (see {@link MappedScoreArray}), so a matrix may exceed the heap and physical memory.
+ * Only the identifiers and per-row and per-column counts stay on the heap. {@link #save(Path)} and
+ * {@link #open(Path)} persist a matrix in the same tiled format.
+ */
 public class SimilarityMatrix {
-    private Map<String, LinksList> matrix = new HashMap<>();
+    private static final int IDS_MAGIC = 0x54524953;
+
+    private final Grid grid;
+    private final boolean transposed;
 
     /**
-     * Add a similarity score for a source-target pair.
+     * Identifiers along one dimension of the stored scores, with the number of present cells per index.
      */
-    public void addLink(String source, String target, double score) {
-        if (!matrix.containsKey(source)) {
-            matrix.put(source, new LinksList());
+    private static final class Axis {
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> index = new HashMap<>();
+        private int capacity;
+        private int[] sizes;
+        private Set<String> present;
+
+        Axis(int capacity) {
+            this.capacity = capacity;
+            this.sizes = new int[capacity];
+        }
+
+        Axis copy() {
+            Axis copy = new Axis(capacity);
+            copy.names.addAll(names);
+            copy.index.putAll(index);
+            System.arraycopy(sizes, 0, copy.sizes, 0, sizes.length);
+            return copy;
+        }
+
+        void grow(int newCapacity) {
+            sizes = Arrays.copyOf(sizes, newCapacity);
+            capacity = newCapacity;
         }
-        matrix.get(source).add(new SingleLink(source, target, score));
     }
 
     /**
-     * Get all links originating from a given source artifact id.
+     * Row-major scores shared by a matrix and its transposed views.
+     */
+    private static final class Grid {
+        private final Axis rows;
+        private final Axis columns;
+        private ScoreArray scores;
+        // Null if the scores track presence themselves.
+        private boolean[] present;
+
+        Grid(Axis rows, Axis columns, ScorePrecision precision) {
+            this(rows, columns, ScoreArray.allocateGrid(precision, rows.capacity, columns.capacity));
+        }
+
+        Grid(Axis rows, Axis columns, ScoreArray scores) {
+            this.rows = rows;
+            this.columns = columns;
+            this.scores = scores;
+            this.present = scores.tracksPresence() ? null : new boolean[rows.capacity * columns.capacity];
+        }
+
+        boolean isPresent(long cell) {
+            return present == null ? !Double.isNaN(scores.get(cell)) : present[(int) cell];
+        }
+
+        double score(long cell) {
+            double score = scores.get(cell);
+            return present == null && Double.isNaN(score) ? 0.0 : score;
+        }
+
+        void markPresent(long cell) {
+            if (present != null) {
+                present[(int) cell] = true;
+            }
+        }
+
+        void resize(int newRowCapacity, int newColumnCapacity) {
+            ScoreArray newScores = scores.allocateGrid(newRowCapacity, newColumnCapacity);
+            boolean[] newPresent = present == null ? null : new boolean[newRowCapacity * newColumnCapacity];
+            for (int row = 0; row < rows.names.size(); row++) {
+                long from = (long) row * columns.capacity;
+                long to = (long) row * newColumnCapacity;
+                scores.copyTo(from, newScores, to, columns.names.size());
+                if (present != null) {
+                    System.arraycopy(present, (int) from, newPresent, (int) to, columns.names.size());
+                }
+            }
+            // Views share this grid, so nothing else refers to the old scores.
+            scores.release();
+            this.scores = newScores;
+            this.present = newPresent;
+            rows.grow(newRowCapacity);
+            columns.grow(newColumnCapacity);
+        }
+    }
+
+    /**
+     * Create an empty matrix that grows as links are added.
+     */
+    public SimilarityMatrix() {
+        this(16, 16, ScorePrecision.configured());
+    }
+
+    /**
+     * Create an empty matrix with the given sources and targets already indexed, in iteration order.
+     * No cell holds a score yet, so the artifacts only show up in {@link #getSourceArtifacts()} and
+     * {@link #getTargetArtifacts()} once links are added for them.
+     *
+     * @param sources source artifact identifiers (rows)
+     * @param targets target artifact identifiers (columns)
+     */
+    public SimilarityMatrix(Collection<String> sources, Collection<String> targets) {
+        this(sources, targets, ScorePrecision.configured());
+    }
+
+    /**
+     * Create an empty matrix with the given sources and targets already indexed, storing scores in the given
+     * precision instead of the configured one.
+     *
+     * @param sources source artifact identifiers (rows)
+     * @param targets target artifact identifiers (columns)
+     * @param precision storage precision of the scores
+     */
+    public SimilarityMatrix(Collection<String> sources, Collection<String> targets, ScorePrecision precision) {
+        this(Math.max(sources.size(), 1), Math.max(targets.size(), 1), precision);
+        for (String source : sources) {
+            indexOf(sourceAxis(), source);
+        }
+        for (String target : targets) {
+            indexOf(targetAxis(), target);
+        }
+    }
+
+    private SimilarityMatrix(int rowCapacity, int columnCapacity, ScorePrecision precision) {
+        this(new Grid(new Axis(rowCapacity), new Axis(columnCapacity), precision), false);
+    }
+
+    private SimilarityMatrix(Grid grid, boolean transposed) {
+        this.grid = grid;
+        this.transposed = transposed;
+    }
+
+    /**
+     * Add a similarity score for a source-target pair. A pair holds at most one score, so adding a link
+     * for a pair that already has one replaces its score.
+     */
+    public void addLink(String source, String target, double score) {
+        setScore(indexOf(sourceAxis(), source), indexOf(targetAxis(), target), score);
+    }
+
+    /**
+     * Get all links originating from a given source artifact id, in target index order.
+     * The returned list is a copy; modifying it does not change the matrix.
+     *
+     * @return the links of the source, or null if the source has none
      */
     public LinksList getLinks(String source) {
-        return matrix.get(source);
+        Integer row = sourceAxis().index.get(source);
+        if (row == null || sourceAxis().sizes[row] == 0) {
+            return null;
+        }
+        LinksList links = new LinksList();
+        addLinksOfRow(row, links);
+        return links;
     }
 
     /**
      * Return the set of source artifact identifiers appearing in the matrix.
      */
     public Set<String> getSourceArtifacts() {
-        return matrix.keySet();
+        return collectPresent(sourceAxis());
     }
 
     /**
      * Return the set of target artifact identifiers appearing in the matrix.
      */
     public Set<String> getTargetArtifacts() {
-        Set<String> targetArtifacts = new HashSet<>();
-        for (LinksList links : matrix.values()) {
-            for (SingleLink link : links) {
-                targetArtifacts.add(link.getTargetArtifactId());
-            }
-        }
-        return targetArtifacts;
+        return collectPresent(targetAxis());
     }
 
     /**
@@ -56,8 +219,8 @@ public class SimilarityMatrix {
      */
     public List<SingleLink> getAllLinks() {
         List<SingleLink> allLinks = new ArrayList<>();
-        for (LinksList linksList : matrix.values()) {
-            allLinks.addAll(linksList);
+        for (int row = 0; row < numSources(); row++) {
+            addLinksOfRow(row, allLinks);
         }
         return allLinks;
     }
@@ -82,7 +245,6 @@ public class SimilarityMatrix {
         return this.getAllLinks().stream().filter(link -> link.getScore() < threshold).collect(Collectors.toList());
     }
 
-
     /**
      * Flatten and get the links with the top-k highest similarity score for each source artifact.
      * If less than k links exist for a source artifact, all existing links for this artifact are returned.
@@ -92,7 +254,9 @@ public class SimilarityMatrix {
      */
     public List<SingleLink> getTopKLinks(int k) {
         List<SingleLink> allLinks = new ArrayList<>();
-        for (LinksList linksList : matrix.values()) {
+        for (int row = 0; row < numSources(); row++) {
+            LinksList linksList = new LinksList();
+            addLinksOfRow(row, linksList);
             linksList.sort(Comparator.comparingDouble(SingleLink::getScore));
             int numLinks = linksList.size();
             if (k >= numLinks) {
@@ -108,43 +272,275 @@ public class SimilarityMatrix {
      * Get the similarity score for a specific source-target pair (0.0 if absent).
      */
     public double getScore(String source, String target) {
-        if (matrix.containsKey(source)) {
-            for (SingleLink link : matrix.get(source)) {
-                if (link.getTargetArtifactId().equals(target)) {
-                    return link.getScore();
-                }
-            }
+        Integer row = sourceAxis().index.get(source);
+        Integer column = targetAxis().index.get(target);
+        if (row == null || column == null) {
+            return 0.0;
         }
-        return 0.0;
+        return getScore(row, column);
     }
 
     /**
      * Set or replace the similarity score for a source-target pair.
      */
     public void setScore(String source, String target, double newScore) {
-        if (!matrix.containsKey(source)) {
-            matrix.put(source, new LinksList());
+        setScore(indexOf(sourceAxis(), source), indexOf(targetAxis(), target), newScore);
+    }
+
+    /**
+     * @return a target × source view of this matrix that shares its scores; it is not a copy
+     */
+    public SimilarityMatrix transpose() {
+        return new SimilarityMatrix(grid, !transposed);
+    }
+
+    /**
+     * @return the precision the scores of this matrix are stored in
+     */
+    public ScorePrecision getPrecision() {
+        return grid.scores.precision();
+    }
+
+    /**
+     * @return number of cells holding a score, i.e. the size of {@link #getAllLinks()}
+     */
+    public long numLinks() {
+        long links = 0;
+        Axis sources = sourceAxis();
+        for (int row = 0; row < sources.names.size(); row++) {
+            links += sources.sizes[row];
+        }
+        return links;
+    }
+
+    /**
+     * @return number of indexed sources; row indices are smaller than this value
+     */
+    public int numSources() {
+        return sourceAxis().names.size();
+    }
+
+    /**
+     * @return number of indexed targets; column indices are smaller than this value
+     */
+    public int numTargets() {
+        return targetAxis().names.size();
+    }
+
+    /**
+     * @return the row index of a source, or -1 if it has not been indexed
+     */
+    public int getSourceIndex(String source) {
+        Integer row = sourceAxis().index.get(source);
+        return row == null ? -1 : row;
+    }
+
+    /**
+     * @return the column index of a target, or -1 if it has not been indexed
+     */
+    public int getTargetIndex(String target) {
+        Integer column = targetAxis().index.get(target);
+        return column == null ? -1 : column;
+    }
+
+    /**
+     * @return the source identifier of a row
+     */
+    public String getSourceName(int row) {
+        return sourceAxis().names.get(row);
+    }
+
+    /**
+     * @return the target identifier of a column
+     */
+    public String getTargetName(int column) {
+        return targetAxis().names.get(column);
+    }
+
+    /**
+     * @return whether the cell holds a score
+     */
+    public boolean hasScore(int row, int column) {
+        return grid.isPresent(cell(row, column));
+    }
+
+    /**
+     * Get the score of a cell by index (0.0 if absent).
+     */
+    public double getScore(int row, int column) {
+        return grid.score(cell(row, column));
+    }
+
+    /**
+     * Set or replace the score of a cell by index. A matrix in a mapped store cannot hold NaN scores.
+     */
+    public void setScore(int row, int column, double newScore) {
+        long cell = cell(row, column);
+        if (!grid.isPresent(cell)) {
+            grid.markPresent(cell);
+            Axis sources = sourceAxis();
+            Axis targets = targetAxis();
+            if (sources.sizes[row]++ == 0) sources.present = null;
+            if (targets.sizes[column]++ == 0) targets.present = null;
         }
+        grid.scores.set(cell, newScore);
+    }
 
-        LinksList links = matrix.get(source);
-        links.removeIf(link -> link.getTargetArtifactId().equals(target));
-        links.add(new SingleLink(source, target, newScore));
+    /**
+     * Store the score of an already indexed cell without updating the row and column bookkeeping.
+     * Distinct cells may be stored from different threads at the same time. Writers must call
+     * {@link #refreshCounts()} once all of them have finished, before the matrix is read again.
+     */
+    void storeScore(int row, int column, double newScore) {
+        long cell = cell(row, column);
+        grid.markPresent(cell);
+        grid.scores.set(cell, newScore);
+    }
+
+    /**
+     * Copy every cell above the diagonal to its mirror cell below it, for a square matrix whose sources and targets
+     * are the same identifiers in the same order. Like {@link #storeScore(int, int, double)}, this skips the
+     * bookkeeping until {@link #refreshCounts()}.
+     */
+    void mirrorUpperTriangle() {
+        for (int row = 0; row < numSources(); row++) {
+            for (int column = row + 1; column < numTargets(); column++) {
+                long upper = cell(row, column);
+                long lower = cell(column, row);
+                if (grid.present != null) {
+                    grid.present[(int) lower] = grid.present[(int) upper];
+                }
+                grid.scores.copyTo(upper, grid.scores, lower, 1);
+            }
+        }
+    }
+
+    /**
+     * Recount the scores per row and column after a batch of {@link #storeScore(int, int, double)} calls.
+     */
+    void refreshCounts() {
+        Axis rows = grid.rows;
+        Axis columns = grid.columns;
+        Arrays.fill(rows.sizes, 0);
+        Arrays.fill(columns.sizes, 0);
+        for (int row = 0; row < rows.names.size(); row++) {
+            long offset = (long) row * columns.capacity;
+            for (int column = 0; column < columns.names.size(); column++) {
+                if (grid.isPresent(offset + column)) {
+                    rows.sizes[row]++;
+                    columns.sizes[column]++;
+                }
+            }
+        }
+        rows.present = null;
+        columns.present = null;
+    }
+
+    /**
+     * @return the scores of this matrix and its views
+     */
+    ScoreArray scores() {
+        return grid.scores;
     }
 
     /**
      * Create a deep copy of this similarity matrix.
      */
     public SimilarityMatrix deepCopy() {
-        SimilarityMatrix newMatrix = new SimilarityMatrix();
-        for (Map.Entry<String, LinksList> entry : this.matrix.entrySet()) {
-            String source = entry.getKey();
-            LinksList copiedLinks = new LinksList();
-            for (SingleLink link : entry.getValue()) {
-                copiedLinks.add(link);
+        Grid copy = new Grid(
+                grid.rows.copy(),
+                grid.columns.copy(),
+                grid.scores.allocateGrid(grid.rows.capacity, grid.columns.capacity));
+        grid.scores.copyTo(0, copy.scores, 0, grid.scores.length());
+        if (grid.present != null) {
+            System.arraycopy(grid.present, 0, copy.present, 0, grid.present.length);
+        }
+        return new SimilarityMatrix(copy, transposed);
+    }
+
+    /**
+     * Write this matrix to {@code file} as float tiles (see {@link MappedScoreArray}), with its source and target
+     * identifiers in {@code <file>.ids}. {@link #open(Path)} maps the file back without reading it into memory.
+     * Scores are stored as floats whatever the precision of this matrix.
+     *
+     * @throws IOException if either file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        int sources = numSources();
+        int targets = numTargets();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        MappedScoreArray tiles = MappedScoreArray.create(file, Math.max(sources, 1), Math.max(targets, 1));
+        for (int row = 0; row < sources; row++) {
+            for (int column = 0; column < targets; column++) {
+                long cell = cell(row, column);
+                if (grid.isPresent(cell)) {
+                    tiles.set((long) row * tiles.columns() + column, grid.scores.get(cell));
+                }
+            }
+        }
+        tiles.force();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(identifierFile(file))))) {
+            out.writeInt(IDS_MAGIC);
+            out.writeInt(sources);
+            out.writeInt(targets);
+            for (int row = 0; row < sources; row++) {
+                out.writeUTF(getSourceName(row));
+            }
+            for (int column = 0; column < targets; column++) {
+                out.writeUTF(getTargetName(column));
             }
-            newMatrix.matrix.put(source, copiedLinks);
         }
-        return newMatrix;
+    }
+
+    /**
+     * Map a matrix written by {@link #save(Path)}. Its scores stay in {@code file}: they are paged in as they are
+     * read, and changes to them are written back to the file. A matrix that grows beyond its saved sources or
+     * targets continues in a scratch file next to it.
+     *
+     * @throws IOException if either file cannot be read or they do not belong together
+     */
+    public static SimilarityMatrix open(Path file) throws IOException {
+        List<String> sources = new ArrayList<>();
+        List<String> targets = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(identifierFile(file))))) {
+            if (in.readInt() != IDS_MAGIC) {
+                throw new IOException("Not a similarity matrix identifier file: " + identifierFile(file));
+            }
+            int numSources = in.readInt();
+            int numTargets = in.readInt();
+            for (int row = 0; row < numSources; row++) {
+                sources.add(in.readUTF());
+            }
+            for (int column = 0; column < numTargets; column++) {
+                targets.add(in.readUTF());
+            }
+        }
+        Axis rows = new Axis(Math.max(sources.size(), 1));
+        Axis columns = new Axis(Math.max(targets.size(), 1));
+        MappedScoreArray tiles;
+        try {
+            tiles = MappedScoreArray.open(file, rows.capacity, columns.capacity);
+        } catch (IllegalStateException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        SimilarityMatrix matrix = new SimilarityMatrix(new Grid(rows, columns, tiles), false);
+        for (String source : sources) {
+            matrix.indexOf(rows, source);
+        }
+        for (String target : targets) {
+            matrix.indexOf(columns, target);
+        }
+        matrix.refreshCounts();
+        return matrix;
+    }
+
+    /**
+     * @return the directory mapped matrices are kept in, or null unless {@code -Dtriad.similarity.store=mapped}
+     */
+    public static Path getStoreDirectory() {
+        return MappedScoreArray.configuredDirectory();
     }
 
     @Override
@@ -167,18 +563,9 @@ public class SimilarityMatrix {
 
         for (String source : sortedSources) {
             sb.append(source).append(",");
-            LinksList links = matrix.get(source);
-            Map<String, Double> targetScores = new HashMap<>();
-            if (links != null) {
-                for (SingleLink link : links) {
-                    targetScores.put(link.getTargetArtifactId(), link.getScore());
-                }
-            }
-
             List<String> scores = new ArrayList<>();
             for (String target : sortedTargets) {
-                double score = targetScores.getOrDefault(target, 0.0);
-                scores.add(String.format("%.4f", score));
+                scores.add(String.format("%.4f", getScore(source, target)));
             }
             sb.append(String.join(",", scores));
             sb.append("\n");
@@ -186,4 +573,63 @@ public class SimilarityMatrix {
 
         return sb.toString();
     }
+
+    private Axis sourceAxis() {
+        return transposed ? grid.columns : grid.rows;
+    }
+
+    private Axis targetAxis() {
+        return transposed ? grid.rows : grid.columns;
+    }
+
+    private long cell(int row, int column) {
+        return transposed
+                ? (long) column * grid.columns.capacity + row
+                : (long) row * grid.columns.capacity + column;
+    }
+
+    private static Path identifierFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".ids");
+    }
+
+    private void addLinksOfRow(int row, List<SingleLink> links) {
+        if (sourceAxis().sizes[row] == 0) {
+            return;
+        }
+        String source = getSourceName(row);
+        for (int column = 0; column < numTargets(); column++) {
+            long cell = cell(row, column);
+            if (grid.isPresent(cell)) {
+                links.add(new SingleLink(source, getTargetName(column), grid.scores.get(cell)));
+            }
+        }
+    }
+
+    private static Set<String> collectPresent(Axis axis) {
+        if (axis.present == null) {
+            Set<String> result = new LinkedHashSet<>();
+            for (int i = 0; i < axis.names.size(); i++) {
+                if (axis.sizes[i] > 0) result.add(axis.names.get(i));
+            }
+            axis.present = Collections.unmodifiableSet(result);
+        }
+        return axis.present;
+    }
+
+    private int indexOf(Axis axis, String name) {
+        Integer index = axis.index.get(name);
+        if (index != null) {
+            return index;
+        }
+        if (axis.names.size() == axis.capacity) {
+            if (axis == grid.rows) {
+                grid.resize(grid.rows.capacity * 2, grid.columns.capacity);
+            } else {
+                grid.resize(grid.rows.capacity, grid.columns.capacity * 2);
+            }
+        }
+        axis.index.put(name, axis.names.size());
+        axis.names.add(name);
+        return axis.names.size() - 1;
+    }
 }
@@ -0,0 +1,214 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Scope that owns the term-vector storage of a pipeline stage: the term indices and weights of every
+ * {@link TermDocumentMatrix} built while it is open, including the copies made by
+ * {@link TermDocumentMatrix#equalize}, {@link TermDocumentMatrix#selectDocuments} and the TF/TF-IDF passes that
+ * weight them in place.
+ * <p>
+ * With {@code -Dtriad.term.store=offheap}, that storage is carved out of direct {@link ByteBuffer} slabs of
+ * {@value #SLAB_BYTES} bytes instead of heap arrays, so large corpora add no garbage for the collector to trace and
+ * the heap only has to fit identifiers and similarity scores. Blocks too large to share a slab get a buffer of their
+ * own, rounded up to a power of two. {@link #close()} releases every buffer at once to a process-wide pool, where the
+ * next stage picks buffers of the same size up again; a run therefore allocates direct memory for its largest stage
+ * only. The pool keeps at most {@code -Dtriad.term.poolBytes} bytes (default {@value #DEFAULT_POOL_BYTES}) and is
+ * emptied when the outermost arena of a thread closes, so no direct memory is held on to between runs. Without the
+ * property an arena still scopes a stage but its matrices stay on the heap.
+ * <p>
+ * Arenas nest per thread: {@link #open()} makes the new arena current for the calling thread until it is closed,
+ * and matrices built outside any arena use the heap. Work handed to other threads joins the arena through
+ * {@link ThreadScope#propagate(java.util.concurrent.Callable)}. A matrix allocated in an arena must not be used after
+ * the arena is closed, since its buffers are handed to the next one; reading or writing its off-heap values then
+ * throws an {@link IllegalStateException}. Only {@link SimilarityMatrix} results should leave a stage.
+ *
+ * <pre>{@code
+ * try (TermArena stage = TermArena.open()) {
+ *     baseline = model.Compute(sources, targets, dictionary);
+ * }
+ * }</pre>
+ */
+public final class TermArena implements AutoCloseable {
+    static final String STORE_PROPERTY = "triad.term.store";
+    static final String POOL_PROPERTY = "triad.term.poolBytes";
+    static final int SLAB_BYTES = 1 << 22;
+    static final long DEFAULT_POOL_BYTES = 64L * SLAB_BYTES;
+
+    private static final ThreadScope<TermArena> SCOPES = new ThreadScope<>("Term arenas");
+    // Released buffers by capacity; guarded by itself, like pooledBytes.
+    private static final Map<Integer, Deque<ByteBuffer>> POOL = new HashMap<>();
+    private static long pooledBytes;
+
+    private final TermArena enclosing;
+    private final Thread owner;
+    private final boolean offHeap;
+    private final List<ByteBuffer> buffers = new ArrayList<>();
+    private ByteBuffer slab;
+    private long allocatedBytes;
+    private volatile boolean closed;
+
+    private TermArena(TermArena enclosing, boolean offHeap) {
+        this.enclosing = enclosing;
+        this.owner = Thread.currentThread();
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Open an arena and make it current for the calling thread.
+     *
+     * @return the arena; off-heap if {@value #STORE_PROPERTY}{@code =offheap}
+     */
+    public static TermArena open() {
+        boolean offHeap = "offheap".equals(System.getProperty(STORE_PROPERTY, "heap").toLowerCase(Locale.ROOT));
+        TermArena arena = new TermArena(SCOPES.current(), offHeap);
+        SCOPES.enter(arena);
+        return arena;
+    }
+
+    /**
+     * @return whether this arena allocates off the heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @return bytes handed out by this arena so far
+     */
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return bytes of direct memory currently held by the pool of released buffers
+     */
+    static long getPooledBytes() {
+        synchronized (POOL) {
+            return pooledBytes;
+        }
+    }
+
+    /**
+     * Release all storage of this arena and make the enclosing arena, if any, current again. Closing the outermost
+     * arena of a thread also empties the pool.
+     *
+     * @throws IllegalStateException if called from another thread than the one that opened the arena, or before an
+     *     arena opened inside this one is closed
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        SCOPES.exit(this, enclosing, owner);
+        List<ByteBuffer> released;
+        synchronized (this) {
+            closed = true;
+            released = new ArrayList<>(buffers);
+            buffers.clear();
+            slab = null;
+        }
+        long limit = Long.getLong(POOL_PROPERTY, DEFAULT_POOL_BYTES);
+        synchronized (POOL) {
+            for (ByteBuffer buffer : released) {
+                // Beyond the limit, buffers are left to the collector, which frees their memory with them.
+                if (enclosing != null && pooledBytes + buffer.capacity() <= limit) {
+                    POOL.computeIfAbsent(buffer.capacity(), capacity -> new ArrayDeque<>())
+                            .push(buffer.clear());
+                    pooledBytes += buffer.capacity();
+                }
+            }
+            if (enclosing == null) {
+                POOL.clear();
+                pooledBytes = 0;
+            }
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if this arena is closed and its storage may belong to another one
+     */
+    void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Term vectors used after their arena was closed");
+        }
+    }
+
+    /**
+     * @return zero-filled term weights in the current arena, or on the heap if there is no off-heap arena
+     */
+    static ScoreArray allocateValues(ScorePrecision precision, int length) {
+        TermArena arena = SCOPES.current();
+        if (arena == null || !arena.offHeap) {
+            return ScoreArray.allocate(precision, length);
+        }
+        int width = precision == ScorePrecision.DOUBLE ? Double.BYTES : Float.BYTES;
+        return ScoreArray.direct(precision, arena.slice((long) length * width), arena);
+    }
+
+    /**
+     * @return zero-filled term indices in the current arena, or on the heap if there is no off-heap arena
+     */
+    static IntBuffer allocateIndices(int length) {
+        TermArena arena = SCOPES.current();
+        if (arena == null || !arena.offHeap) {
+            return IntBuffer.wrap(new int[length]);
+        }
+        return arena.slice((long) length * Integer.BYTES).asIntBuffer();
+    }
+
+    private synchronized ByteBuffer slice(long bytes) {
+        checkOpen();
+        int size = Math.toIntExact((bytes + 7) & ~7L);
+        allocatedBytes += size;
+        ByteBuffer block;
+        if (size > SLAB_BYTES / 4) {
+            // Large blocks get a buffer of their own, so the current slab keeps serving small ones.
+            ByteBuffer own = takeBuffer(ownCapacity(size));
+            buffers.add(own);
+            block = own.slice(0, size).order(ByteOrder.nativeOrder());
+        } else {
+            if (slab == null || slab.remaining() < size) {
+                slab = takeBuffer(SLAB_BYTES);
+                buffers.add(slab);
+            }
+            block = slab.slice(slab.position(), size).order(ByteOrder.nativeOrder());
+            slab.position(slab.position() + size);
+        }
+        // Pooled buffers hold data of an earlier stage.
+        for (int i = 0; i < size; i += Long.BYTES) {
+            block.putLong(i, 0L);
+        }
+        return block;
+    }
+
+    /**
+     * @return the capacity of a buffer of its own for a block of {@code size} bytes: the next power of two, so that
+     *     blocks of similar size share pooled buffers
+     */
+    private static int ownCapacity(int size) {
+        return size > 1 << 30 ? size : Math.max(SLAB_BYTES, Integer.highestOneBit(size - 1) << 1);
+    }
+
+    private static ByteBuffer takeBuffer(int capacity) {
+        synchronized (POOL) {
+            Deque<ByteBuffer> pooled = POOL.get(capacity);
+            if (pooled != null && !pooled.isEmpty()) {
+                pooledBytes -= capacity;
+                return pooled.pop();
+            }
+        }
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.nativeOrder());
+    }
+}
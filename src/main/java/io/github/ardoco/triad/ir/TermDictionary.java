@@ -0,0 +1,71 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned vocabulary that assigns a stable integer id to every term it sees.
+ * <p>
+ * One dictionary is meant to be shared by all {@link TermDocumentMatrix} instances of a pipeline run. Matrices
+ * built against the same dictionary use the same term indices, so they can be compared directly without
+ * re-aligning their vocabularies. Ids are assigned in first-seen order and never change.
+ */
+public class TermDictionary {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final List<String> terms = new ArrayList<>();
+
+    /**
+     * Return the id of a term, assigning the next free id if the term is new.
+     *
+     * @param term the (already processed) term
+     * @return the stable id of the term
+     */
+    public int intern(String term) {
+        Integer id = ids.get(term);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(term);
+            if (id == null) {
+                id = terms.size();
+                terms.add(term);
+                ids.put(term, id);
+            }
+            return id;
+        }
+    }
+
+    /**
+     * @return the id of a term, or -1 if the term has not been interned
+     */
+    public int getId(String term) {
+        Integer id = ids.get(term);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the term with the given id
+     */
+    public synchronized String getTerm(int id) {
+        return terms.get(id);
+    }
+
+    /**
+     * @return number of interned terms; every id is smaller than this value
+     */
+    public synchronized int size() {
+        return terms.size();
+    }
+
+    /**
+     * @return snapshot of all interned terms, indexed by id
+     */
+    public synchronized List<String> getTerms() {
+        return Collections.unmodifiableList(new ArrayList<>(terms));
+    }
+}
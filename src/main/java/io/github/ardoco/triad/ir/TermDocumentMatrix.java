@@ -1,78 +1,147 @@
 /* Licensed under MIT 2025. */
 package io.github.ardoco.triad.ir;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import io.github.ardoco.triad.model.Artifact;
 
+/**
+ * Sparse documents × terms matrix in compressed sparse row (CSR) layout.
+ * <p>
+ * Each document row stores only its non-zero entries as (term index, value) pairs sorted by term index.
+ * Term indices are ids of a {@link TermDictionary}; matrices built against the same dictionary share their
+ * term indices. Documents are addressed by integer indices, and the name-based accessors resolve names through
+ * hash indices instead of scanning the name lists.
+ * <p>
+ * Values are stored as doubles, or as floats when {@code -Dtriad.score.precision} selects a reduced
+ * {@link ScorePrecision}; see {@link ScorePrecision#termPrecision()}. Term indices and values are allocated in the
+ * current {@link TermArena}, off the heap if it is configured so.
+ */
 public class TermDocumentMatrix {
-    private List<String> docNames;
-    private List<String> termNames;
-    private double[][] matrix;
+    private final List<String> docNames;
+    private final Map<String, Integer> docIndex;
+    private final TermDictionary dictionary;
+
+    private int[] rowPointers;
+    private IntBuffer termIndices;
+    private ScoreArray values;
 
     /**
      * Build a term-document matrix from an artifacts collection using token frequencies.
+     * The matrix gets its own dictionary; use {@link #TermDocumentMatrix(ArtifactsCollection, TermDictionary)}
+     * to share the vocabulary with other matrices.
      *
      * @param artifacts artifacts keyed by identifier
      */
     public TermDocumentMatrix(ArtifactsCollection artifacts) {
+        this(artifacts, new TermDictionary());
+    }
+
+    /**
+     * Build a term-document matrix from an artifacts collection using token frequencies.
+     *
+     * @param artifacts artifacts keyed by identifier
+     * @param dictionary vocabulary the terms of all artifacts are interned into
+     */
+    public TermDocumentMatrix(ArtifactsCollection artifacts, TermDictionary dictionary) {
         // Build doc list
         this.docNames = new ArrayList<>(artifacts.keySet());
         Collections.sort(this.docNames);
+        this.docIndex = indexOf(this.docNames);
+        this.dictionary = dictionary;
 
-        // Collect unique terms across all docs using token-based terms from text body.
-        Set<String> uniqueTerms = new HashSet<>();
-        Map<String, Map<String, Long>> perDocFrequencies = new HashMap<>();
-
-        for (Map.Entry<String, Artifact> e : artifacts.entrySet()) {
-            String docName = e.getKey();
-            Artifact artifact = e.getValue();
-            Map<String, Long> termFreqs = new HashMap<>();
-
+        // Intern each document's tokens and count them by sorting the ids of the row.
+        int[][] rows = new int[docNames.size()][];
+        int nonZeros = 0;
+        for (int i = 0; i < docNames.size(); i++) {
+            Artifact artifact = artifacts.get(docNames.get(i));
             String[] terms = artifact.getTextBody().split("\\s+");
+            int[] ids = new int[terms.length];
+            int count = 0;
             for (String term : terms) {
                 if (term == null || term.isBlank()) continue;
-                uniqueTerms.add(term);
-                termFreqs.merge(term, 1L, Long::sum);
+                ids[count++] = dictionary.intern(term);
+            }
+            rows[i] = Arrays.copyOf(ids, count);
+            Arrays.sort(rows[i]);
+            for (int k = 0; k < count; k++) {
+                if (k == 0 || rows[i][k] != rows[i][k - 1]) nonZeros++;
             }
-
-            perDocFrequencies.put(docName, termFreqs);
         }
 
-        this.termNames = new ArrayList<>(uniqueTerms);
-        Collections.sort(this.termNames);
+        // Populate the compressed rows
+        this.rowPointers = new int[docNames.size() + 1];
+        this.termIndices = TermArena.allocateIndices(nonZeros);
+        this.values = TermArena.allocateValues(ScorePrecision.configured().termPrecision(), nonZeros);
 
-        // Initialize matrix and helper index maps
-        this.matrix = new double[docNames.size()][termNames.size()];
-
-        Map<String, Integer> termIndexMap = new HashMap<>();
-        for (int i = 0; i < termNames.size(); i++) {
-            termIndexMap.put(termNames.get(i), i);
-        }
-
-        // Populate matrix
+        int position = 0;
         for (int i = 0; i < docNames.size(); i++) {
-            String docName = docNames.get(i);
-            Map<String, Long> freqs = perDocFrequencies.getOrDefault(docName, Map.of());
-            for (Map.Entry<String, Long> tf : freqs.entrySet()) {
-                Integer termIdx = termIndexMap.get(tf.getKey());
-                if (termIdx != null) {
-                    matrix[i][termIdx] = tf.getValue();
+            int[] ids = rows[i];
+            for (int k = 0; k < ids.length; k++) {
+                if (k > 0 && ids[k] == ids[k - 1]) {
+                    values.set(position - 1, values.get(position - 1) + 1.0);
+                } else {
+                    termIndices.put(position, ids[k]);
+                    values.set(position, 1.0);
+                    position++;
                 }
             }
+            rowPointers[i + 1] = position;
         }
     }
 
-    private TermDocumentMatrix(List<String> docNames, List<String> termNames, double[][] matrix) {
+    /**
+     * Intern the terms of all artifacts in the order a matrix over them would, without building the matrix.
+     *
+     * @param artifacts artifacts keyed by identifier
+     * @param dictionary vocabulary the terms are interned into
+     */
+    static void internTerms(ArtifactsCollection artifacts, TermDictionary dictionary) {
+        List<String> names = new ArrayList<>(artifacts.keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            for (String term : artifacts.get(name).getTextBody().split("\\s+")) {
+                if (!term.isBlank()) dictionary.intern(term);
+            }
+        }
+    }
+
+    TermDocumentMatrix(
+            List<String> docNames, List<String> termNames, int[] rowPointers, int[] termIndices, double[] values) {
+        this(docNames, dictionaryOf(termNames), rowPointers, termIndices, values);
+    }
+
+    TermDocumentMatrix(
+            List<String> docNames, TermDictionary dictionary, int[] rowPointers, int[] termIndices, double[] values) {
+        this(
+                docNames,
+                indexOf(docNames),
+                dictionary,
+                rowPointers,
+                IntBuffer.wrap(termIndices),
+                ScoreArray.of(ScorePrecision.configured().termPrecision(), values));
+    }
+
+    private TermDocumentMatrix(
+            List<String> docNames,
+            Map<String, Integer> docIndex,
+            TermDictionary dictionary,
+            int[] rowPointers,
+            IntBuffer termIndices,
+            ScoreArray values) {
         this.docNames = docNames;
-        this.termNames = termNames;
-        this.matrix = matrix;
+        this.docIndex = docIndex;
+        this.dictionary = dictionary;
+        this.rowPointers = rowPointers;
+        this.termIndices = termIndices;
+        this.values = values;
     }
 
     /**
@@ -83,36 +152,90 @@ public class TermDocumentMatrix {
     }
 
     /**
-     * @return number of unique terms across all documents
+     * @return size of the term index space, i.e. the number of terms in the dictionary. Every term index
+     *         stored in this matrix is smaller than this value.
      */
     public int numTerms() {
-        return termNames.size();
+        return dictionary.size();
+    }
+
+    /**
+     * @return number of stored (non-zero) entries
+     */
+    public int numNonZeros() {
+        return rowPointers[docNames.size()];
     }
 
     /**
      * Get the value at a specific doc/term index.
      */
     public double getValue(int docIndex, int termIndex) {
-        return matrix[docIndex][termIndex];
+        int position = find(docIndex, termIndex);
+        return position >= 0 ? values.get(position) : 0.0;
     }
 
     /**
      * Get the value for a named doc/term pair.
      */
     public double getValue(String docName, String termName) {
-        int docIndex = docNames.indexOf(docName);
-        int termIndex = termNames.indexOf(termName);
+        int docIndex = getDocumentIndex(docName);
+        int termIndex = getTermIndex(termName);
         if (docIndex == -1 || termIndex == -1) {
             return 0.0;
         }
-        return matrix[docIndex][termIndex];
+        return getValue(docIndex, termIndex);
     }
 
     /**
      * Set the value at a specific doc/term index.
+     * <p>
+     * Updating a stored entry is a binary search; introducing a new non-zero entry shifts all later entries
+     * and should be avoided in loops. Prefer {@link #setValueAt(int, double)} while iterating a row.
      */
     public void setValue(int docIndex, int termIndex, double value) {
-        matrix[docIndex][termIndex] = value;
+        int position = find(docIndex, termIndex);
+        if (position >= 0) {
+            values.set(position, value);
+        } else if (value != 0.0) {
+            insert(docIndex, -position - 1, termIndex, value);
+        }
+    }
+
+    /**
+     * @return index of the first stored entry of a document row
+     */
+    public int rowStart(int docIndex) {
+        return rowPointers[docIndex];
+    }
+
+    /**
+     * @return index one past the last stored entry of a document row
+     */
+    public int rowEnd(int docIndex) {
+        return rowPointers[docIndex + 1];
+    }
+
+    /**
+     * @return term index of the stored entry at a position
+     */
+    public int termAt(int position) {
+        // Term indices are allocated in the same arena as the values.
+        values.checkOpen();
+        return termIndices.get(position);
+    }
+
+    /**
+     * @return value of the stored entry at a position
+     */
+    public double valueAt(int position) {
+        return values.get(position);
+    }
+
+    /**
+     * Overwrite the value of the stored entry at a position.
+     */
+    public void setValueAt(int position, double value) {
+        values.set(position, value);
     }
 
     /**
@@ -122,54 +245,201 @@ public class TermDocumentMatrix {
         return docNames.get(docIndex);
     }
 
+    /**
+     * @return the index of a document, or -1 if it is not part of this matrix
+     */
+    public int getDocumentIndex(String docName) {
+        Integer index = docIndex.get(docName);
+        return index == null ? -1 : index;
+    }
+
     /**
      * @return the term string at index
      */
     public String getTermName(int termIndex) {
-        return termNames.get(termIndex);
+        return dictionary.getTerm(termIndex);
     }
 
     /**
-     * @return immutable ordered list of term names
+     * @return the index of a term, or -1 if it is not part of the vocabulary
+     */
+    public int getTermIndex(String termName) {
+        return dictionary.getId(termName);
+    }
+
+    /**
+     * @return immutable list of term names, indexed by term index
      */
     public List<String> getTermNames() {
-        return this.termNames;
+        return dictionary.getTerms();
     }
 
     /**
-     * Align two matrices to the same term vocabulary, returning reindexed copies.
+     * @return the dictionary that defines this matrix's term indices
      */
-    public static List<TermDocumentMatrix> equalize(TermDocumentMatrix source, TermDocumentMatrix target) {
-        Set<String> allTerms = new HashSet<>(source.termNames);
-        allTerms.addAll(target.termNames);
-        List<String> sortedTerms = new ArrayList<>(allTerms);
-        Collections.sort(sortedTerms);
+    public TermDictionary getDictionary() {
+        return dictionary;
+    }
 
-        TermDocumentMatrix newSource = createNewMatrix(source, sortedTerms);
-        TermDocumentMatrix newTarget = createNewMatrix(target, sortedTerms);
+    /**
+     * @return immutable ordered list of document names
+     */
+    public List<String> getDocumentNames() {
+        return Collections.unmodifiableList(this.docNames);
+    }
+
+    /**
+     * Copy the rows of the given documents into a new matrix sharing this matrix's vocabulary.
+     * Documents unknown to this matrix become empty rows.
+     *
+     * @param names documents to keep, in the order the new matrix should list them
+     */
+    public TermDocumentMatrix selectDocuments(Collection<String> names) {
+        List<String> selectedNames = new ArrayList<>(names);
+        int[] selectedPointers = new int[selectedNames.size() + 1];
+        for (int i = 0; i < selectedNames.size(); i++) {
+            int source = getDocumentIndex(selectedNames.get(i));
+            int length = source == -1 ? 0 : rowEnd(source) - rowStart(source);
+            selectedPointers[i + 1] = selectedPointers[i] + length;
+        }
+
+        IntBuffer selectedTerms = TermArena.allocateIndices(selectedPointers[selectedNames.size()]);
+        ScoreArray selectedValues = TermArena.allocateValues(values.precision(), selectedTerms.capacity());
+        for (int i = 0; i < selectedNames.size(); i++) {
+            int source = getDocumentIndex(selectedNames.get(i));
+            if (source == -1) continue;
+            int length = rowEnd(source) - rowStart(source);
+            selectedTerms.put(selectedPointers[i], termIndices, rowStart(source), length);
+            values.copyTo(rowStart(source), selectedValues, selectedPointers[i], length);
+        }
+        return new TermDocumentMatrix(
+                selectedNames,
+                indexOf(selectedNames),
+                dictionary,
+                selectedPointers,
+                selectedTerms,
+                selectedValues);
+    }
 
+    /**
+     * Align two matrices to the same term vocabulary.
+     * Matrices that share a dictionary are already aligned and are returned as they are. Otherwise the target's
+     * terms are interned into a copy of the source's dictionary and only the target's stored entries are remapped.
+     */
+    public static List<TermDocumentMatrix> equalize(TermDocumentMatrix source, TermDocumentMatrix target) {
         List<TermDocumentMatrix> result = new ArrayList<>();
-        result.add(newSource);
-        result.add(newTarget);
+        if (source.dictionary == target.dictionary) {
+            result.add(source);
+            result.add(target);
+            return result;
+        }
+
+        TermDictionary merged = dictionaryOf(source.dictionary.getTerms());
+        result.add(new TermDocumentMatrix(
+                source.docNames,
+                source.docIndex,
+                merged,
+                source.rowPointers.clone(),
+                copyIndices(source.termIndices, source.numNonZeros()),
+                copyValues(source.values, source.numNonZeros())));
+        result.add(createNewMatrix(target, merged));
         return result;
     }
 
-    private static TermDocumentMatrix createNewMatrix(TermDocumentMatrix oldMatrix, List<String> newTermNames) {
-        double[][] newMatrixData = new double[oldMatrix.numDocs()][newTermNames.size()];
-        Map<String, Integer> newTermIndexMap = new HashMap<>();
-        for (int i = 0; i < newTermNames.size(); i++) {
-            newTermIndexMap.put(newTermNames.get(i), i);
+    private static TermDocumentMatrix createNewMatrix(TermDocumentMatrix oldMatrix, TermDictionary newDictionary) {
+        List<String> oldTerms = oldMatrix.dictionary.getTerms();
+        int[] remap = new int[oldTerms.size()];
+        for (int j = 0; j < remap.length; j++) {
+            remap[j] = newDictionary.intern(oldTerms.get(j));
         }
 
-        for (int i = 0; i < oldMatrix.numDocs(); i++) {
-            for (int j = 0; j < oldMatrix.numTerms(); j++) {
-                String termName = oldMatrix.getTermName(j);
-                Integer newIndex = newTermIndexMap.get(termName);
-                if (newIndex != null) {
-                    newMatrixData[i][newIndex] = oldMatrix.getValue(i, j);
-                }
+        TermDocumentMatrix newMatrix = new TermDocumentMatrix(
+                oldMatrix.docNames,
+                oldMatrix.docIndex,
+                newDictionary,
+                oldMatrix.rowPointers.clone(),
+                TermArena.allocateIndices(oldMatrix.numNonZeros()),
+                copyValues(oldMatrix.values, oldMatrix.numNonZeros()));
+        for (int k = 0; k < newMatrix.numNonZeros(); k++) {
+            newMatrix.termIndices.put(k, remap[oldMatrix.termIndices.get(k)]);
+        }
+        for (int i = 0; i < newMatrix.numDocs(); i++) {
+            newMatrix.sortRow(newMatrix.rowStart(i), newMatrix.rowEnd(i));
+        }
+        return newMatrix;
+    }
+
+    private int find(int docIndex, int termIndex) {
+        int low = rowStart(docIndex);
+        int high = rowEnd(docIndex) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int term = termIndices.get(middle);
+            if (term < termIndex) {
+                low = middle + 1;
+            } else if (term > termIndex) {
+                high = middle - 1;
+            } else {
+                return middle;
             }
         }
-        return new TermDocumentMatrix(oldMatrix.docNames, newTermNames, newMatrixData);
+        return -(low + 1);
+    }
+
+    private void insert(int docIndex, int position, int termIndex, double value) {
+        int nonZeros = numNonZeros();
+        IntBuffer newTermIndices = TermArena.allocateIndices(nonZeros + 1);
+        ScoreArray newValues = TermArena.allocateValues(values.precision(), nonZeros + 1);
+        newTermIndices.put(0, termIndices, 0, position);
+        values.copyTo(0, newValues, 0, position);
+        newTermIndices.put(position, termIndex);
+        newValues.set(position, value);
+        newTermIndices.put(position + 1, termIndices, position, nonZeros - position);
+        values.copyTo(position, newValues, position + 1, nonZeros - position);
+        for (int i = docIndex + 1; i < rowPointers.length; i++) {
+            rowPointers[i]++;
+        }
+        this.termIndices = newTermIndices;
+        this.values = newValues;
+    }
+
+    private void sortRow(int from, int to) {
+        // Rows are short; insertion sort keeps term indices and values paired without boxing or rounding values.
+        for (int i = from + 1; i < to; i++) {
+            for (int j = i; j > from && termIndices.get(j - 1) > termIndices.get(j); j--) {
+                int term = termIndices.get(j);
+                termIndices.put(j, termIndices.get(j - 1));
+                termIndices.put(j - 1, term);
+                values.swap(j - 1, j);
+            }
+        }
+    }
+
+    private static IntBuffer copyIndices(IntBuffer indices, int length) {
+        IntBuffer copy = TermArena.allocateIndices(length);
+        copy.put(0, indices, 0, length);
+        return copy;
+    }
+
+    private static ScoreArray copyValues(ScoreArray values, int length) {
+        ScoreArray copy = TermArena.allocateValues(values.precision(), length);
+        values.copyTo(0, copy, 0, length);
+        return copy;
+    }
+
+    private static TermDictionary dictionaryOf(List<String> termNames) {
+        TermDictionary dictionary = new TermDictionary();
+        for (String term : termNames) {
+            dictionary.intern(term);
+        }
+        return dictionary;
+    }
+
+    private static Map<String, Integer> indexOf(List<String> names) {
+        Map<String, Integer> index = new HashMap<>(names.size() * 2);
+        for (int i = 0; i < names.size(); i++) {
+            index.put(names.get(i), i);
+        }
+        return index;
     }
 }
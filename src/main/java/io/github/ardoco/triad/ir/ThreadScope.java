@@ -0,0 +1,102 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The scopes of one kind, such as {@link TermArena}s or {@link ScratchStore}s, that are open on each thread. Scopes
+ * nest: opening one makes it current for its thread, and closing it makes the enclosing one current again. Work
+ * handed to other threads joins the scopes of the thread that hands it over through {@link #propagate(Callable)}.
+ */
+final class ThreadScope<S> {
+    // Every kind of scope, so that propagate wraps a task once for all of them.
+    private static final List<ThreadScope<?>> KINDS = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<S> current = new ThreadLocal<>();
+    private final String name;
+
+    /**
+     * @param name plural name of the scopes, for error messages
+     */
+    ThreadScope(String name) {
+        this.name = name;
+        KINDS.add(this);
+    }
+
+    /**
+     * @return the scope current for the calling thread, or null if there is none
+     */
+    S current() {
+        return current.get();
+    }
+
+    /**
+     * Make {@code scope}, opened inside the {@link #current()} one, current for the calling thread.
+     */
+    void enter(S scope) {
+        current.set(scope);
+    }
+
+    /**
+     * Make {@code enclosing} current again in place of {@code scope}.
+     *
+     * @throws IllegalStateException if called from another thread than {@code owner}, or before a scope opened inside
+     *     {@code scope} is closed
+     */
+    void exit(S scope, S enclosing, Thread owner) {
+        if (Thread.currentThread() != owner || current.get() != scope) {
+            throw new IllegalStateException(name + " must be closed by their thread, innermost first");
+        }
+        set(enclosing);
+    }
+
+    /**
+     * Wrap a task so that it runs in the scopes current for the calling thread, whichever thread runs it. The scopes
+     * must stay open until the task is done.
+     */
+    static <T> Callable<T> propagate(Callable<T> task) {
+        List<ThreadScope<?>> kinds = List.copyOf(KINDS);
+        Object[] scopes = new Object[kinds.size()];
+        boolean open = false;
+        for (int i = 0; i < scopes.length; i++) {
+            scopes[i] = kinds.get(i).current();
+            open |= scopes[i] != null;
+        }
+        if (!open) {
+            return task;
+        }
+        return () -> {
+            Object[] previous = new Object[scopes.length];
+            for (int i = 0; i < scopes.length; i++) {
+                // Kinds without a scope on the calling thread keep the one of the running thread.
+                previous[i] = scopes[i] == null ? null : kinds.get(i).swap(scopes[i]);
+            }
+            try {
+                return task.call();
+            } finally {
+                for (int i = 0; i < scopes.length; i++) {
+                    if (scopes[i] != null) {
+                        kinds.get(i).swap(previous[i]);
+                    }
+                }
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object swap(Object scope) {
+        S previous = current.get();
+        set((S) scope);
+        return previous;
+    }
+
+    private void set(S scope) {
+        if (scope == null) {
+            current.remove();
+        } else {
+            current.set(scope);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The best links of every source: at most {@code k} per source, each scoring at least {@code relativeThreshold}
+ * times the best score of its source, ordered by descending score. Equal scores keep the target order of the
+ * similarity computation, so the selection matches sorting a source's full row stably and cutting it at k.
+ * <p>
+ * Scores are streamed into a {@link Collector}, which keeps one bounded primitive min-heap of size k per source.
+ * Memory therefore grows with {@code sources × k} instead of {@code sources × targets}; see
+ * {@link IRModel#ComputeTopK}.
+ */
+public final class TopKLinks {
+    private final Map<String, Integer> sourceIndex;
+    private final List<SingleLink>[] links;
+    private final double[] maxScores;
+    private final Set<String> sourceArtifacts;
+
+    private TopKLinks(List<String> sources, List<SingleLink>[] links, double[] maxScores) {
+        this.sourceIndex = new HashMap<>();
+        Set<String> present = new LinkedHashSet<>();
+        for (int row = 0; row < sources.size(); row++) {
+            sourceIndex.put(sources.get(row), row);
+            if (links[row] != null) present.add(sources.get(row));
+        }
+        this.links = links;
+        this.maxScores = maxScores;
+        this.sourceArtifacts = Collections.unmodifiableSet(present);
+    }
+
+    /**
+     * Select the best links of every source of a full similarity matrix.
+     *
+     * @param matrix similarity scores; absent cells are not links
+     * @param k maximum number of links per source
+     * @param relativeThreshold fraction of a source's best score that its links must reach
+     */
+    public static TopKLinks of(SimilarityMatrix matrix, int k, double relativeThreshold) {
+        List<String> sources = new ArrayList<>(matrix.numSources());
+        for (int row = 0; row < matrix.numSources(); row++) {
+            sources.add(matrix.getSourceName(row));
+        }
+        List<String> targets = new ArrayList<>(matrix.numTargets());
+        for (int column = 0; column < matrix.numTargets(); column++) {
+            targets.add(matrix.getTargetName(column));
+        }
+        Collector collector = new Collector(sources, targets, k, relativeThreshold);
+        for (int row = 0; row < matrix.numSources(); row++) {
+            for (int column = 0; column < matrix.numTargets(); column++) {
+                if (matrix.hasScore(row, column)) {
+                    collector.offer(row, column, matrix.getScore(row, column));
+                }
+            }
+        }
+        return collector.finish();
+    }
+
+    /**
+     * @return the selected links of a source by descending score, or an empty list if it has none
+     */
+    public List<SingleLink> getLinks(String source) {
+        Integer row = sourceIndex.get(source);
+        return row == null || links[row] == null ? List.of() : links[row];
+    }
+
+    /**
+     * @return the best score among all links of a source before the selection, or 0.0 if it has none
+     */
+    public double getMaxScore(String source) {
+        Integer row = sourceIndex.get(source);
+        return row == null || links[row] == null ? 0.0 : maxScores[row];
+    }
+
+    /**
+     * @return the sources that had at least one link, in row order
+     */
+    public Set<String> getSourceArtifacts() {
+        return sourceArtifacts;
+    }
+
+    /**
+     * Collects streamed scores into bounded per-source heaps. Different sources may be offered from different
+     * threads at the same time; the scores of one source must come from one thread.
+     */
+    static final class Collector {
+        private final List<String> sources;
+        private final List<String> targets;
+        private final int k;
+        private final double relativeThreshold;
+        private final double[] heapScores;
+        private final int[] heapColumns;
+        private final int[] sizes;
+        private final double[] maxScores;
+        private final boolean[] seen;
+
+        Collector(List<String> sources, List<String> targets, int k, double relativeThreshold) {
+            this.sources = sources;
+            this.targets = targets;
+            this.k = Math.max(0, k);
+            this.relativeThreshold = relativeThreshold;
+            this.heapScores = new double[sources.size() * this.k];
+            this.heapColumns = new int[sources.size() * this.k];
+            this.sizes = new int[sources.size()];
+            this.maxScores = new double[sources.size()];
+            this.seen = new boolean[sources.size()];
+        }
+
+        /**
+         * Offer the score of one (source row, target column) pair.
+         */
+        void offer(int row, int column, double score) {
+            if (!seen[row] || score > maxScores[row]) {
+                maxScores[row] = score;
+                seen[row] = true;
+            }
+            if (k == 0) {
+                return;
+            }
+            int base = row * k;
+            int size = sizes[row];
+            if (size < k) {
+                siftUp(base, size, score, column);
+                sizes[row] = size + 1;
+            } else if (isWorse(heapScores[base], heapColumns[base], score, column)) {
+                siftDown(base, k, score, column);
+            }
+        }
+
+        /**
+         * @return the score a new link of the row must beat to enter a full heap, or negative infinity while the
+         *     heap still has room
+         */
+        double entryScore(int row) {
+            return k > 0 && sizes[row] == k ? heapScores[row * k] : Double.NEGATIVE_INFINITY;
+        }
+
+        /**
+         * Sort every heap and apply the relative threshold.
+         */
+        @SuppressWarnings("unchecked")
+        TopKLinks finish() {
+            List<SingleLink>[] links = new List[sources.size()];
+            for (int row = 0; row < sources.size(); row++) {
+                if (!seen[row]) continue;
+                int base = row * k;
+                int size = sizes[row];
+                // Pop the heap from worst to best into the tail of the row.
+                double[] scores = new double[size];
+                int[] columns = new int[size];
+                for (int n = size - 1; n >= 0; n--) {
+                    scores[n] = heapScores[base];
+                    columns[n] = heapColumns[base];
+                    siftDown(base, n, heapScores[base + n], heapColumns[base + n]);
+                }
+                double threshold = maxScores[row] * relativeThreshold;
+                SingleLink[] selected = new SingleLink[size];
+                int count = 0;
+                for (int n = 0; n < size && scores[n] >= threshold; n++) {
+                    selected[count++] = new SingleLink(sources.get(row), targets.get(columns[n]), scores[n]);
+                }
+                links[row] = List.of(Arrays.copyOf(selected, count));
+            }
+            return new TopKLinks(sources, links, maxScores);
+        }
+
+        /**
+         * A link ranks below another if it scores lower, or scores the same but comes later in target order.
+         */
+        private static boolean isWorse(double score, int column, double otherScore, int otherColumn) {
+            return score < otherScore || (score == otherScore && column > otherColumn);
+        }
+
+        private void siftUp(int base, int position, double score, int column) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (!isWorse(score, column, heapScores[base + parent], heapColumns[base + parent])) break;
+                heapScores[base + position] = heapScores[base + parent];
+                heapColumns[base + position] = heapColumns[base + parent];
+                position = parent;
+            }
+            heapScores[base + position] = score;
+            heapColumns[base + position] = column;
+        }
+
+        /**
+         * Place a link at the root of a heap of {@code size} entries and restore the heap order.
+         */
+        private void siftDown(int base, int size, double score, int column) {
+            int position = 0;
+            while (2 * position + 1 < size) {
+                int child = 2 * position + 1;
+                if (child + 1 < size
+                        && isWorse(
+                                heapScores[base + child + 1],
+                                heapColumns[base + child + 1],
+                                heapScores[base + child],
+                                heapColumns[base + child])) {
+                    child++;
+                }
+                if (!isWorse(heapScores[base + child], heapColumns[base + child], score, column)) break;
+                heapScores[base + position] = heapScores[base + child];
+                heapColumns[base + position] = heapColumns[base + child];
+                position = child;
+            }
+            if (size > 0) {
+                heapScores[base + position] = score;
+                heapColumns[base + position] = column;
+            }
+        }
+    }
+}
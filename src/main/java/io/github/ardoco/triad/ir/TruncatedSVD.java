@@ -0,0 +1,216 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+
+/**
+ * Rank-k singular value decomposition of a sparse documents × terms matrix, computed with a randomized range
+ * finder (Halko, Martinsson and Tropp).
+ * <p>
+ * The range of the matrix is sampled with {@code k + max(k, MIN_OVERSAMPLING)} Gaussian test vectors and refined
+ * with {@link #POWER_ITERATIONS} power iterations; only the small projected matrix is decomposed exactly. Memory
+ * stays O((docs + terms) · k) and the input is only touched through sparse products. Whenever the test vectors
+ * cover the smaller dimension of the matrix, the sampled range is the full range and the decomposition is exact.
+ * Term-document matrices have a slowly decaying spectrum, hence the generous oversampling. The random test matrix
+ * is drawn from a fixed seed, so results are reproducible.
+ * <p>
+ * The decomposition keeps the low-rank factors: the latent coordinates {@code Σ_k v_j} of every document and the
+ * left singular vectors of every used term. Cosine similarity between latent coordinates equals cosine similarity
+ * between the columns of the rank-k reconstruction {@code U_k Σ_k V_kᵀ}, since {@code U_k} has orthonormal columns.
+ */
+final class TruncatedSVD {
+    static final int MIN_OVERSAMPLING = 10;
+    static final int POWER_ITERATIONS = 4;
+    static final long SEED = 20250101L;
+
+    private final int rank;
+    private final double[] singularValues;
+    private final double[][] documentCoordinates;
+    private final int[] termColumns;
+    private final double[][] termVectors;
+
+    private TruncatedSVD(
+            int rank,
+            double[] singularValues,
+            double[][] documentCoordinates,
+            int[] termColumns,
+            double[][] termVectors) {
+        this.rank = rank;
+        this.singularValues = singularValues;
+        this.documentCoordinates = documentCoordinates;
+        this.termColumns = termColumns;
+        this.termVectors = termVectors;
+    }
+
+    /**
+     * Decompose a documents × terms matrix into its top {@code k} singular triplets.
+     * Only terms that occur in the matrix take part; the rank is further capped by the number of documents.
+     *
+     * @param matrix weighted documents × terms matrix
+     * @param k number of latent dimensions to keep
+     */
+    static TruncatedSVD decompose(TermDocumentMatrix matrix, int k) {
+        int[] termColumns = new int[matrix.numTerms()];
+        Arrays.fill(termColumns, -1);
+        int columns = 0;
+        for (int position = 0; position < matrix.numNonZeros(); position++) {
+            int term = matrix.termAt(position);
+            if (termColumns[term] == -1) termColumns[term] = columns++;
+        }
+
+        int docs = matrix.numDocs();
+        int rank = Math.max(0, Math.min(k, Math.min(docs, columns)));
+        if (rank == 0) {
+            return new TruncatedSVD(0, new double[0], new double[docs][0], termColumns, new double[columns][0]);
+        }
+        int samples = Math.min(rank + Math.max(rank, MIN_OVERSAMPLING), Math.min(docs, columns));
+
+        // Range finder: Q = orth(D Ω), refined by power iterations Q = orth(D orth(Dᵀ Q)).
+        Random random = new Random(SEED);
+        double[][] omega = new double[columns][samples];
+        for (double[] row : omega) {
+            for (int c = 0; c < samples; c++) row[c] = random.nextGaussian();
+        }
+        double[][] q = orthonormalize(multiply(matrix, termColumns, omega, samples));
+        for (int iteration = 0; iteration < POWER_ITERATIONS; iteration++) {
+            double[][] z = orthonormalize(multiplyTransposed(matrix, termColumns, q, columns, samples));
+            q = orthonormalize(multiply(matrix, termColumns, z, samples));
+        }
+
+        // Bᵀ = Dᵀ Q is terms × samples; its SVD W Σ Ũᵀ gives D ≈ (Q Ũ) Σ Wᵀ.
+        double[][] bt = multiplyTransposed(matrix, termColumns, q, columns, samples);
+        SingularValueDecomposition svd = new SingularValueDecomposition(MatrixUtils.createRealMatrix(bt));
+        double[] sigma = svd.getSingularValues();
+        double[][] w = svd.getU().getData();
+        double[][] uTilde = svd.getV().getData();
+
+        double[] singularValues = Arrays.copyOf(sigma, rank);
+        double[][] documentCoordinates = new double[docs][rank];
+        for (int i = 0; i < docs; i++) {
+            for (int c = 0; c < rank; c++) {
+                double v = 0.0;
+                for (int s = 0; s < samples; s++) {
+                    v += q[i][s] * uTilde[s][c];
+                }
+                documentCoordinates[i][c] = v * singularValues[c];
+            }
+        }
+        double[][] termVectors = new double[columns][];
+        for (int column = 0; column < columns; column++) {
+            termVectors[column] = Arrays.copyOf(w[column], rank);
+        }
+        return new TruncatedSVD(rank, singularValues, documentCoordinates, termColumns, termVectors);
+    }
+
+    /**
+     * @return number of latent dimensions actually kept
+     */
+    int getRank() {
+        return rank;
+    }
+
+    /**
+     * @return the kept singular values, in descending order
+     */
+    double[] getSingularValues() {
+        return singularValues;
+    }
+
+    /**
+     * @return latent coordinates {@code Σ_k v_j} of every document, indexed like the decomposed matrix's rows
+     */
+    double[][] getDocumentCoordinates() {
+        return documentCoordinates;
+    }
+
+    /**
+     * @return the left singular vector entries of a term, or null if the term did not occur in the matrix
+     */
+    double[] getTermVector(int term) {
+        if (term >= termColumns.length || termColumns[term] == -1) {
+            return null;
+        }
+        return termVectors[termColumns[term]];
+    }
+
+    /**
+     * D · X for a terms × samples matrix X, whose rows are addressed by compact term column.
+     */
+    private static double[][] multiply(TermDocumentMatrix matrix, int[] termColumns, double[][] x, int samples) {
+        double[][] result = new double[matrix.numDocs()][samples];
+        for (int i = 0; i < matrix.numDocs(); i++) {
+            double[] row = result[i];
+            for (int position = matrix.rowStart(i); position < matrix.rowEnd(i); position++) {
+                double value = matrix.valueAt(position);
+                double[] xRow = x[termColumns[matrix.termAt(position)]];
+                for (int c = 0; c < samples; c++) {
+                    row[c] += value * xRow[c];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Dᵀ · Y for a documents × samples matrix Y.
+     */
+    private static double[][] multiplyTransposed(
+            TermDocumentMatrix matrix, int[] termColumns, double[][] y, int columns, int samples) {
+        double[][] result = new double[columns][samples];
+        for (int i = 0; i < matrix.numDocs(); i++) {
+            double[] yRow = y[i];
+            for (int position = matrix.rowStart(i); position < matrix.rowEnd(i); position++) {
+                double value = matrix.valueAt(position);
+                double[] row = result[termColumns[matrix.termAt(position)]];
+                for (int c = 0; c < samples; c++) {
+                    row[c] += value * yRow[c];
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Orthonormalize the columns of a row-major matrix in place with modified Gram-Schmidt, applied twice for
+     * numerical stability. Columns that are (numerically) dependent on earlier ones become zero.
+     */
+    private static double[][] orthonormalize(double[][] a) {
+        if (a.length == 0) {
+            return a;
+        }
+        int samples = a[0].length;
+        double[] originalNorms = new double[samples];
+        for (int c = 0; c < samples; c++) {
+            originalNorms[c] = Math.sqrt(columnDot(a, c, c));
+        }
+        for (int pass = 0; pass < 2; pass++) {
+            for (int c = 0; c < samples; c++) {
+                for (int p = 0; p < c; p++) {
+                    double dot = columnDot(a, p, c);
+                    if (dot == 0.0) continue;
+                    for (double[] row : a) {
+                        row[c] -= dot * row[p];
+                    }
+                }
+                double norm = Math.sqrt(columnDot(a, c, c));
+                double scale = norm <= 1e-10 * Math.max(originalNorms[c], Double.MIN_NORMAL) ? 0.0 : 1.0 / norm;
+                for (double[] row : a) {
+                    row[c] *= scale;
+                }
+            }
+        }
+        return a;
+    }
+
+    private static double columnDot(double[][] a, int first, int second) {
+        double dot = 0.0;
+        for (double[] row : a) {
+            dot += row[first] * row[second];
+        }
+        return dot;
+    }
+}
@@ -0,0 +1,98 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * The VSM, LSI and JSD representations of one artifact corpus (typically S∪M∪T), built once and shared by all
+ * union matrices of a pipeline run.
+ * <p>
+ * The corpus is tokenized into a single term-document matrix. Term frequencies double as the JSD distributions,
+ * TF-IDF is weighted with the document frequencies of the whole corpus, and LSI compares the coordinates of one
+ * {@link LatentSpace} of that TF-IDF matrix. A union block between any two subsets of the corpus then only runs the
+ * three similarity kernels on rows selected from these matrices, instead of re-tokenizing, re-weighting and
+ * re-decomposing the merged pair as {@link IRUnion#computeUnion(ArtifactsCollection, ArtifactsCollection)} does.
+ * Since IDF and the decomposition span the whole corpus, VSM and LSI scores differ from the pairwise union; JSD
+ * scores do not depend on the rest of the corpus. The pipeline therefore keeps the pairwise union by default and only
+ * uses a shared corpus with {@code -Dtriad.union.corpus=true}.
+ */
+public final class UnionCorpus {
+    private final ArtifactsCollection corpus;
+    private final TermDocumentMatrix counts;
+    private final TermDocumentMatrix distributions;
+    private final TermDocumentMatrix tfidf;
+    private final LatentSpace latentSpace;
+    private final int parallelism;
+
+    /**
+     * Index a corpus, decomposing it into a latent space of rank {@code k}.
+     *
+     * @param corpus all artifacts any block will be computed for
+     * @param dictionary vocabulary shared with the other matrices of the run
+     * @param k number of latent dimensions
+     */
+    public UnionCorpus(ArtifactsCollection corpus, TermDictionary dictionary, int k) {
+        this(corpus, dictionary, LatentSpace.build(corpus, k));
+    }
+
+    /**
+     * Index a corpus whose latent space has already been computed, e.g. by {@link LatentSpace#loadOrBuild}.
+     *
+     * @param corpus all artifacts any block will be computed for
+     * @param dictionary vocabulary shared with the other matrices of the run
+     * @param latentSpace decomposition of {@code corpus}
+     */
+    public UnionCorpus(ArtifactsCollection corpus, TermDictionary dictionary, LatentSpace latentSpace) {
+        this.corpus = corpus;
+        this.latentSpace = latentSpace;
+        this.parallelism = RowPartitioner.configuredParallelism();
+
+        this.counts = new TermDocumentMatrix(corpus, dictionary);
+        this.distributions = JSD.distributionMatrix(counts.selectDocuments(counts.getDocumentNames()));
+        this.tfidf = distributions.selectDocuments(distributions.getDocumentNames());
+        double[] df = new double[tfidf.numTerms()];
+        for (int k = 0; k < tfidf.numNonZeros(); k++) {
+            df[tfidf.termAt(k)] += 1.0;
+        }
+        for (int k = 0; k < tfidf.numNonZeros(); k++) {
+            tfidf.setValueAt(k, tfidf.valueAt(k) * Math.log(tfidf.numDocs() / df[tfidf.termAt(k)]));
+        }
+    }
+
+    /**
+     * Compute the average union of VSM, LSI, and JSD similarities between two subsets of the corpus.
+     *
+     * @param source source artifacts, all contained in the corpus
+     * @param target target artifacts, all contained in the corpus
+     * @return element-wise average of per-model similarity scores
+     */
+    public SimilarityMatrix computeUnion(ArtifactsCollection source, ArtifactsCollection target) {
+        List<String> sourceIds = List.copyOf(new TreeSet<>(source.keySet()));
+        List<String> targetIds = List.copyOf(new TreeSet<>(target.keySet()));
+        // A self-join hands the same rows to the kernels as queries and documents, so they score one triangle.
+        boolean symmetric = sourceIds.equals(targetIds);
+
+        TermDocumentMatrix sourceWithTFIDF = tfidf.selectDocuments(sourceIds);
+        TermDocumentMatrix targetWithTFIDF = symmetric ? sourceWithTFIDF : tfidf.selectDocuments(targetIds);
+        SimilarityMatrix sV = new SimilarityMatrix(sourceIds, targetIds);
+        if (VSM.isPostingsConfigured()) {
+            CosineKernel.computeSimilaritiesByPostings(sourceWithTFIDF, targetWithTFIDF, sV, parallelism);
+        } else {
+            CosineKernel.computeSimilarities(sourceWithTFIDF, targetWithTFIDF, sV, parallelism);
+        }
+
+        double[][] sourceCoordinates = latentSpace.coordinates(corpus, sourceIds, counts);
+        double[][] targetCoordinates =
+                symmetric ? sourceCoordinates : latentSpace.coordinates(corpus, targetIds, counts);
+        SimilarityMatrix sL = new SimilarityMatrix(sourceIds, targetIds);
+        CosineKernel.computeSimilarities(sourceCoordinates, targetCoordinates, sL, parallelism);
+
+        TermDocumentMatrix sourceDistributions = distributions.selectDocuments(sourceIds);
+        TermDocumentMatrix targetDistributions =
+                symmetric ? sourceDistributions : distributions.selectDocuments(targetIds);
+        SimilarityMatrix sJ = JSD.computeSimilarities(sourceDistributions, targetDistributions, parallelism);
+
+        return IRUnion.average(sV, sL, sJ);
+    }
+}
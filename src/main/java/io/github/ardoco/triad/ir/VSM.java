@@ -1,61 +1,126 @@
 /* Licensed under MIT 2025. */
 package io.github.ardoco.triad.ir;
 
-import java.util.Collections;
-import java.util.List;
-
+import java.util.TreeSet;
+
+/**
+ * Cosine similarity of TF-IDF vectors over the union of source and target artifacts.
+ * <p>
+ * By default every source is scored term at a time against an {@link InvertedIndex} of the targets, so only targets
+ * sharing a term with it cost any work. {@code -Dtriad.vsm.backend=blocked} streams every target row against blocks
+ * of sources instead; both backends produce identical scores. With postings, {@link #ComputeTopK} prunes documents
+ * that cannot reach the top k of a source with {@link MaxScore}, and {@link #index} keeps its index for repeated
+ * queries.
+ */
 public class VSM implements IRModel {
-    private TermDocumentMatrix queries;
-    private TermDocumentMatrix documents;
+    static final String BACKEND_PROPERTY = "triad.vsm.backend";
+
+    private final int parallelism;
+    private final boolean postings;
+
+    /**
+     * Create a VSM model using the configured parallelism level.
+     */
+    public VSM() {
+        this(RowPartitioner.configuredParallelism());
+    }
+
+    /**
+     * Create a VSM model that scores query rows on the given number of threads.
+     */
+    public VSM(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        this.postings = isPostingsConfigured();
+    }
+
+    /**
+     * @return false if {@code -Dtriad.vsm.backend=blocked} asks for the blocked product instead of postings lists
+     */
+    static boolean isPostingsConfigured() {
+        return !"blocked".equalsIgnoreCase(System.getProperty(BACKEND_PROPERTY, "postings"));
+    }
 
-    @Override
     /**
      * Compute VSM similarities between source and target artifact collections.
      */
-    public SimilarityMatrix Compute(ArtifactsCollection source, ArtifactsCollection target) {
+    @Override
+    public IRResult ComputeResult(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
         ArtifactsCollection bothSourceAndTarget = new ArtifactsCollection();
         bothSourceAndTarget.putAll(source);
         bothSourceAndTarget.putAll(target);
-        return Compute(
-                new TermDocumentMatrix(source),
-                new TermDocumentMatrix(target),
-                new TermDocumentMatrix(bothSourceAndTarget));
+        TermDocumentMatrix both = new TermDocumentMatrix(bothSourceAndTarget, dictionary);
+        return ComputeResult(
+                both.selectDocuments(new TreeSet<>(source.keySet())),
+                both.selectDocuments(new TreeSet<>(target.keySet())),
+                both);
     }
 
     /**
      * Compute VSM similarities from pre-built term-document matrices.
+     * Only the document names of {@code source} and {@code target} are used; their rows are taken from the
+     * TF-IDF weighted {@code both} matrix, which is modified in place.
      */
     public SimilarityMatrix Compute(TermDocumentMatrix source, TermDocumentMatrix target, TermDocumentMatrix both) {
-        TermDocumentMatrix TF = ComputeTF(both);
-        double[] IDF = ComputeIDF(ComputeDF(both), both.numDocs());
-        TermDocumentMatrix TFIDF = ComputeTFIDF(TF, IDF);
-        TermDocumentMatrix sourceIDs = ComputeIdentities(source);
-        TermDocumentMatrix targetIDs = ComputeIdentities(target);
-        TermDocumentMatrix sourceWithTFIDF = ReplaceIDWithTFIDF(sourceIDs, TFIDF);
-        TermDocumentMatrix targetWithTFIDF = ReplaceIDWithTFIDF(targetIDs, TFIDF);
-        return ComputeSimilarities(sourceWithTFIDF, targetWithTFIDF);
-    }
-
-    private TermDocumentMatrix ReplaceIDWithTFIDF(TermDocumentMatrix ids, TermDocumentMatrix tfidf) {
-        for (int i = 0; i < ids.numDocs(); i++) {
-            for (int j = 0; j < ids.numTerms(); j++) {
-                double value = tfidf.getValue(ids.getDocumentName(i), ids.getTermName(j));
-                ids.setValue(i, j, value);
-            }
+        return ComputeResult(source, target, both).similarities();
+    }
+
+    private IRResult ComputeResult(TermDocumentMatrix source, TermDocumentMatrix target, TermDocumentMatrix both) {
+        TermDocumentMatrix TFIDF = weigh(both);
+        TermDocumentMatrix sourceWithTFIDF = TFIDF.selectDocuments(source.getDocumentNames());
+        // A self-join passes the same rows twice, so only the upper triangle is scored.
+        TermDocumentMatrix targetWithTFIDF = source.getDocumentNames().equals(target.getDocumentNames())
+                ? sourceWithTFIDF
+                : TFIDF.selectDocuments(target.getDocumentNames());
+        return new IRResult(
+                ComputeSimilarities(sourceWithTFIDF, targetWithTFIDF), sourceWithTFIDF, targetWithTFIDF);
+    }
+
+    @Override
+    public TopKLinks ComputeTopK(
+            ArtifactsCollection source,
+            ArtifactsCollection target,
+            TermDictionary dictionary,
+            int k,
+            double relativeThreshold) {
+        if (postings) {
+            return index(source, target, dictionary).search(k, relativeThreshold);
         }
-        return ids;
+        ArtifactsCollection bothSourceAndTarget = new ArtifactsCollection();
+        bothSourceAndTarget.putAll(source);
+        bothSourceAndTarget.putAll(target);
+        TermDocumentMatrix TFIDF = weigh(new TermDocumentMatrix(bothSourceAndTarget, dictionary));
+        TermDocumentMatrix queries = TFIDF.selectDocuments(new TreeSet<>(source.keySet()));
+        TermDocumentMatrix documents = TFIDF.selectDocuments(new TreeSet<>(target.keySet()));
+
+        TopKLinks.Collector collector = new TopKLinks.Collector(
+                queries.getDocumentNames(), documents.getDocumentNames(), k, relativeThreshold);
+        CosineKernel.computeTopK(queries, documents, collector, parallelism);
+        return collector.finish();
     }
 
-    private TermDocumentMatrix ComputeTFIDF(TermDocumentMatrix tf, double[] idf) {
-        for (int i = 0; i < tf.numDocs(); i++) {
-            for (int j = 0; j < tf.numTerms(); j++) {
-                tf.setValue(i, j, tf.getValue(i, j) * idf[j]);
-            }
+    /**
+     * Index source and target once for repeated top-k queries, such as interactive lookups of the best targets of
+     * single sources.
+     */
+    public VSMIndex index(ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary) {
+        return new VSMIndex(source, target, dictionary, parallelism);
+    }
+
+    /**
+     * Replace the term counts of a matrix in place by their TF-IDF weights.
+     */
+    static TermDocumentMatrix weigh(TermDocumentMatrix counts) {
+        return ComputeTFIDF(ComputeTF(counts), ComputeIDF(ComputeDF(counts), counts.numDocs()));
+    }
+
+    private static TermDocumentMatrix ComputeTFIDF(TermDocumentMatrix tf, double[] idf) {
+        for (int k = 0; k < tf.numNonZeros(); k++) {
+            tf.setValueAt(k, tf.valueAt(k) * idf[tf.termAt(k)]);
         }
         return tf;
     }
 
-    private double[] ComputeIDF(double[] df, int numDocs) {
+    private static double[] ComputeIDF(double[] df, int numDocs) {
         double[] idf = new double[df.length];
         for (int i = 0; i < df.length; i++) {
             if (df[i] <= 0.0) {
@@ -67,78 +132,38 @@ public class VSM implements IRModel {
         return idf;
     }
 
-    private double[] ComputeDF(TermDocumentMatrix matrix) {
+    private static double[] ComputeDF(TermDocumentMatrix matrix) {
         double[] df = new double[matrix.numTerms()];
-        for (int j = 0; j < matrix.numTerms(); j++) {
-            df[j] = 0.0;
-            for (int i = 0; i < matrix.numDocs(); i++) {
-                df[j] += (matrix.getValue(i, j) > 0.0) ? 1.0 : 0.0;
+        for (int k = 0; k < matrix.numNonZeros(); k++) {
+            if (matrix.valueAt(k) > 0.0) {
+                df[matrix.termAt(k)] += 1.0;
             }
         }
         return df;
     }
 
-    private TermDocumentMatrix ComputeTF(TermDocumentMatrix matrix) {
+    private static TermDocumentMatrix ComputeTF(TermDocumentMatrix matrix) {
         for (int i = 0; i < matrix.numDocs(); i++) {
             double max = 0.0;
-            for (int k = 0; k < matrix.numTerms(); k++) {
-                max += matrix.getValue(i, k);
+            for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                max += matrix.valueAt(k);
             }
             if (max == 0.0) {
                 continue;
             }
-            for (int j = 0; j < matrix.numTerms(); j++) {
-                matrix.setValue(i, j, (matrix.getValue(i, j) / max));
-            }
-        }
-        return matrix;
-    }
-
-    private TermDocumentMatrix ComputeIdentities(TermDocumentMatrix matrix) {
-        for (int i = 0; i < matrix.numDocs(); i++) {
-            for (int j = 0; j < matrix.numTerms(); j++) {
-                matrix.setValue(i, j, ((matrix.getValue(i, j) > 0.0) ? 1.0 : 0.0));
+            for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); k++) {
+                matrix.setValueAt(k, matrix.valueAt(k) / max);
             }
         }
         return matrix;
     }
 
     private SimilarityMatrix ComputeSimilarities(TermDocumentMatrix ids, TermDocumentMatrix tfidf) {
-        SimilarityMatrix sims = new SimilarityMatrix();
-        List<TermDocumentMatrix> matrices = TermDocumentMatrix.equalize(ids, tfidf);
-
-        queries = matrices.get(0);
-        documents = matrices.get(1);
-
-        for (int i = 0; i < ids.numDocs(); i++) {
-            LinksList links = new LinksList();
-            for (int j = 0; j < tfidf.numDocs(); j++) {
-                double product = 0.0;
-                double asquared = 0.0;
-                double bsquared = 0.0;
-                for (int k = 0; k < matrices.get(0).numTerms(); k++) {
-                    double a = matrices.get(0).getValue(i, k);
-                    double b = matrices.get(1).getValue(j, k);
-                    product += (a * b);
-                    asquared += Math.pow(a, 2);
-                    bsquared += Math.pow(b, 2);
-                }
-                double cross = Math.sqrt(asquared) * Math.sqrt(bsquared);
-                if (cross == 0.0) {
-                    links.add(new SingleLink(
-                            ids.getDocumentName(i).trim(),
-                            tfidf.getDocumentName(j).trim(),
-                            0.0));
-                } else {
-                    links.add(new SingleLink(ids.getDocumentName(i), tfidf.getDocumentName(j), product / cross));
-                }
-            }
-
-            Collections.sort(links, Collections.reverseOrder());
-
-            for (SingleLink link : links) {
-                sims.addLink(link.getSourceArtifactId(), link.getTargetArtifactId(), link.getScore());
-            }
+        SimilarityMatrix sims = new SimilarityMatrix(ids.getDocumentNames(), tfidf.getDocumentNames());
+        if (postings) {
+            CosineKernel.computeSimilaritiesByPostings(ids, tfidf, sims, parallelism);
+        } else {
+            CosineKernel.computeSimilarities(ids, tfidf, sims, parallelism);
         }
         return sims;
     }
@@ -149,12 +174,7 @@ public class VSM implements IRModel {
     }
 
     @Override
-    public TermDocumentMatrix getTermDocumentMatrixOfQueries() {
-        return queries;
-    }
-
-    @Override
-    public TermDocumentMatrix getTermDocumentMatrixOfDocuments() {
-        return documents;
+    public int getParallelism() {
+        return parallelism;
     }
 }
@@ -0,0 +1,70 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * TF-IDF vectors of a source and a target collection with a {@link MaxScore} index of the targets, built once and
+ * queried any number of times for the best targets of a source.
+ * <p>
+ * The weights are those of {@link VSM} over the union of both collections, so every query returns exactly the links
+ * {@link VSM#ComputeTopK} returns for the same source. Building the index costs one pass over the union; a query only
+ * walks the postings of the source's terms that can still change its top k. An index is immutable and can be queried
+ * from several threads at once.
+ */
+public final class VSMIndex {
+    private final TermDocumentMatrix queries;
+    private final TermDocumentMatrix documents;
+    private final double[] queryNorms;
+    private final MaxScore maxScore;
+    private final int parallelism;
+
+    /**
+     * Index two collections.
+     *
+     * @param dictionary vocabulary all artifacts are interned into
+     * @param parallelism number of threads scoring sources in {@link #search(int, double)}
+     */
+    public VSMIndex(
+            ArtifactsCollection source, ArtifactsCollection target, TermDictionary dictionary, int parallelism) {
+        ArtifactsCollection bothSourceAndTarget = new ArtifactsCollection();
+        bothSourceAndTarget.putAll(source);
+        bothSourceAndTarget.putAll(target);
+        TermDocumentMatrix tfidf = VSM.weigh(new TermDocumentMatrix(bothSourceAndTarget, dictionary));
+        this.queries = tfidf.selectDocuments(new TreeSet<>(source.keySet()));
+        this.documents = tfidf.selectDocuments(new TreeSet<>(target.keySet()));
+        this.queryNorms = CosineKernel.norms(queries);
+        this.maxScore = new MaxScore(documents);
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @return the best links of every source: at most {@code k} targets scoring at least {@code relativeThreshold}
+     *     times the source's best score
+     */
+    public TopKLinks search(int k, double relativeThreshold) {
+        TopKLinks.Collector collector =
+                new TopKLinks.Collector(queries.getDocumentNames(), documents.getDocumentNames(), k, relativeThreshold);
+        maxScore.computeTopK(queries, collector, parallelism);
+        return collector.finish();
+    }
+
+    /**
+     * @return the at most {@code k} best targets of one source, best first, or an empty list if the source is not
+     *     indexed
+     */
+    public List<SingleLink> search(String sourceId, int k) {
+        int i = queries.getDocumentIndex(sourceId);
+        if (i < 0) {
+            return List.of();
+        }
+        TopKLinks.Collector collector =
+                new TopKLinks.Collector(List.of(sourceId), documents.getDocumentNames(), k, 0.0);
+        int[] visited = new int[documents.numDocs()];
+        Arrays.fill(visited, -1);
+        maxScore.scoreRow(queries, i, queryNorms[i], collector, 0, visited);
+        return collector.finish().getLinks(sourceId);
+    }
+}
@@ -0,0 +1,467 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persistent cache of artifact analysis results: the processed bag of words of {@link Artifact#getTextBody()} and the
+ * weighted biterms of {@link Artifact#getBiterms()}, so that repeated runs over an unchanged dataset skip tree-sitter
+ * and CoreNLP for every artifact they have seen before.
+ * <p>
+ * Results are content-addressed: the key of a result is a hash of the raw artifact text, the artifact type and
+ * {@link #EXTRACTOR_VERSION}, never of a file name, so a renamed file still hits and an edited one misses.
+ * <p>
+ * The cache is enabled with {@code -Dtriad.analysis.dir=<directory>} and kept there in a single file,
+ * {@value #FILE_NAME}: a header, an index of {@value #INDEX_ENTRY_BYTES}-byte entries sorted by key, and the records.
+ * The file is memory-mapped read-only in chunks of 1 GiB, so it may grow beyond 2 GiB, and looked up by binary search
+ * on the index, so opening it reads nothing up front. Results computed during a run are kept in memory and merged
+ * into the file by {@link #flushConfigured()}, which copies the stored records over without loading them. A file that
+ * is truncated or otherwise corrupt is ignored, as is a record that does not lie within it.
+ */
+public final class AnalysisCache {
+    static final String DIRECTORY_PROPERTY = "triad.analysis.dir";
+    static final String FILE_NAME = "analysis.bin";
+
+    /**
+     * Version of the text processing and biterm extraction. Bump it whenever their output changes, which invalidates
+     * every stored result.
+     */
+    static final int EXTRACTOR_VERSION = 1;
+
+    private static final Logger logger = LoggerFactory.getLogger(AnalysisCache.class);
+    private static final int MAGIC = 0x54524141; // "TRAA"
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    static final int INDEX_ENTRY_BYTES = 2 * Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final byte KIND_TEXT = 1;
+    private static final byte KIND_BITERMS = 2;
+    private static final int CHUNK_SHIFT = 30;
+    private static final int COPY_BYTES = 1 << 16;
+
+    private static final Map<Path, AnalysisCache> OPEN = new ConcurrentHashMap<>();
+
+    private record Key(long high, long low) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int order = Long.compareUnsigned(high, other.high);
+            return order != 0 ? order : Long.compareUnsigned(low, other.low);
+        }
+    }
+
+    /**
+     * Consecutive mappings of the file, {@code size} bytes in total, and the number of entries in its index. An index
+     * entry or a record may continue in the next chunk. Replaced as a whole when the file is remapped.
+     */
+    private record Stored(MappedByteBuffer[] chunks, int count, long size) {
+        static final Stored EMPTY = new Stored(new MappedByteBuffer[0], 0, 0);
+    }
+
+    private final Path file;
+    private final int chunkShift;
+    private final long chunkMask;
+    private final Map<Key, byte[]> added = new ConcurrentHashMap<>();
+    private volatile Stored stored;
+
+    private AnalysisCache(Path file) {
+        this(file, CHUNK_SHIFT);
+    }
+
+    /**
+     * @param chunkShift log2 of the bytes mapped per chunk, small in tests so that entries cross chunks
+     */
+    AnalysisCache(Path file, int chunkShift) {
+        this.file = file;
+        this.chunkShift = chunkShift;
+        this.chunkMask = (1L << chunkShift) - 1;
+        this.stored = map();
+    }
+
+    /**
+     * @return the cache in {@code directory}, mapping its file if it exists
+     */
+    static AnalysisCache open(Path directory) {
+        return OPEN.computeIfAbsent(directory.toAbsolutePath().normalize(), d -> new AnalysisCache(d.resolve(FILE_NAME)));
+    }
+
+    /**
+     * @return the cache in the directory configured via {@value #DIRECTORY_PROPERTY}, or null if it is disabled
+     */
+    static AnalysisCache configured() {
+        String directory = System.getProperty(DIRECTORY_PROPERTY);
+        return directory == null || directory.isBlank() ? null : open(Path.of(directory));
+    }
+
+    /**
+     * @return the processed text of an artifact of the given type and raw content, from the configured cache or
+     *     computed with {@code extractor} and added to it
+     */
+    static String text(ArtifactType type, String content, Supplier<String> extractor) {
+        AnalysisCache cache = configured();
+        if (cache == null || content == null) {
+            return extractor.get();
+        }
+        String text = cache.findText(type, content);
+        if (text == null) {
+            text = extractor.get();
+            cache.putText(type, content, text);
+        }
+        return text;
+    }
+
+    /**
+     * @return the biterms of an artifact of the given type and raw content, from the configured cache or computed
+     *     with {@code extractor} and added to it
+     */
+    static Set<Biterm> biterms(ArtifactType type, String content, Supplier<Set<Biterm>> extractor) {
+        Set<Biterm> biterms = findBiterms(type, content);
+        if (biterms == null) {
+            biterms = extractor.get();
+            putBiterms(type, content, biterms);
+        }
+        return biterms;
+    }
+
+    /**
+     * @return the stored biterms of an artifact of the given type and raw content, or null if there are none
+     */
+    static Set<Biterm> findBiterms(ArtifactType type, String content) {
+        AnalysisCache cache = configured();
+        if (cache == null || content == null) {
+            return null;
+        }
+        byte[] record = cache.find(key(KIND_BITERMS, type, content));
+        return record == null ? null : decodeBiterms(record);
+    }
+
+    /**
+     * @return the processed text of an artifact of the given type and raw content in this cache, or null if there is
+     *     none
+     */
+    String findText(ArtifactType type, String content) {
+        byte[] record = find(key(KIND_TEXT, type, content));
+        return record == null ? null : new String(record, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Add the processed text of an artifact of the given type and raw content to this cache.
+     */
+    void putText(ArtifactType type, String content, String text) {
+        added.put(key(KIND_TEXT, type, content), text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Add the biterms of an artifact of the given type and raw content to the configured cache, if there is one.
+     */
+    static void putBiterms(ArtifactType type, String content, Set<Biterm> biterms) {
+        AnalysisCache cache = configured();
+        if (cache != null && content != null) {
+            // Encoded right away: the weights of the returned biterms may still change.
+            cache.added.put(key(KIND_BITERMS, type, content), encodeBiterms(biterms));
+        }
+    }
+
+    /**
+     * Merge the results computed since the last flush into the file of the configured cache. Failing to write the
+     * file only costs the reuse in later runs.
+     */
+    public static void flushConfigured() {
+        AnalysisCache cache = configured();
+        if (cache == null) {
+            return;
+        }
+        try {
+            cache.flush();
+        } catch (IOException e) {
+            logger.warn("Could not store analysis results in {}: {}", cache.file, e.getMessage());
+        }
+    }
+
+    /**
+     * Merge the results computed since the last flush into the file. Stored records are copied from the mapped file
+     * in pieces, so only the index and the new records are held in memory.
+     */
+    synchronized void flush() throws IOException {
+        if (added.isEmpty()) {
+            return;
+        }
+        Stored current = stored;
+        MappedByteBuffer[] chunks = current.chunks();
+        Map<Key, byte[]> fresh = new TreeMap<>(added);
+        // Entry position of every stored result that is not replaced by a fresh one; corrupt ones are dropped.
+        Map<Key, Long> kept = new TreeMap<>();
+        for (int i = 0; i < current.count(); i++) {
+            long entry = entry(i);
+            Key key = new Key(getLong(chunks, entry), getLong(chunks, entry + Long.BYTES));
+            if (!fresh.containsKey(key) && inBounds(current, entry)) {
+                kept.put(key, entry);
+            }
+        }
+        Set<Key> keys = new TreeSet<>(kept.keySet());
+        keys.addAll(fresh.keySet());
+
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), "analysis-", ".tmp");
+        try {
+            try (DataOutputStream out =
+                    new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(EXTRACTOR_VERSION);
+                out.writeInt(keys.size());
+                long offset = HEADER_BYTES + (long) keys.size() * INDEX_ENTRY_BYTES;
+                for (Key key : keys) {
+                    byte[] record = fresh.get(key);
+                    int length = record != null ? record.length : getInt(chunks, kept.get(key) + 3 * Long.BYTES);
+                    out.writeLong(key.high());
+                    out.writeLong(key.low());
+                    out.writeLong(offset);
+                    out.writeInt(length);
+                    offset += length;
+                }
+                byte[] buffer = new byte[COPY_BYTES];
+                for (Key key : keys) {
+                    byte[] record = fresh.get(key);
+                    if (record != null) {
+                        out.write(record);
+                    } else {
+                        long entry = kept.get(key);
+                        copy(
+                                chunks,
+                                getLong(chunks, entry + 2 * Long.BYTES),
+                                getInt(chunks, entry + 3 * Long.BYTES),
+                                buffer,
+                                out);
+                    }
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        stored = map();
+        added.keySet().removeAll(fresh.keySet());
+        logger.info("Stored {} analysis results in {}", keys.size(), file);
+    }
+
+    /**
+     * @return the number of results in the file and in memory
+     */
+    int size() {
+        Stored current = stored;
+        int pending = 0;
+        for (Key key : added.keySet()) {
+            if (indexOf(current, key) < 0) {
+                pending++;
+            }
+        }
+        return current.count() + pending;
+    }
+
+    /**
+     * @return the mapped file, or no results if there is none or it cannot be used
+     */
+    private Stored map() {
+        if (!Files.isRegularFile(file)) {
+            return Stored.EMPTY;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                logger.warn("Ignoring analysis results in {}: unexpected size {}", file, size);
+                return Stored.EMPTY;
+            }
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + chunkMask) >>> chunkShift)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = (long) i << chunkShift;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkMask + 1, size - start));
+            }
+            if (getInt(chunks, 0) != MAGIC || getInt(chunks, Integer.BYTES) != EXTRACTOR_VERSION) {
+                logger.info("Ignoring analysis results of another format or extractor version in {}", file);
+                return Stored.EMPTY;
+            }
+            int count = getInt(chunks, 2 * Integer.BYTES);
+            if (count < 0 || entry(count) > size) {
+                logger.warn("Ignoring corrupt analysis results in {}: {} entries in {} bytes", file, count, size);
+                return Stored.EMPTY;
+            }
+            return new Stored(chunks, count, size);
+        } catch (IOException e) {
+            logger.warn("Ignoring analysis results in {}: {}", file, e.getMessage());
+            return Stored.EMPTY;
+        }
+    }
+
+    private byte[] find(Key key) {
+        byte[] record = added.get(key);
+        if (record != null) {
+            return record;
+        }
+        Stored current = stored;
+        int index = indexOf(current, key);
+        if (index < 0) {
+            return null;
+        }
+        long entry = entry(index);
+        if (!inBounds(current, entry)) {
+            logger.warn("Ignoring a corrupt analysis result in {}", file);
+            return null;
+        }
+        return record(current.chunks(), entry);
+    }
+
+    private int indexOf(Stored current, Key key) {
+        MappedByteBuffer[] chunks = current.chunks();
+        int low = 0;
+        int high = current.count() - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long entry = entry(middle);
+            int order = new Key(getLong(chunks, entry), getLong(chunks, entry + Long.BYTES)).compareTo(key);
+            if (order < 0) {
+                low = middle + 1;
+            } else if (order > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether the record of the index entry at {@code entry} lies between the index and the end of the file
+     */
+    private boolean inBounds(Stored current, long entry) {
+        long offset = getLong(current.chunks(), entry + 2 * Long.BYTES);
+        int length = getInt(current.chunks(), entry + 3 * Long.BYTES);
+        return length >= 0 && offset >= entry(current.count()) && offset <= current.size() - length;
+    }
+
+    private static long entry(int index) {
+        return HEADER_BYTES + (long) index * INDEX_ENTRY_BYTES;
+    }
+
+    private byte[] record(MappedByteBuffer[] chunks, long entry) {
+        byte[] record = new byte[getInt(chunks, entry + 3 * Long.BYTES)];
+        read(chunks, getLong(chunks, entry + 2 * Long.BYTES), record, record.length);
+        return record;
+    }
+
+    private void copy(MappedByteBuffer[] chunks, long offset, int length, byte[] buffer, OutputStream out)
+            throws IOException {
+        while (length > 0) {
+            int piece = Math.min(length, buffer.length);
+            read(chunks, offset, buffer, piece);
+            out.write(buffer, 0, piece);
+            offset += piece;
+            length -= piece;
+        }
+    }
+
+    /**
+     * Read {@code length} bytes at {@code offset} of the file into the start of {@code into}, across chunks.
+     */
+    private void read(MappedByteBuffer[] chunks, long offset, byte[] into, int length) {
+        int done = 0;
+        while (done < length) {
+            MappedByteBuffer chunk = chunks[(int) (offset >>> chunkShift)];
+            int position = (int) (offset & chunkMask);
+            int piece = Math.min(length - done, chunk.limit() - position);
+            chunk.get(position, into, done, piece);
+            offset += piece;
+            done += piece;
+        }
+    }
+
+    private long getLong(MappedByteBuffer[] chunks, long offset) {
+        MappedByteBuffer chunk = chunks[(int) (offset >>> chunkShift)];
+        int position = (int) (offset & chunkMask);
+        if (position + Long.BYTES <= chunk.limit()) {
+            return chunk.getLong(position);
+        }
+        byte[] bytes = new byte[Long.BYTES];
+        read(chunks, offset, bytes, Long.BYTES);
+        return ByteBuffer.wrap(bytes).getLong();
+    }
+
+    private int getInt(MappedByteBuffer[] chunks, long offset) {
+        MappedByteBuffer chunk = chunks[(int) (offset >>> chunkShift)];
+        int position = (int) (offset & chunkMask);
+        if (position + Integer.BYTES <= chunk.limit()) {
+            return chunk.getInt(position);
+        }
+        byte[] bytes = new byte[Integer.BYTES];
+        read(chunks, offset, bytes, Integer.BYTES);
+        return ByteBuffer.wrap(bytes).getInt();
+    }
+
+    private static Key key(byte kind, ArtifactType type, String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(kind);
+            digest.update(type.name().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(0, EXTRACTOR_VERSION));
+            digest.update(content.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer hash = ByteBuffer.wrap(digest.digest());
+            return new Key(hash.getLong(), hash.getLong());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static byte[] encodeBiterms(Set<Biterm> biterms) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(biterms.size());
+            for (Biterm biterm : biterms) {
+                out.writeUTF(biterm.getFirstTerm());
+                out.writeUTF(biterm.getSecondTerm());
+                out.writeInt(biterm.getWeight());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Set<Biterm> decodeBiterms(byte[] record) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(record))) {
+            int size = in.readInt();
+            Set<Biterm> biterms = new HashSet<>();
+            for (int i = 0; i < size; i++) {
+                Biterm biterm = new Biterm(in.readUTF(), in.readUTF());
+                biterm.setWeight(in.readInt());
+                biterms.add(biterm);
+            }
+            return biterms;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
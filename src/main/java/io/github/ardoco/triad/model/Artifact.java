@@ -132,12 +132,13 @@ public abstract class Artifact {
      * <p>
      * This method uses lazy initialization. The biterms are computed on the first call and cached for
      * subsequent requests. The cache is invalidated if the text body is modified (e.g., by enrichment).
+     * With an {@link AnalysisCache}, biterms of a text analyzed in an earlier run are read from disk instead.
      *
      * @return a {@link Set} of {@link Biterm} objects.
      */
     public Set<Biterm> getBiterms() {
         if (this.biterms == null) {
-            this.biterms = getBitermsFromText(this.textBody);
+            this.biterms = AnalysisCache.biterms(getType(), this.textBody, () -> getBitermsFromText(this.textBody));
         }
         return this.biterms;
     }
@@ -176,9 +177,7 @@ public abstract class Artifact {
         Map<String, String> bitermRelations = new HashMap<>();
         if (this.textBody == null || this.textBody.isBlank()) return bitermRelations;
 
-        String raw =
-                this.textBody.replaceAll("(?i)\\[(SUMMARY|DESCRIPTION)\\]", " ").replace('-', ' ');
-        Annotation doc = new Annotation(raw);
+        Annotation doc = new Annotation(prepareForParsing(this.textBody));
         pipeline.annotate(doc);
 
         List<CoreMap> sentences = doc.get(CoreAnnotations.SentencesAnnotation.class);
@@ -214,13 +213,39 @@ public abstract class Artifact {
      * @return A {@link Set} of weighted {@link Biterm}s.
      */
     protected Set<Biterm> getBitermsFromText(String text) {
-        Map<Biterm, Integer> bitermFrequencies = new HashMap<>();
         if (text == null || text.isBlank()) return new HashSet<>();
 
-        String raw = text.replaceAll("(?i)\\[(SUMMARY|DESCRIPTION)\\]", " ").replace('-', ' ');
-        Annotation doc = new Annotation(raw);
+        Annotation doc = new Annotation(prepareForParsing(text));
         pipeline.annotate(doc);
+        return getBitermsFromAnnotation(doc);
+    }
+
+    /**
+     * Returns the text that {@link #getBiterms()} would still have to parse with CoreNLP, so that
+     * {@link BitermExtractor} can parse it together with that of other artifacts.
+     *
+     * @return the text body, or {@code null} if the biterms are cached or not extracted by dependency parsing.
+     */
+    String getPendingBitermText() {
+        return this.biterms == null ? this.textBody : null;
+    }
+
+    /**
+     * Removes the section markers and hyphens that the dependency parser should not see.
+     */
+    static String prepareForParsing(String text) {
+        return text.replaceAll("(?i)\\[(SUMMARY|DESCRIPTION)\\]", " ").replace('-', ' ');
+    }
 
+    /**
+     * Extracts weighted biterms from a text that the shared pipeline has annotated; see
+     * {@link #getBitermsFromText(String)}.
+     *
+     * @param doc the annotated text, prepared with {@link #prepareForParsing(String)}.
+     * @return A {@link Set} of weighted {@link Biterm}s.
+     */
+    static Set<Biterm> getBitermsFromAnnotation(Annotation doc) {
+        Map<Biterm, Integer> bitermFrequencies = new HashMap<>();
         List<CoreMap> sentences = doc.get(CoreAnnotations.SentencesAnnotation.class);
         if (sentences == null) return new HashSet<>();
 
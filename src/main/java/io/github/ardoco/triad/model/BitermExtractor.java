@@ -0,0 +1,99 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.stanford.nlp.pipeline.Annotation;
+
+import io.github.ardoco.triad.text.NlpParallelism;
+
+/**
+ * Fills the biterm caches of many artifacts at once, dependency-parsing their texts on several CoreNLP worker threads
+ * instead of one artifact after the other in {@link Artifact#getBiterms()}.
+ * <p>
+ * Every artifact gets exactly the biterms its own {@link Artifact#getBiterms()} would compute: the texts are prepared
+ * and parsed by the same shared pipeline and read by the same extraction, only concurrently. Artifacts whose biterms
+ * are already cached, or that take them from a syntax tree rather than from dependency parsing, are left alone, and
+ * biterms stored in the {@link AnalysisCache} are read instead of parsed.
+ * <p>
+ * The worker count is {@link NlpParallelism#configuredThreads()}; with one worker nothing is parsed ahead of time and
+ * the artifacts keep extracting their biterms lazily.
+ */
+public final class BitermExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(BitermExtractor.class);
+
+    /** Texts annotated per worker and call, so that only a batch of parses is held in memory at a time. */
+    private static final int TEXTS_PER_THREAD = 16;
+
+    private BitermExtractor() {}
+
+    /**
+     * Extract and cache the biterms of all {@code artifacts} that still need dependency parsing.
+     */
+    public static void extractAll(Collection<? extends Artifact> artifacts) {
+        extractAll(artifacts, NlpParallelism.configuredThreads());
+    }
+
+    /**
+     * Extract and cache the biterms of all {@code artifacts} that still need dependency parsing, on {@code threads}
+     * CoreNLP worker threads.
+     */
+    public static void extractAll(Collection<? extends Artifact> artifacts, int threads) {
+        if (threads <= 1) {
+            return;
+        }
+        List<Artifact> pending = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            String text = artifact.getPendingBitermText();
+            if (text == null) {
+                continue;
+            }
+            if (text.isBlank()) {
+                artifact.biterms = new HashSet<>();
+                continue;
+            }
+            Set<Biterm> stored = AnalysisCache.findBiterms(artifact.getType(), text);
+            if (stored != null) {
+                artifact.biterms = stored;
+            } else {
+                pending.add(artifact);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        logger.info("Parsing {} artifacts for biterms on {} threads", pending.size(), threads);
+
+        int batchSize = threads * TEXTS_PER_THREAD;
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Artifact> batch = pending.subList(from, Math.min(pending.size(), from + batchSize));
+            Map<Annotation, Artifact> owners = new IdentityHashMap<>();
+            List<Annotation> documents = new ArrayList<>(batch.size());
+            for (Artifact artifact : batch) {
+                Annotation document = new Annotation(Artifact.prepareForParsing(artifact.getPendingBitermText()));
+                owners.put(document, artifact);
+                documents.add(document);
+            }
+            // Each document belongs to one artifact, so the callbacks of different workers touch disjoint caches;
+            // the call returns once every worker is done.
+            Artifact.pipeline.annotate(
+                    documents,
+                    threads,
+                    document -> {
+                        Artifact artifact = owners.get(document);
+                        Set<Biterm> biterms = Artifact.getBitermsFromAnnotation(document);
+                        AnalysisCache.putBiterms(artifact.getType(), artifact.getPendingBitermText(), biterms);
+                        artifact.biterms = biterms;
+                    });
+        }
+    }
+}
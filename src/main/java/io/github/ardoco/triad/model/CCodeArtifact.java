@@ -52,12 +52,21 @@ public class CCodeArtifact extends Artifact {
         return ArtifactType.C_CODE;
     }
 
+    @Override
+    String getPendingBitermText() {
+        // Code biterms come from the syntax tree; only comments are parsed, one at a time.
+        return null;
+    }
+
     @Override
     public Set<Biterm> getBiterms() {
-        if (this.biterms != null) {
-            return this.biterms;
+        if (this.biterms == null) {
+            this.biterms = AnalysisCache.biterms(getType(), this.textBody, this::extractBiterms);
         }
+        return this.biterms;
+    }
 
+    private Set<Biterm> extractBiterms() {
         Map<Biterm, Integer> bitermFrequencies = new HashMap<>();
         TSTree tree = parser.parseString(null, this.textBody);
         TSNode rootNode = tree.getRootNode();
@@ -70,8 +79,7 @@ public class CCodeArtifact extends Artifact {
             b.setWeight(entry.getValue());
             finalBiterms.add(b);
         }
-        this.biterms = finalBiterms;
-        return this.biterms;
+        return finalBiterms;
     }
 
     private void extractElementsRecursive(TSNode node, Map<Biterm, Integer> bitermFrequencies, String sourceCode) {
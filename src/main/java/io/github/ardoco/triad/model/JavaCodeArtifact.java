@@ -54,10 +54,13 @@ public class JavaCodeArtifact extends Artifact {
 
     @Override
     public String getTextBody() {
-        if (cachedProcessedTextBody != null) {
-            return cachedProcessedTextBody;
+        if (cachedProcessedTextBody == null) {
+            cachedProcessedTextBody = AnalysisCache.text(getType(), this.textBody, this::extractTextBody);
         }
+        return cachedProcessedTextBody;
+    }
 
+    private String extractTextBody() {
         StringBuilder bagOfWords = new StringBuilder();
         try {
             TSTree tree = parser.parseString(null, this.textBody);
@@ -69,16 +72,24 @@ public class JavaCodeArtifact extends Artifact {
             bagOfWords.append(processed);
         }
 
-        cachedProcessedTextBody = bagOfWords.toString().trim();
-        return cachedProcessedTextBody;
+        return bagOfWords.toString().trim();
+    }
+
+    @Override
+    String getPendingBitermText() {
+        // Code biterms come from the syntax tree; only comments are parsed, one at a time.
+        return null;
     }
 
     @Override
     public Set<Biterm> getBiterms() {
-        if (this.biterms != null) {
-            return this.biterms;
+        if (this.biterms == null) {
+            this.biterms = AnalysisCache.biterms(getType(), this.textBody, this::extractBiterms);
         }
+        return this.biterms;
+    }
 
+    private Set<Biterm> extractBiterms() {
         Map<Biterm, Integer> bitermFrequencies = new HashMap<>();
         TSTree tree = parser.parseString(null, this.textBody);
         TSNode rootNode = tree.getRootNode();
@@ -91,8 +102,7 @@ public class JavaCodeArtifact extends Artifact {
             b.setWeight(entry.getValue());
             finalBiterms.add(b);
         }
-        this.biterms = finalBiterms;
-        return this.biterms;
+        return finalBiterms;
     }
 
     private void extractElementsRecursive(TSNode node, Map<Biterm, Integer> bitermFrequencies, String sourceCode) {
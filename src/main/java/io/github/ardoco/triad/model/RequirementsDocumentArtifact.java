@@ -31,7 +31,8 @@ public class RequirementsDocumentArtifact extends Artifact {
     @Override
     public String getTextBody() {
         if (cachedProcessedTextBody == null) {
-            cachedProcessedTextBody = TextProcessor.processText(super.getTextBody());
+            cachedProcessedTextBody = AnalysisCache.text(
+                    getType(), super.getTextBody(), () -> TextProcessor.processText(super.getTextBody()));
         }
         return cachedProcessedTextBody;
     }
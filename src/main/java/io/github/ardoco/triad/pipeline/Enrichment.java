@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import io.github.ardoco.triad.ir.ArtifactsCollection;
 import io.github.ardoco.triad.ir.IRModel;
 import io.github.ardoco.triad.ir.SimilarityMatrix;
+import io.github.ardoco.triad.ir.TermDictionary;
 import io.github.ardoco.triad.model.Project;
 import io.github.ardoco.triad.util.EnrichmentUtils;
 
@@ -20,12 +21,13 @@ public class Enrichment {
     private final IRModel irModel;
     private final SimilarityMatrix sourceToIntermediateSim; // rows = sources, cols = intermediates
     private final SimilarityMatrix targetToIntermediateSim; // rows = targets, cols = intermediates
+    private final TermDictionary dictionary;
 
     /**
      * Create an enrichment stage of TRIAD.
      * <p>
      * This component selects consensual biterms from nearest-neighbor intermediates and
-     * appends them to source/target texts before recomputing similarities.
+     * adds them to the term counts of sources/targets before recomputing similarities.
      *
      * @param project project providing artifacts
      * @param irModel IR model used to recompute similarities after enrichment
@@ -39,10 +41,33 @@ public class Enrichment {
             SimilarityMatrix sourceToIntermediateSim,
             SimilarityMatrix intermediateToTargetSim,
             SimilarityMatrix targetToIntermediateSim) {
+        this(
+                project,
+                irModel,
+                sourceToIntermediateSim,
+                intermediateToTargetSim,
+                targetToIntermediateSim,
+                new TermDictionary());
+    }
+
+    /**
+     * Create an enrichment stage of TRIAD that recomputes similarities against a shared vocabulary.
+     *
+     * @param dictionary term dictionary of the pipeline run
+     * @see #Enrichment(Project, IRModel, SimilarityMatrix, SimilarityMatrix, SimilarityMatrix)
+     */
+    public Enrichment(
+            Project project,
+            IRModel irModel,
+            SimilarityMatrix sourceToIntermediateSim,
+            SimilarityMatrix intermediateToTargetSim,
+            SimilarityMatrix targetToIntermediateSim,
+            TermDictionary dictionary) {
         this.project = project;
         this.irModel = irModel;
         this.sourceToIntermediateSim = sourceToIntermediateSim;
         this.targetToIntermediateSim = targetToIntermediateSim;
+        this.dictionary = dictionary;
     }
 
     /**
@@ -68,8 +93,10 @@ public class Enrichment {
         ArtifactsCollection extendedTargets =
                 EnrichmentUtils.createExtendedCollection(project.getTargetArtifacts(), tgtEnrichBiterms, "TGT+");
 
-        SimilarityMatrix s1 = irModel.Compute(extendedSources, new ArtifactsCollection(project.getTargetArtifacts()));
-        SimilarityMatrix s2 = irModel.Compute(new ArtifactsCollection(project.getSourceArtifacts()), extendedTargets);
+        SimilarityMatrix s1 = irModel.Compute(
+                extendedSources, new ArtifactsCollection(project.getTargetArtifacts()), dictionary);
+        SimilarityMatrix s2 = irModel.Compute(
+                new ArtifactsCollection(project.getSourceArtifacts()), extendedTargets, dictionary);
 
         return EnrichmentUtils.elementwiseAverage(s1, s2);
     }
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import io.github.ardoco.triad.ir.ArtifactsCollection;
 import io.github.ardoco.triad.ir.IRModel;
 import io.github.ardoco.triad.ir.SimilarityMatrix;
+import io.github.ardoco.triad.ir.TermDictionary;
 import io.github.ardoco.triad.model.Project;
 import io.github.ardoco.triad.util.EnrichmentUtils;
 
@@ -20,6 +21,7 @@ public class TarotOnlyEnrichment {
     private final IRModel irModel;
     private final SimilarityMatrix sourceToTargetSim; // rows = sources, cols = targets
     private final SimilarityMatrix targetToSourceSim; // rows = targets, cols = sources
+    private final TermDictionary dictionary;
 
     /**
      * Create TAROT-only enrichment for projects without intermediates.
@@ -31,10 +33,26 @@ public class TarotOnlyEnrichment {
      */
     public TarotOnlyEnrichment(
             Project project, IRModel irModel, SimilarityMatrix sourceToTargetSim, SimilarityMatrix targetToSourceSim) {
+        this(project, irModel, sourceToTargetSim, targetToSourceSim, new TermDictionary());
+    }
+
+    /**
+     * Create TAROT-only enrichment that recomputes similarities against a shared vocabulary.
+     *
+     * @param dictionary term dictionary of the pipeline run
+     * @see #TarotOnlyEnrichment(Project, IRModel, SimilarityMatrix, SimilarityMatrix)
+     */
+    public TarotOnlyEnrichment(
+            Project project,
+            IRModel irModel,
+            SimilarityMatrix sourceToTargetSim,
+            SimilarityMatrix targetToSourceSim,
+            TermDictionary dictionary) {
         this.project = project;
         this.irModel = irModel;
         this.sourceToTargetSim = sourceToTargetSim;
         this.targetToSourceSim = targetToSourceSim;
+        this.dictionary = dictionary;
     }
 
     /**
@@ -62,8 +80,10 @@ public class TarotOnlyEnrichment {
         ArtifactsCollection extendedTargets =
                 EnrichmentUtils.createExtendedCollection(project.getTargetArtifacts(), tgtEnrichBiterms, "TGT+");
 
-        SimilarityMatrix s1 = irModel.Compute(extendedSources, new ArtifactsCollection(project.getTargetArtifacts()));
-        SimilarityMatrix s2 = irModel.Compute(new ArtifactsCollection(project.getSourceArtifacts()), extendedTargets);
+        SimilarityMatrix s1 = irModel.Compute(
+                extendedSources, new ArtifactsCollection(project.getTargetArtifacts()), dictionary);
+        SimilarityMatrix s2 = irModel.Compute(
+                new ArtifactsCollection(project.getSourceArtifacts()), extendedTargets, dictionary);
         return EnrichmentUtils.elementwiseAverage(s1, s2);
     }
 }
@@ -1,20 +1,23 @@
 /* Licensed under MIT 2025. */
 package io.github.ardoco.triad.pipeline;
 
-import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 
-import io.github.ardoco.triad.ir.LinksList;
 import io.github.ardoco.triad.ir.SimilarityMatrix;
 import io.github.ardoco.triad.ir.SingleLink;
+import io.github.ardoco.triad.ir.TopKLinks;
 
 public class Transitivity {
 
     private final SimilarityMatrix sourceIntermediateSimilarity;
     private final SimilarityMatrix intermediateTargetSimilarity;
-    private final SimilarityMatrix sourceSourceSimilarity;
-    private final SimilarityMatrix intermediateIntermediateSimilarity;
+
+    // Per-hop candidates, selected once per matrix instead of once per (source, target) pair.
+    private final TopKLinks sourceIntermediateHops;
+    private final TopKLinks intermediateTargetHops;
+    private final TopKLinks sourceSourceHops;
+    private final TopKLinks intermediateIntermediateHops;
 
     // --- Tunable parameters ---
     private static final int T_HOP1 = 3; // top-k per hop
@@ -35,8 +38,10 @@ public class Transitivity {
             SimilarityMatrix intermediateIntermediateSimilarity) {
         this.sourceIntermediateSimilarity = sourceIntermediateSimilarity;
         this.intermediateTargetSimilarity = intermediateTargetSimilarity;
-        this.sourceSourceSimilarity = sourceSourceSimilarity;
-        this.intermediateIntermediateSimilarity = intermediateIntermediateSimilarity;
+        this.sourceIntermediateHops = TopKLinks.of(sourceIntermediateSimilarity, T_HOP1, M_HOP1);
+        this.intermediateTargetHops = TopKLinks.of(intermediateTargetSimilarity, T_HOP1, M_HOP1);
+        this.sourceSourceHops = TopKLinks.of(sourceSourceSimilarity, T_HOP1, M_HOP1);
+        this.intermediateIntermediateHops = TopKLinks.of(intermediateIntermediateSimilarity, T_HOP1, M_HOP1);
     }
 
     /**
@@ -79,10 +84,10 @@ public class Transitivity {
         double bestScore = 0.0;
 
         // 1) Outer: s -> m -> t
-        List<SingleLink> s_to_m = getTopLinks(this.sourceIntermediateSimilarity, source, T_HOP1, M_HOP1);
+        List<SingleLink> s_to_m = getTopLinks(this.sourceIntermediateHops, source);
         for (SingleLink sm : s_to_m) {
             String m = sm.getTargetArtifactId();
-            List<SingleLink> m_to_t = getTopLinks(this.intermediateTargetSimilarity, m, T_HOP1, M_HOP1);
+            List<SingleLink> m_to_t = getTopLinks(this.intermediateTargetHops, m);
             for (SingleLink mt : m_to_t) {
                 if (mt.getTargetArtifactId().equals(target)) {
                     double score = sm.getScore() * mt.getScore();
@@ -92,13 +97,13 @@ public class Transitivity {
         }
 
         // 2) Inner (source): s -> s' -> m -> t
-        List<SingleLink> s_to_sprime = getTopLinks(this.sourceSourceSimilarity, source, T_HOP1, M_HOP1);
+        List<SingleLink> s_to_sprime = getTopLinks(this.sourceSourceHops, source);
         for (SingleLink ss : s_to_sprime) {
             String sprime = ss.getTargetArtifactId();
-            List<SingleLink> sprime_to_m = getTopLinks(this.sourceIntermediateSimilarity, sprime, T_HOP1, M_HOP1);
+            List<SingleLink> sprime_to_m = getTopLinks(this.sourceIntermediateHops, sprime);
             for (SingleLink sPm : sprime_to_m) {
                 String m = sPm.getTargetArtifactId();
-                List<SingleLink> m_to_t = getTopLinks(this.intermediateTargetSimilarity, m, T_HOP1, M_HOP1);
+                List<SingleLink> m_to_t = getTopLinks(this.intermediateTargetHops, m);
                 for (SingleLink mt : m_to_t) {
                     if (mt.getTargetArtifactId().equals(target)) {
                         double score = ss.getScore() * sPm.getScore() * mt.getScore();
@@ -111,10 +116,10 @@ public class Transitivity {
         // 3) Inner (intermediate): s -> m -> m' -> t
         for (SingleLink sm : s_to_m) {
             String m = sm.getTargetArtifactId();
-            List<SingleLink> m_to_mprime = getTopLinks(this.intermediateIntermediateSimilarity, m, T_HOP1, M_HOP1);
+            List<SingleLink> m_to_mprime = getTopLinks(this.intermediateIntermediateHops, m);
             for (SingleLink mMp : m_to_mprime) {
                 String mprime = mMp.getTargetArtifactId();
-                List<SingleLink> mprime_to_t = getTopLinks(this.intermediateTargetSimilarity, mprime, T_HOP1, M_HOP1);
+                List<SingleLink> mprime_to_t = getTopLinks(this.intermediateTargetHops, mprime);
                 for (SingleLink mpt : mprime_to_t) {
                     if (mpt.getTargetArtifactId().equals(target)) {
                         double score = sm.getScore() * mMp.getScore() * mpt.getScore();
@@ -127,16 +132,9 @@ public class Transitivity {
         return bestScore;
     }
 
-    private List<SingleLink> getTopLinks(SimilarityMatrix matrix, String sourceId, int topK, double m) {
-        LinksList links = matrix.getLinks(sourceId);
-        if (links == null || links.isEmpty()) return List.of();
-        double maxScore = links.stream().mapToDouble(SingleLink::getScore).max().orElse(0.0);
-        if (maxScore == 0.0) return List.of();
-        double threshold = maxScore * m;
-        return links.stream()
-                .filter(link -> link.getScore() >= threshold)
-                .sorted(Comparator.comparingDouble(SingleLink::getScore).reversed())
-                .limit(topK)
-                .toList();
+    private static List<SingleLink> getTopLinks(TopKLinks hops, String sourceId) {
+        // Rows without any positive score do not lead anywhere.
+        if (hops.getMaxScore(sourceId) == 0.0) return List.of();
+        return hops.getLinks(sourceId);
     }
 }
@@ -2,6 +2,9 @@
 package io.github.ardoco.triad.pipeline;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiFunction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,8 +12,19 @@ import org.slf4j.LoggerFactory;
 import io.github.ardoco.triad.ir.ArtifactsCollection;
 import io.github.ardoco.triad.ir.IRModel;
 import io.github.ardoco.triad.ir.IRUnion;
+import io.github.ardoco.triad.ir.JSD;
+import io.github.ardoco.triad.ir.LSI;
+import io.github.ardoco.triad.ir.LatentSpace;
+import io.github.ardoco.triad.ir.ScratchStore;
 import io.github.ardoco.triad.ir.SimilarityMatrix;
+import io.github.ardoco.triad.ir.TermArena;
+import io.github.ardoco.triad.ir.TermDictionary;
+import io.github.ardoco.triad.ir.UnionCorpus;
+import io.github.ardoco.triad.ir.VSM;
+import io.github.ardoco.triad.model.AnalysisCache;
 import io.github.ardoco.triad.model.Project;
+import io.github.ardoco.triad.text.Stemmer;
+import io.github.ardoco.triad.text.TextProcessor;
 
 public class TriadPipeline {
     private static final Logger logger = LoggerFactory.getLogger(TriadPipeline.class);
@@ -37,6 +51,30 @@ public class TriadPipeline {
      * @throws IOException if artifact loading fails
      */
     public SimilarityMatrix run() throws IOException {
+        SimilarityMatrix result;
+        // Term vectors and scratch score files live for one run at most; only the result leaves it.
+        try (TermArena arena = TermArena.open();
+                ScratchStore scratch = ScratchStore.open()) {
+            result = runStages();
+            scratch.keep(result);
+        }
+        AnalysisCache.flushConfigured();
+        logger.info(
+                "Text caches: words {}; stems {}",
+                TextProcessor.getWordCache().stats(),
+                Stemmer.getCache().stats());
+        Path directory = SimilarityMatrix.getStoreDirectory();
+        if (directory != null) {
+            // With the mapped store, the tiles double as the persisted result of the run.
+            Path file = directory.resolve(
+                    (project.getName() + "_" + irModel.getModelName()).replaceAll("[^A-Za-z0-9._-]", "_") + ".scores");
+            result.save(file);
+            logger.info("Saved similarity matrix to {}", file);
+        }
+        return result;
+    }
+
+    private SimilarityMatrix runStages() throws IOException {
         logger.info(
                 "Starting TRIAD pipeline for project '{}' with IR model '{}'",
                 project.getName(),
@@ -46,19 +84,58 @@ public class TriadPipeline {
         ArtifactsCollection targetCollection = new ArtifactsCollection(project.getTargetArtifacts());
         ArtifactsCollection intermediateCollection = new ArtifactsCollection(project.getIntermediateArtifacts());
 
-        SimilarityMatrix irOnlyBaseMatrix = irModel.Compute(sourceCollection, targetCollection);
+        // One vocabulary for the whole run: every matrix below shares its term indices.
+        TermDictionary dictionary = new TermDictionary();
+
+        // The whole corpus S ∪ M ∪ T, and the LSI rank its smallest artifact set supports.
+        ArtifactsCollection corpus = new ArtifactsCollection();
+        int k = LSI.MAX_K;
+        for (ArtifactsCollection collection : List.of(sourceCollection, intermediateCollection, targetCollection)) {
+            corpus.putAll(collection);
+            if (!collection.isEmpty()) k = Math.min(k, collection.size());
+        }
+
+        // With -Dtriad.lsi.mode=foldin, all LSI calls of the run fold into one persisted decomposition of the corpus.
+        LatentSpace latentSpace = LSI.isFoldInConfigured() ? LatentSpace.loadOrBuild(corpus, k) : null;
+        IRModel model = latentSpace != null && irModel instanceof LSI
+                ? new LSI(irModel.getParallelism(), latentSpace)
+                : irModel;
+
+        SimilarityMatrix irOnlyBaseMatrix;
+        try (TermArena stage = TermArena.open()) {
+            irOnlyBaseMatrix = model.Compute(sourceCollection, targetCollection, dictionary);
+        }
         logger.info("Computed IR-ONLY baseline matrix.");
 
+        // Every union matrix is computed from its own pair of artifact sets. -Dtriad.union.corpus=true instead takes
+        // them as blocks of one indexed corpus, which is faster but weights IDF and LSI over the whole corpus.
+        BiFunction<ArtifactsCollection, ArtifactsCollection, SimilarityMatrix> union;
+        if (Boolean.parseBoolean(System.getProperty("triad.union.corpus", "false"))) {
+            UnionCorpus unionCorpus = new UnionCorpus(
+                    corpus, dictionary, latentSpace != null ? latentSpace : LatentSpace.build(corpus, k));
+            union = unionCorpus::computeUnion;
+        } else {
+            int parallelism = irModel.getParallelism();
+            IRModel vsm = new VSM(parallelism);
+            IRModel lsi = new LSI(parallelism, latentSpace);
+            IRModel jsd = new JSD(parallelism);
+            union = (source, target) -> IRUnion.computeUnion(source, target, dictionary, vsm, lsi, jsd);
+        }
+
         // If there is no intermediate artifact set, run in TAROT-ONLY mode.
         if (intermediateCollection.size() == 0) {
             logger.info("No intermediate artifacts for project '{}': running TAROT-ONLY mode.", project.getName());
 
-            SimilarityMatrix unionSourceTargetSim = IRUnion.computeUnion(sourceCollection, targetCollection);
-            SimilarityMatrix unionTargetSourceSim = IRUnion.computeUnion(targetCollection, sourceCollection);
+            SimilarityMatrix unionSourceTargetSim = union.apply(sourceCollection, targetCollection);
+            // The union scores are symmetric, so T × S is a view of S × T.
+            SimilarityMatrix unionTargetSourceSim = unionSourceTargetSim.transpose();
 
             TarotOnlyEnrichment tarot =
-                    new TarotOnlyEnrichment(project, irModel, unionSourceTargetSim, unionTargetSourceSim);
-            SimilarityMatrix tarotSTMatrix = tarot.enrichAndFuse();
+                    new TarotOnlyEnrichment(project, model, unionSourceTargetSim, unionTargetSourceSim, dictionary);
+            SimilarityMatrix tarotSTMatrix;
+            try (TermArena stage = TermArena.open()) {
+                tarotSTMatrix = tarot.enrichAndFuse();
+            }
 
             boolean guardFusion = Boolean.parseBoolean(System.getProperty("triad.fusion.guard", "false"));
             String fusionStrategy = System.getProperty("triad.fusion.strategy", guardFusion ? "guarded_avg" : "avg");
@@ -74,18 +151,26 @@ public class TriadPipeline {
 
         // Otherwise, run the full TRIAD pipeline.
         logger.info("Computing union similarity matrices on original artifacts...");
-        SimilarityMatrix unionSourceIntermediateSim = IRUnion.computeUnion(sourceCollection, intermediateCollection);
-        SimilarityMatrix unionIntermediateTargetSim = IRUnion.computeUnion(intermediateCollection, targetCollection);
-        SimilarityMatrix unionTargetIntermediateSim = IRUnion.computeUnion(targetCollection, intermediateCollection);
-        SimilarityMatrix unionSourceSourceSim = IRUnion.computeUnion(sourceCollection, sourceCollection);
-        SimilarityMatrix unionIntermediateIntermediateSim =
-                IRUnion.computeUnion(intermediateCollection, intermediateCollection);
+        SimilarityMatrix unionSourceIntermediateSim = union.apply(sourceCollection, intermediateCollection);
+        SimilarityMatrix unionIntermediateTargetSim = union.apply(intermediateCollection, targetCollection);
+        // The union scores are symmetric: T × M is a view of M × T, and the self-joins score one triangle.
+        SimilarityMatrix unionTargetIntermediateSim = unionIntermediateTargetSim.transpose();
+        SimilarityMatrix unionSourceSourceSim = union.apply(sourceCollection, sourceCollection);
+        SimilarityMatrix unionIntermediateIntermediateSim = union.apply(intermediateCollection, intermediateCollection);
         logger.info("Union matrices computed.");
 
         logger.info("Starting enrichment phase...");
         var enrichment = new Enrichment(
-                project, irModel, unionSourceIntermediateSim, unionIntermediateTargetSim, unionTargetIntermediateSim);
-        SimilarityMatrix tarotSTMatrix = enrichment.enrichAndFuse();
+                project,
+                model,
+                unionSourceIntermediateSim,
+                unionIntermediateTargetSim,
+                unionTargetIntermediateSim,
+                dictionary);
+        SimilarityMatrix tarotSTMatrix;
+        try (TermArena stage = TermArena.open()) {
+            tarotSTMatrix = enrichment.enrichAndFuse();
+        }
         logger.info("Enrichment phase complete.");
 
         boolean guardFusion = Boolean.parseBoolean(System.getProperty("triad.fusion.guard", "false"));
@@ -127,9 +212,16 @@ public class TriadPipeline {
                 "Starting IR-ONLY pipeline for project '{}' with IR model '{}'",
                 project.getName(),
                 irModel.getModelName());
-        return irModel.Compute(
-                new ArtifactsCollection(project.getSourceArtifacts()),
-                new ArtifactsCollection(project.getTargetArtifacts()));
+        try (TermArena arena = TermArena.open();
+                ScratchStore scratch = ScratchStore.open()) {
+            SimilarityMatrix result = irModel.Compute(
+                    new ArtifactsCollection(project.getSourceArtifacts()),
+                    new ArtifactsCollection(project.getTargetArtifacts()));
+            scratch.keep(result);
+            return result;
+        } finally {
+            AnalysisCache.flushConfigured();
+        }
     }
 
     private static SimilarityMatrix fuseConservativeMax(SimilarityMatrix base, SimilarityMatrix enriched) {
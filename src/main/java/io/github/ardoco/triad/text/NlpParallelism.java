@@ -0,0 +1,21 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.text;
+
+import io.github.ardoco.triad.util.Parallelism;
+
+/**
+ * Worker count for batch CoreNLP annotation. It defaults to the number of available processors and can be
+ * overridden with {@code -Dtriad.nlp.threads=N}; a count of 1 annotates on a single thread.
+ */
+public final class NlpParallelism {
+    static final String THREADS_PROPERTY = "triad.nlp.threads";
+
+    private NlpParallelism() {}
+
+    /**
+     * @return the worker count configured via {@value #THREADS_PROPERTY}, at least 1
+     */
+    public static int configuredThreads() {
+        return Parallelism.configured(THREADS_PROPERTY);
+    }
+}
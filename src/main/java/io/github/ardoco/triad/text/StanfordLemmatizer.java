@@ -1,6 +1,7 @@
 /* Licensed under MIT 2025. */
 package io.github.ardoco.triad.text;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.stream.Collectors;
@@ -10,9 +11,13 @@ import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.pipeline.Annotation;
 import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 
+/**
+ * Lemmatizes text with a shared CoreNLP pipeline. The pipeline keeps no per-document state, so both methods may be
+ * called from several threads at once.
+ */
 public class StanfordLemmatizer {
 
-    private static StanfordCoreNLP pipeline;
+    private static final StanfordCoreNLP pipeline;
 
     static {
         Properties props = new Properties();
@@ -23,6 +28,30 @@ public class StanfordLemmatizer {
     public static String lemmatize(String text) {
         Annotation document = new Annotation(text);
         pipeline.annotate(document);
+        return lemmas(document);
+    }
+
+    /**
+     * Lemmatizes many texts in one call, annotating them on {@link NlpParallelism#configuredThreads()} CoreNLP
+     * worker threads.
+     *
+     * @return the lemmatized texts, in the order of {@code texts}; each equals {@link #lemmatize(String)} of its text
+     */
+    public static List<String> lemmatizeAll(List<String> texts) {
+        List<Annotation> documents = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            documents.add(new Annotation(text));
+        }
+        // Annotations are filled in place; the call returns once every worker is done.
+        pipeline.annotate(documents, NlpParallelism.configuredThreads(), document -> {});
+        List<String> lemmatized = new ArrayList<>(documents.size());
+        for (Annotation document : documents) {
+            lemmatized.add(lemmas(document));
+        }
+        return lemmatized;
+    }
+
+    private static String lemmas(Annotation document) {
         List<CoreLabel> tokens = document.get(CoreAnnotations.TokensAnnotation.class);
         return tokens.stream()
                 .map(token -> token.get(CoreAnnotations.LemmaAnnotation.class))
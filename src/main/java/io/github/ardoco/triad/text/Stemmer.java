@@ -5,11 +5,17 @@ import java.util.Locale;
 
 import org.tartarus.snowball.ext.EnglishStemmer;
 
+/**
+ * Snowball stemming that is safe to call from several threads: Snowball stemmers are stateful, so every thread
+ * stems with its own instance.
+ */
 public class Stemmer {
-    private static final EnglishStemmer stemmer = new EnglishStemmer();
+    private static final ThreadLocal<EnglishStemmer> STEMMER = ThreadLocal.withInitial(EnglishStemmer::new);
+    private static final TermCache STEMS = new TermCache(Stemmer::stemUncached);
 
     /**
-     * Stems a single term to its root form using the Snowball English Stemmer.
+     * Stems a single term to its root form using the Snowball English Stemmer. Results are cached, since a corpus
+     * repeats the same vocabulary throughout.
      *
      * @param term The term to stem.
      * @return The stemmed term in lowercase.
@@ -18,6 +24,18 @@ public class Stemmer {
         if (term == null) {
             return null;
         }
+        return STEMS.apply(term);
+    }
+
+    /**
+     * @return the cache in front of {@link #stem(String)}
+     */
+    public static TermCache getCache() {
+        return STEMS;
+    }
+
+    private static String stemUncached(String term) {
+        EnglishStemmer stemmer = STEMMER.get();
         stemmer.setCurrent(term.toLowerCase(Locale.ROOT));
         stemmer.stem();
         return stemmer.getCurrent();
@@ -0,0 +1,148 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.text;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Size-bounded, thread-safe memo of a pure String function, such as word normalization or stemming.
+ * <p>
+ * Entries are spread over independently locked segments, each evicting its least recently used entry once it is
+ * full, so concurrent preprocessing threads rarely wait on each other. A value is computed outside the lock; two
+ * threads that miss on the same key at once both compute it, which is harmless for a pure function.
+ * <p>
+ * The capacity of every cache is set with {@code -Dtriad.text.cacheSize} (entries, default {@value #DEFAULT_CAPACITY});
+ * 0 turns caching off.
+ */
+public final class TermCache {
+    static final String CAPACITY_PROPERTY = "triad.text.cacheSize";
+    static final int DEFAULT_CAPACITY = 1 << 16;
+    private static final int SEGMENTS = 16;
+
+    /**
+     * Counters of a cache since it was created or last cleared.
+     *
+     * @param hits lookups answered from the cache
+     * @param misses lookups that computed their value
+     * @param evictions entries dropped to stay within the capacity
+     * @param size entries currently held
+     */
+    public record Stats(long hits, long misses, long evictions, int size) {
+        /**
+         * @return the share of lookups answered from the cache, 0.0 before the first lookup
+         */
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(
+                    Locale.ROOT,
+                    "%d hits, %d misses (%.1f%% hit rate), %d evictions, %d entries",
+                    hits, misses, 100 * hitRate(), evictions, size);
+        }
+    }
+
+    private final UnaryOperator<String> function;
+    private final Segment[] segments;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final class Segment extends LinkedHashMap<String, String> {
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Create a cache of the configured capacity.
+     *
+     * @param function the function to memoize; must not return null
+     */
+    TermCache(UnaryOperator<String> function) {
+        this(function, Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+    }
+
+    /**
+     * @param function the function to memoize; must not return null
+     * @param capacity maximum number of entries, 0 to compute every value
+     */
+    TermCache(UnaryOperator<String> function, int capacity) {
+        this.function = function;
+        int perSegment = (capacity + SEGMENTS - 1) / SEGMENTS;
+        this.segments = new Segment[capacity <= 0 ? 0 : SEGMENTS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(perSegment);
+        }
+    }
+
+    /**
+     * @return the function's value for {@code key}, from the cache if present
+     */
+    public String apply(String key) {
+        if (segments.length == 0) {
+            misses.increment();
+            return function.apply(key);
+        }
+        Segment segment = segments[(key.hashCode() * 0x9E3779B9 >>> 28) & (SEGMENTS - 1)];
+        String value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = function.apply(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * @return the counters of this cache
+     */
+    public Stats stats() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), size);
+    }
+
+    /**
+     * Drop all entries and reset the counters.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        hits.reset();
+        misses.reset();
+        evictions.reset();
+    }
+}
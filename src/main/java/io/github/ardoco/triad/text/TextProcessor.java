@@ -12,7 +12,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,19 +44,47 @@ public class TextProcessor {
         }
     }
 
+    private static final ThreadLocal<Tokenizer> TOKENIZER = ThreadLocal.withInitial(Tokenizer::new);
+    private static final TermCache WORDS = new TermCache(TextProcessor::processWordUncached);
+
     /**
      * Processes a block of text through the full pipeline.
      * This is the main entry point for processing artifact content.
      */
     public static String processText(String text) {
+        StringBuilder processed = new StringBuilder();
+        processText(text, term -> {
+            if (processed.length() > 0) processed.append(' ');
+            processed.append(term);
+        });
+        return processed.toString();
+    }
+
+    /**
+     * Processes a block of text through the full pipeline and hands each resulting term to {@code sink}, in order,
+     * instead of joining them. The terms are those of {@link #processText(String)}.
+     */
+    public static void processText(String text, Consumer<String> sink) {
         if (text == null || text.isBlank()) {
-            return "";
+            return;
+        }
+        Tokenizer tokenizer = Tokenizer.acquire();
+        try {
+            // Everything but ASCII letters separates words, as does a hyphen in "content-type".
+            int length = text.length();
+            int position = 0;
+            while (position < length) {
+                while (position < length && !isAsciiLetter(text.charAt(position))) position++;
+                int start = position;
+                while (position < length && isAsciiLetter(text.charAt(position))) position++;
+                if (position > start) {
+                    tokenizer.process(text, start, position);
+                    tokenizer.emit(sink);
+                }
+            }
+        } finally {
+            tokenizer.release();
         }
-        String cleaned = cleanCharacters(text);
-        return Arrays.stream(cleaned.split("\\s+"))
-                .map(TextProcessor::processWord)
-                .filter(s -> !s.isEmpty())
-                .collect(Collectors.joining(" "));
     }
 
     /**
@@ -70,120 +98,185 @@ public class TextProcessor {
 
     /**
      * Applies the core processing pipeline to a single, already-tokenized word.
-     * This method is ideal for processing terms from a dependency parser.
+     * This method is ideal for processing terms from a dependency parser. Results are cached per word.
      */
     public static String processWord(String word) {
         if (word == null || word.isBlank()) {
             return "";
         }
-        // Handle pluralized acronyms like "UAVs" before other processing
-        if (word.endsWith("s") && word.length() > 1 && Character.isUpperCase(word.charAt(word.length() - 2))) {
-            word = word.substring(0, word.length() - 1);
-        }
-
-        String camelCaseSplit = splitCamelCase(word);
-        String snakeCaseSplit = splitSnakeCase(camelCaseSplit);
-        String lowercased = snakeCaseSplit.toLowerCase(Locale.ROOT);
-        String stopwordsRemoved1 = removeStopwords(lowercased);
-        String stemmed = stemText(stopwordsRemoved1);
-        String stopwordsRemoved2 = removeStopwords(stemmed);
-        return lengthFilter(stopwordsRemoved2, 2).trim();
+        return WORDS.apply(word);
     }
 
     /**
-     * Performs general character cleaning, removing non-alphabetic characters
-     * and handling common separators like hyphens.
+     * @return the cache in front of {@link #processWord(String)}; stemming has its own, see {@link Stemmer#getCache()}
      */
-    private static String cleanCharacters(String input) {
-        // Replace hyphens with spaces to split words like "content-type"
-        String hyphenAsSpace = input.replace("-", " ");
-        String cleaned = hyphenAsSpace
-                .replaceAll("[^a-zA-Z]", " ")
-                .replaceAll("\\s+", " ")
-                .trim();
-        // Special handling for acronyms must happen before lowercasing.
-        return cleaned.replaceAll("\\bUAVs\\b", "UAV");
+    public static TermCache getWordCache() {
+        return WORDS;
     }
 
-    /**
-     * Splits a string based on camel case conventions.
-     */
-    private static String splitCamelCase(String s) {
-        String acronymProcessed = splitAcronyms(s);
-        return acronymProcessed
-                .replaceAll(
-                        String.format(
-                                "%s|%s|%s",
-                                "(?<=[A-Z])(?=[A-Z][a-z])", "(?<=[^A-Z])(?=[A-Z])", "(?<=[A-Za-z])(?=[^A-Za-z])"),
-                        " ")
-                .replaceAll("  ", " ");
+    private static String processWordUncached(String word) {
+        Tokenizer tokenizer = Tokenizer.acquire();
+        try {
+            tokenizer.process(word, 0, word.length());
+            return tokenizer.joined();
+        } finally {
+            tokenizer.release();
+        }
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAsciiUpper(char c) {
+        return c >= 'A' && c <= 'Z';
     }
 
     /**
-     * A helper method to correctly split pluralized acronyms (e.g., "UAVs" -> "UAV s").
+     * Single pass over a word: splits pluralized acronyms, camel case, acronym boundaries and snake case, then
+     * lowercases, filters stopwords, stems, filters stopwords again and drops terms shorter than two characters, one
+     * term at a time. The character buffer and term list are reused across words, one tokenizer per thread.
+     * <p>
+     * The splitting rules are those of the former regex pipeline: a word boundary lies between an uppercase letter
+     * and an uppercase letter followed by a lowercase one ({@code "UAVState"}), before an uppercase letter that
+     * follows anything else ({@code "getUav"}), and after a letter followed by anything else ({@code "route2"});
+     * whitespace and underscores separate terms.
      */
-    private static String splitAcronyms(String input) {
-        List<String> words = new ArrayList<>();
-        for (String word : input.split("\\s+")) {
-            if (word.isEmpty()) continue;
-            StringBuilder currentWord = new StringBuilder();
-            for (int i = 0; i < word.length(); i++) {
-                char currentChar = word.charAt(i);
-                if (i > 0 && Character.isUpperCase(word.charAt(i - 1)) && currentChar == 's') {
-                    boolean isEndOfWord = (i == word.length() - 1);
-                    boolean isFollowedByUppercase = !isEndOfWord && Character.isUpperCase(word.charAt(i + 1));
-                    if (isEndOfWord || isFollowedByUppercase) {
-                        words.add(currentWord.toString());
-                        words.add("s");
-                        currentWord.setLength(0);
-                        continue;
+    private static final class Tokenizer {
+        private char[] chars = new char[64];
+        private int length;
+        private final List<String> terms = new ArrayList<>();
+        // A word whose text is blank before stemming or after the second stopword pass yields no terms.
+        private boolean nonBlankBeforeStemming;
+        private boolean nonBlankAfterStemming;
+        private boolean busy;
+
+        static Tokenizer acquire() {
+            Tokenizer tokenizer = TOKENIZER.get();
+            // A sink that processes text itself gets a tokenizer of its own.
+            if (tokenizer.busy) {
+                tokenizer = new Tokenizer();
+            }
+            tokenizer.busy = true;
+            return tokenizer;
+        }
+
+        void release() {
+            busy = false;
+        }
+
+        void emit(Consumer<String> sink) {
+            if (nonBlankBeforeStemming && nonBlankAfterStemming) {
+                terms.forEach(sink);
+            }
+        }
+
+        String joined() {
+            if (!nonBlankBeforeStemming || !nonBlankAfterStemming) {
+                return "";
+            }
+            return String.join(" ", terms).trim();
+        }
+
+        /**
+         * Process {@code word[from, to)} into {@link #terms}.
+         */
+        void process(CharSequence word, int from, int to) {
+            terms.clear();
+            nonBlankBeforeStemming = false;
+            nonBlankAfterStemming = false;
+            length = 0;
+
+            // Handle pluralized acronyms like "UAVs" before other processing
+            int end = to;
+            if (end - from > 1 && word.charAt(end - 1) == 's' && Character.isUpperCase(word.charAt(end - 2))) {
+                end--;
+            }
+
+            // Split on whitespace, and split an "s" off an acronym inside a word: "UAVsState" -> "UAV s State".
+            int position = from;
+            while (position < end) {
+                while (position < end && isRegexSpace(word.charAt(position))) position++;
+                int start = position;
+                while (position < end && !isRegexSpace(word.charAt(position))) position++;
+                if (position == start) break;
+                if (length > 0) append(' ');
+                for (int i = start; i < position; i++) {
+                    char c = word.charAt(i);
+                    if (c == 's'
+                            && i > start
+                            && Character.isUpperCase(word.charAt(i - 1))
+                            && (i == position - 1 || Character.isUpperCase(word.charAt(i + 1)))) {
+                        append(' ');
+                        append('s');
+                        append(' ');
+                    } else {
+                        append(c);
                     }
                 }
-                currentWord.append(currentChar);
             }
-            if (currentWord.length() > 0) {
-                words.add(currentWord.toString());
+
+            int start = 0;
+            for (int i = 0; i < length; i++) {
+                char c = chars[i];
+                if (c == ' ' || c == '_') {
+                    if (i > start) term(start, i);
+                    start = i + 1;
+                } else if (i > start && splitsBefore(i)) {
+                    term(start, i);
+                    start = i;
+                }
             }
+            if (length > start) term(start, length);
         }
-        return String.join(" ", words);
-    }
 
-    /**
-     * Splits a string based on snake case conventions.
-     */
-    private static String splitSnakeCase(String s) {
-        return s.replace("_", " ");
-    }
+        private boolean splitsBefore(int i) {
+            char previous = chars[i - 1];
+            char current = chars[i];
+            if (isAsciiUpper(current)) {
+                return !isAsciiUpper(previous) || (i + 1 < length && chars[i + 1] >= 'a' && chars[i + 1] <= 'z');
+            }
+            return isAsciiLetter(previous) && !isAsciiLetter(current);
+        }
 
-    /**
-     * Removes words shorter than a given minimum length.
-     */
-    private static String lengthFilter(String input, int minLength) {
-        if (input == null || input.isBlank()) {
-            return "";
+        private void term(int from, int to) {
+            boolean ascii = true;
+            boolean blank = true;
+            for (int i = from; i < to; i++) {
+                char c = chars[i];
+                if (c >= 0x80) ascii = false;
+                if (!Character.isWhitespace(c)) blank = false;
+            }
+            String lowercased;
+            if (ascii) {
+                for (int i = from; i < to; i++) {
+                    if (isAsciiUpper(chars[i])) chars[i] += 'a' - 'A';
+                }
+                lowercased = new String(chars, from, to - from);
+            } else {
+                lowercased = new String(chars, from, to - from).toLowerCase(Locale.ROOT);
+            }
+
+            if (STOPWORDS.contains(lowercased)) return;
+            nonBlankBeforeStemming |= !blank;
+            String stemmed = Stemmer.stem(lowercased);
+            if (STOPWORDS.contains(stemmed)) return;
+            nonBlankAfterStemming |= !stemmed.isBlank();
+            if (stemmed.length() >= 2) terms.add(stemmed);
         }
-        return Arrays.stream(input.split("\\s+"))
-                .filter(word -> word.length() >= minLength)
-                .collect(Collectors.joining(" "));
-    }
 
-    /**
-     * Removes common English stopwords from a string.
-     */
-    private static String removeStopwords(String text) {
-        if (STOPWORDS.isEmpty() || text == null || text.isBlank()) return text;
-        return Arrays.stream(text.split("\\s+"))
-                .filter(w -> !STOPWORDS.contains(w))
-                .collect(Collectors.joining(" "));
-    }
+        private void append(char c) {
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, 2 * length);
+            }
+            chars[length++] = c;
+        }
 
-    /**
-     * Stems all words in a string using the Snowball English stemmer.
-     */
-    private static String stemText(String text) {
-        if (text == null || text.isBlank()) {
-            return "";
+        /**
+         * @return whether the regex {@code \s} matches {@code c}
+         */
+        private static boolean isRegexSpace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
         }
-        return Arrays.stream(text.split("\\s+")).map(Stemmer::stem).collect(Collectors.joining(" "));
     }
 }
@@ -2,7 +2,6 @@
 package io.github.ardoco.triad.util;
 
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -17,12 +16,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.github.ardoco.triad.ir.ArtifactsCollection;
-import io.github.ardoco.triad.ir.LinksList;
 import io.github.ardoco.triad.ir.SimilarityMatrix;
 import io.github.ardoco.triad.ir.SingleLink;
+import io.github.ardoco.triad.ir.TopKLinks;
 import io.github.ardoco.triad.model.Artifact;
 import io.github.ardoco.triad.model.ArtifactFactory;
 import io.github.ardoco.triad.model.Biterm;
+import io.github.ardoco.triad.model.BitermExtractor;
 
 /**
  * Utility class containing shared logic for the enrichment process.
@@ -56,6 +56,8 @@ public final class EnrichmentUtils {
     private static final int MAX_BITERMS_PER_DOC = propInt("triad.enrich.maxBiterms", 24);
     private static final boolean DEBUG_ENRICH = Boolean.parseBoolean(System.getProperty("triad.debug.enrich", "false"));
 
+    private static final Pattern WORD = Pattern.compile("[A-Za-z]+");
+
     /**
      * Build biterm frequency maps per artifact.
      *
@@ -63,6 +65,8 @@ public final class EnrichmentUtils {
      * @return map: artifactId -> ("term1 term2" -> frequency)
      */
     public static Map<String, Map<String, Integer>> getBitermFrequencyMap(Set<Artifact> artifacts) {
+        // Dependency parsing dominates; parse all artifacts concurrently before counting.
+        BitermExtractor.extractAll(artifacts);
         Map<String, Map<String, Integer>> artifactBitermMap = new HashMap<>();
         for (Artifact artifact : artifacts) {
             Map<String, Integer> freqMap = new HashMap<>();
@@ -97,21 +101,14 @@ public final class EnrichmentUtils {
             Map<String, Map<String, Integer>> neighborBitermMap,
             SimilarityMatrix rowSimMatrix) {
         Map<String, Map<String, Double>> out = new HashMap<>();
+        TopKLinks neighbors = TopKLinks.of(rowSimMatrix, TOP_K_ENRICH, M_ENRICH);
         for (Artifact a : artifacts) {
             String aid = a.getIdentifier();
-            LinksList neighbors = rowSimMatrix.getLinks(aid);
             Map<String, Double> counts = new HashMap<>();
-            if (neighbors != null && !neighbors.isEmpty()) {
-                double rowMax = neighbors.stream()
-                        .mapToDouble(SingleLink::getScore)
-                        .max()
-                        .orElse(0.0);
+            if (neighbors.getSourceArtifacts().contains(aid)) {
+                double rowMax = neighbors.getMaxScore(aid);
                 double thr = rowMax * M_ENRICH;
-                List<SingleLink> top = neighbors.stream()
-                        .filter(l -> l.getScore() >= thr)
-                        .sorted(Comparator.comparingDouble(SingleLink::getScore).reversed())
-                        .limit(TOP_K_ENRICH)
-                        .toList();
+                List<SingleLink> top = neighbors.getLinks(aid);
 
                 if (DEBUG_ENRICH) {
                     logger.debug(
@@ -120,7 +117,7 @@ public final class EnrichmentUtils {
                             String.format("%.4f", rowMax),
                             String.format("%.4f", thr),
                             top.size(),
-                            neighbors.size());
+                            rowSimMatrix.getLinks(aid).size());
                 }
 
                 for (SingleLink n : top) {
@@ -222,7 +219,7 @@ public final class EnrichmentUtils {
      * Element-wise max fusion of two similarity matrices (safeguard against degradation).
      */
     public static SimilarityMatrix elementwiseMax(SimilarityMatrix a, SimilarityMatrix b) {
-        SimilarityMatrix out = new SimilarityMatrix();
+        SimilarityMatrix out = new SimilarityMatrix(a.getSourceArtifacts(), a.getTargetArtifacts());
         for (String s : a.getSourceArtifacts()) {
             for (String t : a.getTargetArtifacts()) {
                 double v = Math.max(a.getScore(s, t), b.getScore(s, t));
@@ -234,7 +231,7 @@ public final class EnrichmentUtils {
 
     private static String[] normalizeBiterm(String raw) {
         List<String> tokens = new ArrayList<>();
-        Matcher m = Pattern.compile("[A-Za-z]+").matcher(raw);
+        Matcher m = WORD.matcher(raw);
         while (m.find()) tokens.add(m.group().toLowerCase(Locale.ROOT));
         if (tokens.size() < 2) return null;
         return new String[] {tokens.get(0), tokens.get(1)};
@@ -268,13 +265,14 @@ public final class EnrichmentUtils {
      * Element-wise average fusion of two similarity matrices.
      */
     public static SimilarityMatrix elementwiseAverage(SimilarityMatrix a, SimilarityMatrix b) {
-        SimilarityMatrix fused = new SimilarityMatrix();
         Set<String> allSources = new HashSet<>(a.getSourceArtifacts());
         allSources.addAll(b.getSourceArtifacts());
 
         Set<String> allTargets = new HashSet<>(a.getTargetArtifacts());
         allTargets.addAll(b.getTargetArtifacts());
 
+        SimilarityMatrix fused = new SimilarityMatrix(allSources, allTargets);
+
         for (String s : allSources) {
             for (String t : allTargets) {
                 double scoreA = a.getScore(s, t);
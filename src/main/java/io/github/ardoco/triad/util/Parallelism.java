@@ -0,0 +1,23 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.util;
+
+/**
+ * Reads thread counts from system properties such as {@code -Dtriad.ir.parallelism=N}.
+ */
+public final class Parallelism {
+
+    private Parallelism() {}
+
+    /**
+     * @return the thread count in the system property {@code property}, at least 1, or the number of available
+     *     processors if the property is not set or not a number
+     */
+    public static int configured(String property) {
+        int available = Runtime.getRuntime().availableProcessors();
+        try {
+            return Math.max(1, Integer.parseInt(System.getProperty(property, Integer.toString(available))));
+        } catch (NumberFormatException e) {
+            return available;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class CosineKernelTest {
+
+    private static TermDocumentMatrix randomMatrix(String prefix, int docs, TermDictionary dictionary, long seed) {
+        return TestArtifacts.randomMatrix(prefix, docs, dictionary, seed, 3, Random::nextDouble);
+    }
+
+    private static double cosine(TermDocumentMatrix a, int i, TermDocumentMatrix b, int j) {
+        double product = 0.0;
+        for (int term = 0; term < a.numTerms(); term++) {
+            product += a.getValue(i, term) * b.getValue(j, term);
+        }
+        double norms = CosineKernel.norms(a)[i] * CosineKernel.norms(b)[j];
+        return norms == 0.0 ? 0.0 : product / norms;
+    }
+
+    @Test
+    void testMatchesPairwiseCosine() {
+        TermDictionary dictionary = new TermDictionary();
+        for (int term = 0; term < 30; term++) dictionary.intern("t" + term);
+        TermDocumentMatrix queries = randomMatrix("q", 7, dictionary, 1);
+        TermDocumentMatrix documents = randomMatrix("d", 5, dictionary, 2);
+
+        SimilarityMatrix sims = new SimilarityMatrix(queries.getDocumentNames(), documents.getDocumentNames());
+        CosineKernel.computeSimilarities(queries, documents, sims, 1);
+
+        assertEquals(35, sims.getAllLinks().size());
+        for (int i = 0; i < queries.numDocs(); i++) {
+            for (int j = 0; j < documents.numDocs(); j++) {
+                assertEquals(cosine(queries, i, documents, j), sims.getScore(i, j), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    void testParallelRowsMatchSequentialRows() {
+        TermDictionary dictionary = new TermDictionary();
+        for (int term = 0; term < 50; term++) dictionary.intern("t" + term);
+        TermDocumentMatrix queries = randomMatrix("q", 61, dictionary, 3);
+        TermDocumentMatrix documents = randomMatrix("d", 13, dictionary, 4);
+
+        SimilarityMatrix sequential = new SimilarityMatrix(queries.getDocumentNames(), documents.getDocumentNames());
+        CosineKernel.computeSimilarities(queries, documents, sequential, 1);
+        SimilarityMatrix parallel = new SimilarityMatrix(queries.getDocumentNames(), documents.getDocumentNames());
+        CosineKernel.computeSimilarities(queries, documents, parallel, 3);
+
+        assertEquals(sequential.getSourceArtifacts(), parallel.getSourceArtifacts());
+        for (int i = 0; i < queries.numDocs(); i++) {
+            for (int j = 0; j < documents.numDocs(); j++) {
+                assertEquals(sequential.getScore(i, j), parallel.getScore(i, j));
+            }
+        }
+    }
+
+    @Test
+    void testSelfSimilarityMatchesFullProduct() {
+        TermDictionary dictionary = new TermDictionary();
+        for (int term = 0; term < 40; term++) dictionary.intern("t" + term);
+        TermDocumentMatrix vectors = randomMatrix("d", 23, dictionary, 5);
+        TermDocumentMatrix copy = vectors.selectDocuments(vectors.getDocumentNames());
+
+        SimilarityMatrix full = new SimilarityMatrix(vectors.getDocumentNames(), vectors.getDocumentNames());
+        CosineKernel.computeSimilarities(vectors, copy, full, 1);
+        SimilarityMatrix self = new SimilarityMatrix(vectors.getDocumentNames(), vectors.getDocumentNames());
+        CosineKernel.computeSimilarities(vectors, vectors, self, 2);
+
+        assertEquals(full.getAllLinks().size(), self.getAllLinks().size());
+        for (int i = 0; i < vectors.numDocs(); i++) {
+            for (int j = 0; j < vectors.numDocs(); j++) {
+                assertEquals(full.getScore(i, j), self.getScore(i, j), 1e-12);
+                assertEquals(self.getScore(i, j), self.getScore(j, i));
+            }
+        }
+    }
+
+    @Test
+    void testPostingsMatchBlockedProductExactly() {
+        TermDictionary dictionary = new TermDictionary();
+        for (int term = 0; term < 60; term++) dictionary.intern("t" + term);
+        TermDocumentMatrix queries = randomMatrix("q", 17, dictionary, 6);
+        TermDocumentMatrix documents = randomMatrix("d", 29, dictionary, 7);
+
+        SimilarityMatrix blocked = new SimilarityMatrix(queries.getDocumentNames(), documents.getDocumentNames());
+        CosineKernel.computeSimilarities(queries, documents, blocked, 1);
+        SimilarityMatrix postings = new SimilarityMatrix(queries.getDocumentNames(), documents.getDocumentNames());
+        CosineKernel.computeSimilaritiesByPostings(queries, documents, postings, 2);
+
+        assertEquals(blocked.getAllLinks().size(), postings.getAllLinks().size());
+        for (int i = 0; i < queries.numDocs(); i++) {
+            for (int j = 0; j < documents.numDocs(); j++) {
+                assertEquals(blocked.getScore(i, j), postings.getScore(i, j));
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static io.github.ardoco.triad.ir.TestArtifacts.collection;
+import static io.github.ardoco.triad.ir.TestArtifacts.sources;
+import static io.github.ardoco.triad.ir.TestArtifacts.targets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class IRModelTest {
+
+    @AfterEach
+    void clearPrecision() {
+        System.clearProperty(ScorePrecision.PRECISION_PROPERTY);
+    }
+
+    @Test
+    void testSharedInstanceServesConcurrentCalls() {
+        ArtifactsCollection sources = sources();
+        ArtifactsCollection targets = targets();
+        ArtifactsCollection others = collection("m", "ground station shows map", "route map for the operator");
+        TermDictionary dictionary = new TermDictionary();
+
+        for (IRModel model : List.of(new VSM(2), new LSI(2), new JSD(2))) {
+            IRResult expectedTargets = model.ComputeResult(sources, targets, dictionary);
+            IRResult expectedOthers = model.ComputeResult(sources, others, dictionary);
+
+            List<CompletableFuture<IRResult>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                ArtifactsCollection target = i % 2 == 0 ? targets : others;
+                calls.add(CompletableFuture.supplyAsync(() -> model.ComputeResult(sources, target, dictionary)));
+            }
+            for (int i = 0; i < calls.size(); i++) {
+                IRResult expected = i % 2 == 0 ? expectedTargets : expectedOthers;
+                IRResult actual = calls.get(i).join();
+                assertEquals(expected.documents().getDocumentNames(), actual.documents().getDocumentNames());
+                for (SingleLink link : expected.similarities().getAllLinks()) {
+                    assertEquals(
+                            link.getScore(),
+                            actual.similarities().getScore(link.getSourceArtifactId(), link.getTargetArtifactId()),
+                            1e-12,
+                            model.getModelName());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFloatPrecisionStaysWithinBoundOfDoublePath() {
+        ArtifactsCollection sources = sources();
+        ArtifactsCollection targets = targets();
+
+        for (IRModel model : List.of(new VSM(1), new JSD(1))) {
+            SimilarityMatrix expected = model.Compute(sources, targets);
+            System.setProperty(ScorePrecision.PRECISION_PROPERTY, "float");
+            SimilarityMatrix reduced = model.Compute(sources, targets);
+            System.clearProperty(ScorePrecision.PRECISION_PROPERTY);
+
+            assertEquals(ScorePrecision.FLOAT, reduced.getPrecision());
+            for (SingleLink link : expected.getAllLinks()) {
+                double error = Math.abs(
+                        link.getScore() - reduced.getScore(link.getSourceArtifactId(), link.getTargetArtifactId()));
+                assertTrue(error < 1e-6, model.getModelName() + " off by " + error);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static io.github.ardoco.triad.ir.TestArtifacts.collection;
+import static io.github.ardoco.triad.ir.TestArtifacts.sources;
+import static io.github.ardoco.triad.ir.TestArtifacts.targets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.ardoco.triad.model.RequirementsDocumentArtifact;
+
+class IncrementalVSMTest {
+
+    private static void assertMatches(SimilarityMatrix expected, SimilarityMatrix actual, double delta) {
+        assertEquals(expected.getSourceArtifacts(), actual.getSourceArtifacts());
+        assertEquals(expected.getTargetArtifacts(), actual.getTargetArtifacts());
+        assertEquals(expected.getAllLinks().size(), actual.getAllLinks().size());
+        for (SingleLink link : expected.getAllLinks()) {
+            assertEquals(
+                    link.getScore(),
+                    actual.getScore(link.getSourceArtifactId(), link.getTargetArtifactId()),
+                    delta,
+                    link.getSourceArtifactId() + " -> " + link.getTargetArtifactId());
+        }
+    }
+
+    /**
+     * @return the TF-IDF weights VSM gave an artifact, over the first {@code terms} terms
+     */
+    private static double[] weights(IRResult result, String id, int terms) {
+        TermDocumentMatrix matrix = result.queries().getDocumentIndex(id) >= 0 ? result.queries() : result.documents();
+        int row = matrix.getDocumentIndex(id);
+        double[] weights = new double[terms];
+        for (int term = 0; term < Math.min(terms, matrix.numTerms()); term++) {
+            weights[term] = matrix.getValue(row, term);
+        }
+        return weights;
+    }
+
+    @Test
+    void testZeroToleranceMatchesRecomputedVsm() {
+        ArtifactsCollection source = sources();
+        ArtifactsCollection target = targets();
+        TermDictionary dictionary = new TermDictionary();
+        IncrementalVSM engine = new IncrementalVSM(source, target, dictionary, 0.0);
+        assertMatches(new VSM(1).Compute(source, target, dictionary), engine.getSimilarities(), 0.0);
+
+        RequirementsDocumentArtifact added = new RequirementsDocumentArtifact("s2", "operator plans drone route");
+        engine.addSource(added);
+        source.put("s2", added);
+        RequirementsDocumentArtifact updated = new RequirementsDocumentArtifact("t1", "mission planner battery");
+        engine.update(updated);
+        target.put("t1", updated);
+        engine.remove("t2");
+        target.remove("t2");
+
+        assertMatches(new VSM(1).Compute(source, target, dictionary), engine.getSimilarities(), 0.0);
+    }
+
+    @Test
+    void testToleranceBoundsDriftOfUnchangedArtifacts() {
+        ArtifactsCollection source = collection(
+                "s",
+                "drone flight route planning",
+                "battery monitor warns operator",
+                "ground station shows map",
+                "operator uploads mission");
+        ArtifactsCollection target = collection(
+                "t",
+                "flight route uploaded to drone",
+                "mission planner stores route",
+                "operator battery alarm",
+                "map view of ground station");
+        TermDictionary dictionary = new TermDictionary();
+        double tolerance = 0.18;
+        IncrementalVSM engine = new IncrementalVSM(source, target, dictionary, tolerance);
+        SimilarityMatrix before = engine.getSimilarities().deepCopy();
+        IRResult weighted = new VSM(1).ComputeResult(source, target, dictionary);
+
+        // "ground" becomes rarer and "drone" more common, which moves the vectors of s0, s2 and t0.
+        RequirementsDocumentArtifact updated = new RequirementsDocumentArtifact("t3", "map view of drone station");
+        engine.update(updated);
+        target.put("t3", updated);
+        SimilarityMatrix after = engine.getSimilarities();
+        IRResult expected = new VSM(1).ComputeResult(source, target, dictionary);
+
+        Map<String, Double> drift = new HashMap<>();
+        Set<String> reweighted = new TreeSet<>(Set.of("t3"));
+        List<String> ids = new ArrayList<>(source.keySet());
+        ids.addAll(target.keySet());
+        for (String id : ids) {
+            double[] old = weights(weighted, id, dictionary.size());
+            double[] current = weights(expected, id, dictionary.size());
+            double distance = 0.0;
+            double norm = 0.0;
+            for (int term = 0; term < old.length; term++) {
+                distance += (current[term] - old[term]) * (current[term] - old[term]);
+                norm += old[term] * old[term];
+            }
+            drift.put(id, Math.sqrt(distance / norm));
+            if (!id.equals("t3") && drift.get(id) > tolerance) reweighted.add(id);
+        }
+        assertEquals(reweighted, new TreeSet<>(engine.getReweighted()));
+        assertTrue(reweighted.size() > 1, "no unchanged artifact drifted beyond the tolerance");
+        assertTrue(
+                drift.entrySet().stream().anyMatch(e -> e.getValue() > 0.0 && !reweighted.contains(e.getKey())),
+                "no skipped artifact drifted");
+
+        for (String s : source.keySet()) {
+            for (String t : target.keySet()) {
+                double score = after.getScore(s, t);
+                if (reweighted.contains(s) && reweighted.contains(t)) {
+                    assertEquals(expected.similarities().getScore(s, t), score, 1e-12, s + " -> " + t);
+                } else if (!reweighted.contains(s) && !reweighted.contains(t)) {
+                    assertEquals(before.getScore(s, t), score, s + " -> " + t);
+                } else {
+                    // Moving one unit vector by d moves its cosine with another by at most d, and normalizing a
+                    // vector that drifted by r moves it by at most 2r.
+                    double skipped = drift.get(reweighted.contains(s) ? t : s);
+                    assertEquals(
+                            expected.similarities().getScore(s, t), score, 2 * skipped + 1e-12, s + " -> " + t);
+                }
+            }
+        }
+    }
+}
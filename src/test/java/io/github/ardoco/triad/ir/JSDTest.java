@@ -0,0 +1,49 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static io.github.ardoco.triad.ir.TestArtifacts.collection;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class JSDTest {
+
+    private static double log2(double v) {
+        return Math.log(v) / Math.log(2.0);
+    }
+
+    private static double divergence(TermDocumentMatrix a, int i, TermDocumentMatrix b, int j) {
+        double divergence = 0.0;
+        for (int term = 0; term < a.numTerms(); term++) {
+            double p = a.getValue(i, term);
+            double q = b.getValue(j, term);
+            double m = 0.5 * (p + q);
+            if (p > 0) divergence += 0.5 * p * log2(p / m);
+            if (q > 0) divergence += 0.5 * q * log2(q / m);
+        }
+        return divergence;
+    }
+
+    @Test
+    void testMatchesDenseDivergence() {
+        // Repeated terms and rows of different lengths give non-uniform term distributions.
+        ArtifactsCollection source = collection("s", "route route route planning", "battery monitor warns operator");
+        ArtifactsCollection target = collection(
+                "t", "flight route uploaded to drone", "planner stores route waypoints", "battery battery alarm");
+
+        IRResult result = new JSD(1).ComputeResult(source, target, new TermDictionary());
+        SimilarityMatrix sims = result.similarities();
+
+        TermDocumentMatrix queries = result.queries();
+        TermDocumentMatrix documents = result.documents();
+        for (int i = 0; i < queries.numDocs(); i++) {
+            for (int j = 0; j < documents.numDocs(); j++) {
+                double expected = Math.max(0, 1 - divergence(queries, i, documents, j));
+                assertEquals(
+                        expected,
+                        sims.getScore(queries.getDocumentName(i), documents.getDocumentName(j)),
+                        1e-12);
+            }
+        }
+    }
+}
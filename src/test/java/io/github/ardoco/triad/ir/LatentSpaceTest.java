@@ -0,0 +1,53 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static io.github.ardoco.triad.ir.TestArtifacts.corpus;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static io.github.ardoco.triad.ir.TestArtifacts.corpus;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.ardoco.triad.model.RequirementsDocumentArtifact;
+
+class LatentSpaceTest {
+
+    @Test
+    void testFoldInOfCorpusTextMatchesStoredCoordinates() {
+        ArtifactsCollection corpus = corpus();
+        LatentSpace space = LatentSpace.build(corpus, corpus.size());
+
+        ArtifactsCollection artifacts = corpus();
+        artifacts.put("copy", new RequirementsDocumentArtifact("copy", "mission planner stores route"));
+        TermDocumentMatrix counts = new TermDocumentMatrix(artifacts);
+        double[][] coordinates = space.coordinates(artifacts, List.of("t1", "copy"), counts);
+
+        assertArrayEquals(coordinates[0], coordinates[1], 1e-9);
+    }
+
+    @Test
+    void testSavedSpaceLoadsIdentically(@TempDir Path directory) throws IOException {
+        ArtifactsCollection corpus = corpus();
+        LatentSpace space = LatentSpace.build(corpus, 2);
+        Path file = directory.resolve("space.bin");
+        space.save(file);
+        LatentSpace loaded = LatentSpace.load(file);
+
+        assertEquals(space.getRank(), loaded.getRank());
+        assertArrayEquals(space.getSingularValues(), loaded.getSingularValues());
+        ArtifactsCollection artifacts = corpus();
+        artifacts.put("new", new RequirementsDocumentArtifact("new", "drone battery route"));
+        TermDocumentMatrix counts = new TermDocumentMatrix(artifacts);
+        List<String> ids = counts.getDocumentNames();
+        double[][] expected = space.coordinates(artifacts, ids, counts);
+        double[][] actual = loaded.coordinates(artifacts, ids, counts);
+        for (int i = 0; i < ids.size(); i++) {
+            assertArrayEquals(expected[i], actual[i]);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static io.github.ardoco.triad.ir.TestArtifacts.collection;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LuceneVSMTest {
+
+    @AfterEach
+    void clearDirectory() {
+        System.clearProperty(LuceneVSM.DIRECTORY_PROPERTY);
+        System.clearProperty(LuceneVSM.MAX_INDEXES_PROPERTY);
+    }
+
+    @Test
+    void testMatchesInMemoryVsmAndReusesIndex(@TempDir Path directory) throws Exception {
+        System.setProperty(LuceneVSM.DIRECTORY_PROPERTY, directory.toString());
+        ArtifactsCollection source = collection(
+                "s", "drone flight route planning", "battery monitor warns operator", "ground station map view");
+        ArtifactsCollection target = collection(
+                "t",
+                "flight route uploaded to drone",
+                "mission planner stores route",
+                "operator battery alarm",
+                "unrelated logging configuration");
+
+        SimilarityMatrix expected = new VSM(1).Compute(source, target);
+        SimilarityMatrix first = new LuceneVSM().Compute(source, target);
+        try (var indexes = Files.list(directory)) {
+            assertEquals(1, indexes.count());
+        }
+        SimilarityMatrix reopened = new LuceneVSM().Compute(source, target);
+
+        assertEquals(expected.getAllLinks().size(), first.getAllLinks().size());
+        for (String s : source.keySet()) {
+            for (String t : target.keySet()) {
+                assertEquals(expected.getScore(s, t), first.getScore(s, t), 1e-5);
+                assertEquals(first.getScore(s, t), reopened.getScore(s, t));
+            }
+        }
+
+        TopKLinks topK = new LuceneVSM().ComputeTopK(source, target, new TermDictionary(), 2, 0.0);
+        for (String s : source.keySet()) {
+            TopKLinks full = TopKLinks.of(first, 2, 0.0);
+            assertEquals(full.getLinks(s).size(), topK.getLinks(s).size());
+            assertTrue(topK.getLinks(s).size() <= 2);
+            for (int n = 0; n < topK.getLinks(s).size(); n++) {
+                assertEquals(
+                        full.getLinks(s).get(n).getTargetArtifactId(),
+                        topK.getLinks(s).get(n).getTargetArtifactId());
+            }
+        }
+    }
+
+    /**
+     * @return a distinct letter-only token for every {@code n}: "zq" and three consonants other than "s" and "y", so
+     *     that neither the word splitting nor the stemmer merges two of them
+     */
+    private static String token(int n) {
+        String letters = "bcdfghjklmnpqrtvwxz";
+        int base = letters.length();
+        return "zq" + letters.charAt(n / (base * base) % base) + letters.charAt(n / base % base)
+                + letters.charAt(n % base);
+    }
+
+    @Test
+    void testSplitsLongQueriesAndKeepsRecentIndexes(@TempDir Path directory) throws Exception {
+        System.setProperty(LuceneVSM.DIRECTORY_PROPERTY, directory.toString());
+        System.setProperty(LuceneVSM.MAX_INDEXES_PROPERTY, "1");
+        StringBuilder longText = new StringBuilder("flight route");
+        for (int i = 0; i < 1500; i++) {
+            longText.append(' ').append(token(i));
+        }
+        ArtifactsCollection source = collection("s", longText.toString(), "battery monitor");
+        ArtifactsCollection target =
+                collection("t", "flight route " + token(7) + " " + token(1200), "battery alarm", token(42));
+
+        // More distinct terms than Lucene's default limit of 1024 clauses: an unsplit query would be rejected.
+        TermDocumentMatrix counts = new TermDocumentMatrix(source);
+        int row = counts.getDocumentIndex("s0");
+        assertTrue(counts.rowEnd(row) - counts.rowStart(row) > 2 * LuceneVSM.CLAUSES_PER_GROUP);
+
+        SimilarityMatrix expected = new VSM(1).Compute(source, target);
+        SimilarityMatrix lucene = new LuceneVSM(2).Compute(source, target);
+        assertTrue(expected.getScore("s0", "t0") > 0.0);
+        assertTrue(expected.getScore("s0", "t2") > 0.0);
+        for (String s : source.keySet()) {
+            for (String t : target.keySet()) {
+                assertEquals(expected.getScore(s, t), lucene.getScore(s, t), 1e-5);
+            }
+        }
+
+        new LuceneVSM(2).Compute(source, collection("t", "battery alarm"));
+        try (var indexes = Files.list(directory)) {
+            assertEquals(1, indexes.count());
+        }
+    }
+}
@@ -0,0 +1,46 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class MaxScoreTest {
+
+    private static TermDocumentMatrix sparseMatrix(String prefix, int docs, TermDictionary dictionary, long seed) {
+        // Few terms per row and coarse weights, so rows share little and scores tie often.
+        return TestArtifacts.randomMatrix(prefix, docs, dictionary, seed, 8, random -> random.nextInt(3) / 2.0);
+    }
+
+    @Test
+    void testPrunedTopKMatchesFullRows() {
+        TermDictionary dictionary = new TermDictionary();
+        for (int term = 0; term < 40; term++) dictionary.intern("t" + term);
+        TermDocumentMatrix queries = sparseMatrix("q", 31, dictionary, 11);
+        TermDocumentMatrix documents = sparseMatrix("d", 97, dictionary, 12);
+
+        SimilarityMatrix full = new SimilarityMatrix(queries.getDocumentNames(), documents.getDocumentNames());
+        CosineKernel.computeSimilarities(queries, documents, full, 1);
+
+        for (int k : new int[] {1, 3, 10}) {
+            TopKLinks expected = TopKLinks.of(full, k, 0.0);
+            TopKLinks.Collector collector =
+                    new TopKLinks.Collector(queries.getDocumentNames(), documents.getDocumentNames(), k, 0.0);
+            MaxScore.computeTopK(queries, documents, collector, 2);
+            TopKLinks pruned = collector.finish();
+
+            for (String query : queries.getDocumentNames()) {
+                List<SingleLink> expectedLinks = expected.getLinks(query);
+                List<SingleLink> prunedLinks = pruned.getLinks(query);
+                assertEquals(expectedLinks.size(), prunedLinks.size(), query);
+                for (int n = 0; n < expectedLinks.size(); n++) {
+                    assertEquals(expectedLinks.get(n).getTargetArtifactId(), prunedLinks.get(n).getTargetArtifactId());
+                    assertEquals(expectedLinks.get(n).getScore(), prunedLinks.get(n).getScore());
+                }
+                assertEquals(expected.getMaxScore(query), pruned.getMaxScore(query));
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SimilarityMatrixTest {
+
+    @Test
+    void testSetScoreReplacesExistingLink() {
+        SimilarityMatrix m = new SimilarityMatrix();
+        m.addLink("S1", "T1", 0.4);
+        m.setScore("S1", "T1", 0.9);
+
+        assertEquals(0.9, m.getScore("S1", "T1"));
+        assertEquals(1, m.getLinks("S1").size());
+        assertEquals(1, m.getAllLinks().size());
+    }
+
+    @Test
+    void testAbsentCellsAreNotLinks() {
+        SimilarityMatrix m = new SimilarityMatrix(List.of("S1", "S2"), List.of("T1", "T2"));
+        m.addLink("S1", "T2", 0.0);
+
+        assertEquals(Set.of("S1"), m.getSourceArtifacts());
+        assertEquals(Set.of("T2"), m.getTargetArtifacts());
+        assertNull(m.getLinks("S2"));
+        assertEquals(0.0, m.getScore("S2", "T1"));
+        assertEquals(0.0, m.getScore("unknown", "T1"));
+        assertTrue(m.hasScore(0, 1));
+        assertFalse(m.hasScore(0, 0));
+    }
+
+    @Test
+    void testGrowsBeyondInitialCapacity() {
+        SimilarityMatrix m = new SimilarityMatrix(List.of("S0"), List.of("T0"));
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 40; j++) {
+                m.addLink("S" + i, "T" + j, i * 100 + j);
+            }
+        }
+
+        assertEquals(40, m.getSourceArtifacts().size());
+        assertEquals(40, m.getTargetArtifacts().size());
+        assertEquals(1600, m.getAllLinks().size());
+        assertEquals(3917.0, m.getScore("S39", "T17"));
+        assertEquals(5.0, m.getScore(0, 5));
+    }
+
+    @Test
+    void testDeepCopyIsIndependent() {
+        SimilarityMatrix m = new SimilarityMatrix();
+        m.addLink("S1", "T1", 0.5);
+
+        SimilarityMatrix copy = m.deepCopy();
+        copy.setScore("S1", "T1", 0.1);
+        copy.addLink("S2", "T2", 0.3);
+
+        assertEquals(0.5, m.getScore("S1", "T1"));
+        assertEquals(Set.of("S1"), m.getSourceArtifacts());
+        assertEquals(0.1, copy.getScore("S1", "T1"));
+        assertEquals(Set.of("T1", "T2"), copy.getTargetArtifacts());
+    }
+
+    @Test
+    void testTransposeIsASharedView() {
+        SimilarityMatrix m = new SimilarityMatrix(List.of("S1", "S2"), List.of("T1"));
+        m.addLink("S2", "T1", 0.7);
+
+        SimilarityMatrix t = m.transpose();
+        assertEquals(0.7, t.getScore("T1", "S2"));
+        assertEquals(Set.of("T1"), t.getSourceArtifacts());
+        assertEquals(Set.of("S2"), t.getTargetArtifacts());
+        assertEquals(1, t.getLinks("T1").size());
+
+        for (int i = 0; i < 20; i++) {
+            t.addLink("T" + i, "S1", i);
+        }
+        assertEquals(7.0, m.getScore("S1", "T7"));
+        assertEquals(0.7, m.getScore("S2", "T1"));
+        assertEquals(20, m.getTargetArtifacts().size());
+        assertEquals(0.7, t.transpose().getScore(1, 0));
+    }
+
+    @Test
+    void testReducedPrecisionStaysWithinStorageError() {
+        for (ScorePrecision precision : ScorePrecision.values()) {
+            Random random = new Random(11);
+            SimilarityMatrix m = new SimilarityMatrix(List.of("S0"), List.of("T0"), precision);
+            double[][] written = new double[20][30];
+            for (int s = 0; s < written.length; s++) {
+                for (int t = 0; t < written[s].length; t++) {
+                    written[s][t] = random.nextDouble() * 2 - 1;
+                    m.addLink("S" + s, "T" + t, written[s][t]);
+                }
+            }
+
+            SimilarityMatrix copy = m.deepCopy();
+            assertEquals(precision, copy.getPrecision());
+            for (int s = 0; s < written.length; s++) {
+                for (int t = 0; t < written[s].length; t++) {
+                    double error = Math.abs(written[s][t] - copy.getScore("S" + s, "T" + t));
+                    assertTrue(error <= precision.storageError() + 1e-12, precision + " off by " + error);
+                }
+            }
+            m.addLink("S0", "T0", 0.0);
+            assertEquals(0.0, m.getScore("S0", "T0"));
+        }
+    }
+
+    @Test
+    void testMappedStoreSavesAndReopens(@TempDir Path directory) throws IOException {
+        System.setProperty(MappedScoreArray.STORE_PROPERTY, "mapped");
+        System.setProperty(MappedScoreArray.DIRECTORY_PROPERTY, directory.toString());
+        System.setProperty(MappedScoreArray.MIN_CELLS_PROPERTY, "1");
+        try {
+            SimilarityMatrix m = new SimilarityMatrix(List.of("S0"), List.of("T0"));
+            for (int i = 0; i < 70; i++) {
+                for (int j = 0; j < 90; j += 3) {
+                    m.addLink("S" + i, "T" + j, (i * 100 + j) / 10000.0);
+                }
+            }
+            m.addLink("S0", "T200", 0.0);
+            SimilarityMatrix copy = m.deepCopy();
+            copy.setScore("S1", "T1", 0.25);
+
+            assertEquals(ScorePrecision.FLOAT, m.getPrecision());
+            assertFalse(m.hasScore(m.getSourceIndex("S1"), m.getTargetIndex("T200")));
+            assertEquals(0.0, m.getScore("S1", "T1"));
+            assertEquals(0.25, copy.getScore("S1", "T1"));
+
+            Path file = directory.resolve("run.scores");
+            m.save(file);
+            SimilarityMatrix reopened = SimilarityMatrix.open(file);
+
+            assertEquals(m.numLinks(), reopened.numLinks());
+            assertEquals(m.getSourceArtifacts(), reopened.getSourceArtifacts());
+            assertEquals(m.getTargetArtifacts(), reopened.getTargetArtifacts());
+            assertEquals((float) 0.6987, reopened.getScore("S69", "T87"));
+            assertTrue(reopened.hasScore(0, reopened.getTargetIndex("T200")));
+            assertFalse(reopened.hasScore(1, reopened.getTargetIndex("T200")));
+        } finally {
+            System.clearProperty(MappedScoreArray.STORE_PROPERTY);
+            System.clearProperty(MappedScoreArray.DIRECTORY_PROPERTY);
+            System.clearProperty(MappedScoreArray.MIN_CELLS_PROPERTY);
+        }
+    }
+
+    @Test
+    void testScratchStoreDeletesDiscardedGrids(@TempDir Path directory) throws IOException {
+        System.setProperty(MappedScoreArray.STORE_PROPERTY, "mapped");
+        System.setProperty(MappedScoreArray.DIRECTORY_PROPERTY, directory.toString());
+        System.setProperty(MappedScoreArray.MIN_CELLS_PROPERTY, "1");
+        try {
+            SimilarityMatrix kept;
+            try (ScratchStore scratch = ScratchStore.open()) {
+                kept = new SimilarityMatrix(List.of("S0"), List.of("T0"));
+                // Growing past the first grid leaves only the file of the current one behind.
+                for (int i = 0; i < 100; i++) {
+                    kept.addLink("S" + i, "T" + i, i / 100.0);
+                }
+                assertEquals(1, scratchFiles(directory));
+                SimilarityMatrix copy = kept.deepCopy();
+                copy.setScore("S1", "T1", 0.5);
+                assertEquals(2, scratchFiles(directory));
+
+                scratch.keep(kept);
+            }
+            assertEquals(1, scratchFiles(directory));
+            assertEquals((float) 0.99, kept.getScore("S99", "T99"));
+        } finally {
+            System.clearProperty(MappedScoreArray.STORE_PROPERTY);
+            System.clearProperty(MappedScoreArray.DIRECTORY_PROPERTY);
+            System.clearProperty(MappedScoreArray.MIN_CELLS_PROPERTY);
+        }
+    }
+
+    private static long scratchFiles(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".tiles")).count();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import io.github.ardoco.triad.model.RequirementsDocumentArtifact;
+
+class TermDocumentMatrixTest {
+
+    private static TermDocumentMatrix matrix(List<String> docs, List<String> terms, double[][] dense) {
+        int[] rowPointers = new int[docs.size() + 1];
+        int nonZeros = 0;
+        for (double[] row : dense) {
+            for (double v : row) {
+                if (v != 0.0) nonZeros++;
+            }
+        }
+        int[] termIndices = new int[nonZeros];
+        double[] values = new double[nonZeros];
+        int position = 0;
+        for (int i = 0; i < dense.length; i++) {
+            for (int j = 0; j < dense[i].length; j++) {
+                if (dense[i][j] != 0.0) {
+                    termIndices[position] = j;
+                    values[position] = dense[i][j];
+                    position++;
+                }
+            }
+            rowPointers[i + 1] = position;
+        }
+        return new TermDocumentMatrix(docs, terms, rowPointers, termIndices, values);
+    }
+
+    @Test
+    void testNamedLookupMatchesIndexedLookup() {
+        TermDocumentMatrix m = matrix(
+                List.of("d1", "d2"), List.of("flight", "route", "uav"), new double[][] {{1, 0, 2}, {0, 3, 0}});
+
+        assertEquals(3, m.numNonZeros());
+        assertEquals(2.0, m.getValue("d1", "uav"));
+        assertEquals(3.0, m.getValue(1, 1));
+        assertEquals(0.0, m.getValue("d2", "uav"));
+        assertEquals(0.0, m.getValue("d3", "uav"));
+        assertEquals(0.0, m.getValue("d1", "plan"));
+    }
+
+    @Test
+    void testSetValueInsertsNewEntry() {
+        TermDocumentMatrix m = matrix(
+                List.of("d1", "d2"), List.of("flight", "route", "uav"), new double[][] {{1, 0, 2}, {0, 3, 0}});
+
+        m.setValue(0, 1, 5.0);
+        m.setValue(1, 1, 4.0);
+
+        assertEquals(4, m.numNonZeros());
+        assertEquals(5.0, m.getValue(0, 1));
+        assertEquals(2.0, m.getValue(0, 2));
+        assertEquals(4.0, m.getValue(1, 1));
+        assertEquals(m.rowStart(1), m.rowEnd(0));
+    }
+
+    @Test
+    void testEqualizeRemapsTermsWithoutChangingValues() {
+        TermDocumentMatrix source =
+                matrix(List.of("s1"), List.of("flight", "uav"), new double[][] {{1, 2}});
+        TermDocumentMatrix target =
+                matrix(List.of("t1", "t2"), List.of("route", "uav"), new double[][] {{3, 0}, {0, 4}});
+
+        List<TermDocumentMatrix> aligned = TermDocumentMatrix.equalize(source, target);
+
+        assertEquals(List.of("flight", "uav", "route"), aligned.get(0).getTermNames());
+        assertEquals(aligned.get(0).getTermNames(), aligned.get(1).getTermNames());
+        assertEquals(2.0, aligned.get(0).getValue("s1", "uav"));
+        assertEquals(3.0, aligned.get(1).getValue("t1", "route"));
+        assertEquals(4.0, aligned.get(1).getValue(1, 1));
+        assertEquals(1, aligned.get(1).termAt(aligned.get(1).rowStart(1)));
+    }
+
+    @Test
+    void testSharedDictionaryAlignsWithoutCopying() {
+        TermDictionary dictionary = new TermDictionary();
+        TermDocumentMatrix source = new TermDocumentMatrix(
+                List.of("s1"), dictionary, new int[] {0, 1}, new int[] {dictionary.intern("uav")}, new double[] {1});
+        TermDocumentMatrix target = new TermDocumentMatrix(
+                List.of("t1"), dictionary, new int[] {0, 1}, new int[] {dictionary.intern("route")}, new double[] {2});
+
+        List<TermDocumentMatrix> aligned = TermDocumentMatrix.equalize(source, target);
+
+        assertSame(source, aligned.get(0));
+        assertSame(target, aligned.get(1));
+        assertEquals(2, target.numTerms());
+    }
+
+    @Test
+    void testSelectDocumentsCopiesRows() {
+        TermDocumentMatrix m = matrix(
+                List.of("d1", "d2", "d3"), List.of("flight", "uav"), new double[][] {{1, 0}, {0, 2}, {3, 4}});
+
+        TermDocumentMatrix selected = m.selectDocuments(List.of("d3", "d1", "missing"));
+
+        assertEquals(3, selected.numDocs());
+        assertEquals("d3", selected.getDocumentName(0));
+        assertEquals(4.0, selected.getValue("d3", "uav"));
+        assertEquals(1.0, selected.getValue("d1", "flight"));
+        assertEquals(selected.rowStart(2), selected.rowEnd(2));
+    }
+
+    @Test
+    void testOffHeapArenaMatchesHeapMatrices() {
+        ArtifactsCollection sources = new ArtifactsCollection();
+        sources.put("s1", new RequirementsDocumentArtifact("s1", "drone flight route route"));
+        sources.put("s2", new RequirementsDocumentArtifact("s2", "operator battery alarm"));
+        ArtifactsCollection targets = new ArtifactsCollection();
+        targets.put("t1", new RequirementsDocumentArtifact("t1", "uav battery monitor"));
+        List<TermDocumentMatrix> expected =
+                TermDocumentMatrix.equalize(new TermDocumentMatrix(sources), new TermDocumentMatrix(targets));
+
+        System.setProperty(TermArena.STORE_PROPERTY, "offheap");
+        try (TermArena run = TermArena.open()) {
+            // The second stage reuses the buffers the first one released to the pool.
+            for (int round = 0; round < 2; round++) {
+                try (TermArena arena = TermArena.open()) {
+                    List<TermDocumentMatrix> aligned = TermDocumentMatrix.equalize(
+                            new TermDocumentMatrix(sources), new TermDocumentMatrix(targets));
+                    TermDocumentMatrix selected = aligned.get(0).selectDocuments(List.of("s2", "s1"));
+                    int s1Term = selected.termAt(selected.rowStart(1));
+                    selected.setValue(0, s1Term, 0.5);
+
+                    assertTrue(arena.isOffHeap());
+                    assertTrue(arena.getAllocatedBytes() > 0);
+                    assertEquals(expected.get(1).getTermNames(), aligned.get(1).getTermNames());
+                    for (String term : expected.get(0).getTermNames()) {
+                        assertEquals(expected.get(0).getValue("s1", term), aligned.get(0).getValue("s1", term), term);
+                        assertEquals(expected.get(1).getValue("t1", term), aligned.get(1).getValue("t1", term), term);
+                        assertEquals(expected.get(0).getValue("s1", term), selected.getValue("s1", term), term);
+                    }
+                    assertEquals(0.5, selected.getValue(0, s1Term));
+                    assertEquals(expected.get(0).numNonZeros() + 1, selected.numNonZeros());
+                }
+                assertTrue(TermArena.getPooledBytes() > 0);
+            }
+        } finally {
+            System.clearProperty(TermArena.STORE_PROPERTY);
+        }
+    }
+
+    @Test
+    void testOffHeapMatrixFailsAfterArenaCloses() {
+        ArtifactsCollection sources = new ArtifactsCollection();
+        sources.put("s1", new RequirementsDocumentArtifact("s1", "drone flight route"));
+
+        System.setProperty(TermArena.STORE_PROPERTY, "offheap");
+        try {
+            TermDocumentMatrix escaped;
+            try (TermArena arena = TermArena.open()) {
+                escaped = new TermDocumentMatrix(sources);
+                // Blocks larger than a quarter slab get a pooled buffer of their own.
+                TermArena.allocateValues(ScorePrecision.DOUBLE, TermArena.SLAB_BYTES / 16);
+                assertEquals(1.0, escaped.valueAt(0));
+            }
+            assertThrows(IllegalStateException.class, () -> escaped.valueAt(0));
+            assertThrows(IllegalStateException.class, () -> escaped.termAt(0));
+            // Closing the outermost arena of the thread empties the pool.
+            assertEquals(0, TermArena.getPooledBytes());
+        } finally {
+            System.clearProperty(TermArena.STORE_PROPERTY);
+        }
+    }
+}
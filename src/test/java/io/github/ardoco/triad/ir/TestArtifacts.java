@@ -0,0 +1,85 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+import io.github.ardoco.triad.model.RequirementsDocumentArtifact;
+
+/**
+ * Small artifact collections and random term-document matrices shared by the IR model tests.
+ */
+final class TestArtifacts {
+
+    private TestArtifacts() {}
+
+    /**
+     * @return a collection of requirements with the identifiers {@code prefix + 0}, {@code prefix + 1}, ... and the
+     *     given texts
+     */
+    static ArtifactsCollection collection(String prefix, String... texts) {
+        ArtifactsCollection collection = new ArtifactsCollection();
+        for (int i = 0; i < texts.length; i++) {
+            collection.put(prefix + i, new RequirementsDocumentArtifact(prefix + i, texts[i]));
+        }
+        return collection;
+    }
+
+    /**
+     * @return two source requirements {@code s0} and {@code s1} about drone routes and battery warnings
+     */
+    static ArtifactsCollection sources() {
+        return collection("s", "drone flight route planning", "battery monitor warns operator");
+    }
+
+    /**
+     * @return three target requirements {@code t0} to {@code t2}, each sharing terms with one of the {@link #sources()}
+     */
+    static ArtifactsCollection targets() {
+        return collection(
+                "t", "flight route uploaded to drone", "mission planner stores route", "operator battery alarm");
+    }
+
+    /**
+     * @return the {@link #sources()} and {@link #targets()} in one collection
+     */
+    static ArtifactsCollection corpus() {
+        ArtifactsCollection corpus = sources();
+        corpus.putAll(targets());
+        return corpus;
+    }
+
+    /**
+     * Builds a term-document matrix over all terms of the dictionary in which each cell is present with a probability
+     * of {@code 1 / oneIn}.
+     *
+     * @param weight draws the value of a present cell from the seeded random source
+     * @return documents named {@code prefix + 0}, {@code prefix + 1}, ...
+     */
+    static TermDocumentMatrix randomMatrix(
+            String prefix, int docs, TermDictionary dictionary, long seed, int oneIn, ToDoubleFunction<Random> weight) {
+        Random random = new Random(seed);
+        List<String> names = new ArrayList<>();
+        int[] rowPointers = new int[docs + 1];
+        List<Integer> terms = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < docs; i++) {
+            names.add(prefix + i);
+            for (int term = 0; term < dictionary.size(); term++) {
+                if (random.nextInt(oneIn) == 0) {
+                    terms.add(term);
+                    values.add(weight.applyAsDouble(random));
+                }
+            }
+            rowPointers[i + 1] = terms.size();
+        }
+        return new TermDocumentMatrix(
+                names,
+                dictionary,
+                rowPointers,
+                terms.stream().mapToInt(Integer::intValue).toArray(),
+                values.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+}
@@ -0,0 +1,79 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static io.github.ardoco.triad.ir.TestArtifacts.sources;
+import static io.github.ardoco.triad.ir.TestArtifacts.targets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TopKLinksTest {
+
+    private static List<String> linkIds(List<SingleLink> links) {
+        return links.stream()
+                .map(link -> link.getTargetArtifactId() + "=" + link.getScore())
+                .toList();
+    }
+
+    @Test
+    void testMatchesStableSortOfFullRows() {
+        Random random = new Random(7);
+        SimilarityMatrix matrix = new SimilarityMatrix();
+        for (int s = 0; s < 20; s++) {
+            for (int t = 0; t < 15; t++) {
+                // Coarse scores produce many ties; some cells stay absent.
+                if (random.nextInt(5) > 0) matrix.addLink("s" + s, "t" + t, random.nextInt(6) / 5.0);
+            }
+        }
+
+        TopKLinks topK = TopKLinks.of(matrix, 3, 0.5);
+        for (String source : matrix.getSourceArtifacts()) {
+            LinksList row = matrix.getLinks(source);
+            double max = row.stream().mapToDouble(SingleLink::getScore).max().orElse(0.0);
+            List<SingleLink> expected = row.stream()
+                    .filter(link -> link.getScore() >= max * 0.5)
+                    .sorted(Comparator.comparingDouble(SingleLink::getScore).reversed())
+                    .limit(3)
+                    .toList();
+            assertEquals(linkIds(expected), linkIds(topK.getLinks(source)), source);
+            assertEquals(max, topK.getMaxScore(source));
+        }
+        assertEquals(matrix.getSourceArtifacts(), topK.getSourceArtifacts());
+    }
+
+    @Test
+    void testStreamingModelsMatchFullMatrix() {
+        ArtifactsCollection source = sources();
+        ArtifactsCollection target = targets();
+
+        for (IRModel model : List.of(new VSM(1), new LSI(1), new JSD(1))) {
+            TopKLinks expected = TopKLinks.of(model.Compute(source, target), 2, 0.5);
+            TopKLinks streamed = model.ComputeTopK(source, target, new TermDictionary(), 2, 0.5);
+            for (String s : source.keySet()) {
+                assertEquals(linkIds(expected.getLinks(s)), linkIds(streamed.getLinks(s)), model.getModelName());
+            }
+        }
+    }
+
+    @Test
+    void testIndexQueriesMatchComputeTopK() {
+        ArtifactsCollection source = sources();
+        ArtifactsCollection target = targets();
+
+        VSM vsm = new VSM(2);
+        VSMIndex index = vsm.index(source, target, new TermDictionary());
+        for (int k : new int[] {1, 2, 3}) {
+            TopKLinks expected = vsm.ComputeTopK(source, target, new TermDictionary(), k, 0.0);
+            TopKLinks all = index.search(k, 0.0);
+            for (String s : source.keySet()) {
+                assertEquals(linkIds(expected.getLinks(s)), linkIds(all.getLinks(s)), s);
+                assertEquals(linkIds(expected.getLinks(s)), linkIds(index.search(s, k)), s);
+            }
+        }
+        assertEquals(List.of(), index.search("t1", 2));
+    }
+}
@@ -0,0 +1,93 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.MatrixUtils;
+import org.apache.commons.math3.linear.RealMatrix;
+import org.apache.commons.math3.linear.SingularValueDecomposition;
+import org.junit.jupiter.api.Test;
+
+class TruncatedSVDTest {
+    private static final int DOCS = 12;
+    private static final int TERMS = 20;
+
+    private final double[][] dense = new double[DOCS][TERMS];
+
+    private TermDocumentMatrix randomMatrix() {
+        Random random = new Random(5);
+        TermDictionary dictionary = new TermDictionary();
+        for (int term = 0; term < TERMS + 1; term++) dictionary.intern("t" + term);
+        List<String> names = new ArrayList<>();
+        int[] rowPointers = new int[DOCS + 1];
+        List<Integer> terms = new ArrayList<>();
+        List<Double> values = new ArrayList<>();
+        for (int i = 0; i < DOCS; i++) {
+            names.add("d" + i);
+            for (int term = 0; term < TERMS; term++) {
+                if (random.nextInt(3) == 0 || term == i) {
+                    dense[i][term] = random.nextDouble();
+                    terms.add(term);
+                    values.add(dense[i][term]);
+                }
+            }
+            rowPointers[i + 1] = terms.size();
+        }
+        return new TermDocumentMatrix(
+                names,
+                dictionary,
+                rowPointers,
+                terms.stream().mapToInt(Integer::intValue).toArray(),
+                values.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    private static double cosine(double[] a, double[] b) {
+        double product = 0.0;
+        double aa = 0.0;
+        double bb = 0.0;
+        for (int c = 0; c < a.length; c++) {
+            product += a[c] * b[c];
+            aa += a[c] * a[c];
+            bb += b[c] * b[c];
+        }
+        return product / Math.sqrt(aa * bb);
+    }
+
+    @Test
+    void testSingularValuesMatchFullDecomposition() {
+        TruncatedSVD svd = TruncatedSVD.decompose(randomMatrix(), 5);
+        double[] expected = new SingularValueDecomposition(MatrixUtils.createRealMatrix(dense)).getSingularValues();
+
+        assertEquals(5, svd.getRank());
+        for (int c = 0; c < 5; c++) {
+            assertEquals(expected[c], svd.getSingularValues()[c], 1e-9);
+        }
+        assertNull(svd.getTermVector(TERMS));
+    }
+
+    @Test
+    void testLatentCosineEqualsReconstructedCosine() {
+        int k = 4;
+        TruncatedSVD svd = TruncatedSVD.decompose(randomMatrix(), k);
+        SingularValueDecomposition full = new SingularValueDecomposition(MatrixUtils.createRealMatrix(dense));
+        RealMatrix reconstruction = full.getU()
+                .getSubMatrix(0, DOCS - 1, 0, k - 1)
+                .multiply(full.getS().getSubMatrix(0, k - 1, 0, k - 1))
+                .multiply(full.getV().getSubMatrix(0, TERMS - 1, 0, k - 1).transpose());
+
+        double[][] coordinates = svd.getDocumentCoordinates();
+        for (int i = 0; i < DOCS; i++) {
+            for (int j = 0; j < DOCS; j++) {
+                assertEquals(
+                        cosine(reconstruction.getRow(i), reconstruction.getRow(j)),
+                        cosine(coordinates[i], coordinates[j]),
+                        1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.ir;
+
+import static io.github.ardoco.triad.ir.TestArtifacts.corpus;
+import static io.github.ardoco.triad.ir.TestArtifacts.sources;
+import static io.github.ardoco.triad.ir.TestArtifacts.targets;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class UnionCorpusTest {
+
+    @Test
+    void testBlockOfTwoCollectionCorpusMatchesPairwiseUnion() {
+        ArtifactsCollection source = sources();
+        ArtifactsCollection target = targets();
+        ArtifactsCollection corpus = corpus();
+
+        // The corpus is small enough for both randomized decompositions to be exact.
+        TermDictionary dictionary = new TermDictionary();
+        UnionCorpus unionCorpus = new UnionCorpus(corpus, dictionary, Math.min(source.size(), target.size()));
+        SimilarityMatrix block = unionCorpus.computeUnion(source, target);
+        SimilarityMatrix vsm = new VSM(1).Compute(source, target, dictionary);
+        SimilarityMatrix lsi = new LSI(1).Compute(source, target, dictionary);
+        SimilarityMatrix jsd = new JSD(1).Compute(source, target, dictionary);
+
+        for (String s : source.keySet()) {
+            for (String t : target.keySet()) {
+                double expected = (vsm.getScore(s, t) + lsi.getScore(s, t) + jsd.getScore(s, t)) / 3.0;
+                assertEquals(expected, block.getScore(s, t), 1e-9);
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AnalysisCacheTest {
+
+    private static Map<String, Integer> weights(Set<Biterm> biterms) {
+        Map<String, Integer> map = new HashMap<>();
+        for (Biterm biterm : biterms) {
+            map.put(biterm.toString(), biterm.getWeight());
+        }
+        return map;
+    }
+
+    @Test
+    @DisplayName("Stored text and biterms are read back from the file instead of being extracted again")
+    void testResultsSurviveFlush(@TempDir Path directory) throws Exception {
+        System.setProperty(AnalysisCache.DIRECTORY_PROPERTY, directory.toString());
+        try {
+            Biterm flightPlan = new Biterm("flight", "plan");
+            flightPlan.setWeight(3);
+            Set<Biterm> biterms = Set.of(flightPlan, new Biterm("uav", "state"));
+            String content = "The UAV shall follow the flight plan.";
+
+            assertThat(AnalysisCache.text(ArtifactType.TEXTUAL, content, () -> "uav follow flight plan"))
+                    .isEqualTo("uav follow flight plan");
+            assertThat(AnalysisCache.biterms(ArtifactType.TEXTUAL, content, () -> biterms))
+                    .isSameAs(biterms);
+            AnalysisCache.flushConfigured();
+
+            assertThat(directory.resolve(AnalysisCache.FILE_NAME)).isRegularFile();
+            assertThat(Files.size(directory.resolve(AnalysisCache.FILE_NAME)))
+                    .isGreaterThan(2L * AnalysisCache.INDEX_ENTRY_BYTES);
+            assertThat(AnalysisCache.configured().size()).isEqualTo(2);
+
+            assertThat(AnalysisCache.text(ArtifactType.TEXTUAL, content, () -> {
+                        throw new AssertionError("text extracted again");
+                    }))
+                    .isEqualTo("uav follow flight plan");
+            assertThat(weights(AnalysisCache.biterms(ArtifactType.TEXTUAL, content, () -> {
+                        throw new AssertionError("biterms extracted again");
+                    })))
+                    .isEqualTo(weights(biterms));
+
+            // The key covers the artifact type and the content, not just one of them.
+            assertThat(AnalysisCache.findBiterms(ArtifactType.JAVA_CODE, content)).isNull();
+            assertThat(AnalysisCache.findBiterms(ArtifactType.TEXTUAL, content + " ")).isNull();
+        } finally {
+            System.clearProperty(AnalysisCache.DIRECTORY_PROPERTY);
+        }
+    }
+
+    @Test
+    @DisplayName("Entries and records crossing chunk boundaries are read back and merged")
+    void testRecordsAcrossChunks(@TempDir Path directory) throws Exception {
+        System.setProperty(AnalysisCache.DIRECTORY_PROPERTY, directory.toString());
+        try {
+            for (int i = 0; i < 20; i++) {
+                String text = "uav flight plan ".repeat(i + 1).trim();
+                AnalysisCache.text(ArtifactType.TEXTUAL, "requirement " + i, () -> text);
+            }
+            AnalysisCache.flushConfigured();
+
+            // 16-byte chunks: every index entry and almost every record spans several mappings.
+            AnalysisCache chunked = new AnalysisCache(directory.resolve(AnalysisCache.FILE_NAME), 4);
+            assertThat(chunked.size()).isEqualTo(20);
+            for (int i = 0; i < 20; i++) {
+                assertThat(chunked.findText(ArtifactType.TEXTUAL, "requirement " + i))
+                        .isEqualTo("uav flight plan ".repeat(i + 1).trim());
+            }
+
+            // Merging copies the stored records across chunks, and a new result replaces a stored one.
+            chunked.putText(ArtifactType.TEXTUAL, "requirement 20", "drone");
+            chunked.putText(ArtifactType.TEXTUAL, "requirement 3", "replaced");
+            chunked.flush();
+            AnalysisCache merged = new AnalysisCache(directory.resolve(AnalysisCache.FILE_NAME), 4);
+            assertThat(merged.size()).isEqualTo(21);
+            assertThat(merged.findText(ArtifactType.TEXTUAL, "requirement 7"))
+                    .isEqualTo("uav flight plan ".repeat(8).trim());
+            assertThat(merged.findText(ArtifactType.TEXTUAL, "requirement 3")).isEqualTo("replaced");
+            assertThat(merged.findText(ArtifactType.TEXTUAL, "requirement 20")).isEqualTo("drone");
+        } finally {
+            System.clearProperty(AnalysisCache.DIRECTORY_PROPERTY);
+        }
+    }
+
+    @Test
+    @DisplayName("A truncated file and records outside the file are ignored")
+    void testCorruptFileIsIgnored(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve(AnalysisCache.FILE_NAME);
+        AnalysisCache cache = new AnalysisCache(file, 4);
+        for (int i = 0; i < 5; i++) {
+            cache.putText(ArtifactType.TEXTUAL, "requirement " + i, "uav flight plan " + i);
+        }
+        cache.flush();
+        byte[] bytes = Files.readAllBytes(file);
+
+        // The header claims more index entries than the file holds.
+        ByteBuffer.wrap(bytes).putInt(2 * Integer.BYTES, 1000);
+        Files.write(file, bytes);
+        AnalysisCache truncated = new AnalysisCache(file, 4);
+        assertThat(truncated.size()).isZero();
+        assertThat(truncated.findText(ArtifactType.TEXTUAL, "requirement 0")).isNull();
+
+        // The first entry points past the end of the file: only its record is lost, also when merging.
+        // A separate file, since the truncated one is still mapped.
+        Path copy = directory.resolve("copy.bin");
+        ByteBuffer.wrap(bytes).putInt(2 * Integer.BYTES, 5).putLong(3 * Integer.BYTES + 2 * Long.BYTES, bytes.length);
+        Files.write(copy, bytes);
+        AnalysisCache outside = new AnalysisCache(copy, 4);
+        int found = 0;
+        for (int i = 0; i < 5; i++) {
+            String text = outside.findText(ArtifactType.TEXTUAL, "requirement " + i);
+            if (text != null) {
+                assertThat(text).isEqualTo("uav flight plan " + i);
+                found++;
+            }
+        }
+        assertThat(found).isEqualTo(4);
+        outside.putText(ArtifactType.TEXTUAL, "requirement 5", "drone");
+        outside.flush();
+        assertThat(new AnalysisCache(copy, 4).size()).isEqualTo(5);
+    }
+
+    @Test
+    @DisplayName("Without a configured directory nothing is cached")
+    void testDisabledByDefault() {
+        System.clearProperty(AnalysisCache.DIRECTORY_PROPERTY);
+        int[] extractions = {0};
+        for (int i = 0; i < 2; i++) {
+            AnalysisCache.text(ArtifactType.TEXTUAL, "flight plan", () -> {
+                extractions[0]++;
+                return "flight plan";
+            });
+        }
+        assertThat(extractions[0]).isEqualTo(2);
+        assertThat(AnalysisCache.configured()).isNull();
+    }
+}
@@ -4,6 +4,7 @@ package io.github.ardoco.triad.model;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -135,4 +136,28 @@ class ArtifactBitermExtractionTest {
 
         assertThat(actualBiterms).isEqualTo(expectedBiterms);
     }
+
+    @Test
+    @DisplayName("Test that batch extraction yields the biterms of sequential extraction")
+    void testBatchExtractionMatchesSequential() {
+        List<String> texts = List.of(
+                "[SUMMARY]\nPre-defined flight patterns\n[DESCRIPTION]\nThe mission planner shall manage pre-defined flight patterns.",
+                "[SUMMARY]\nUAV State transitions\n[DESCRIPTION]\nWhen requested the VehicleCore shall transition the UAV between states.",
+                "",
+                "The ground station sends the flight plan to the assigned UAV. The UAV returns home when the battery is low.");
+
+        List<Artifact> sequential = texts.stream()
+                .<Artifact>map(text -> new RequirementsDocumentArtifact("RE", text))
+                .toList();
+        List<Artifact> batched = texts.stream()
+                .<Artifact>map(text -> new RequirementsDocumentArtifact("RE", text))
+                .toList();
+        BitermExtractor.extractAll(batched, 3);
+
+        for (int i = 0; i < texts.size(); i++) {
+            assertThat(batched.get(i).biterms).isNotNull();
+            assertThat(getBitermMap(batched.get(i).getBiterms()))
+                    .isEqualTo(getBitermMap(sequential.get(i).getBiterms()));
+        }
+    }
 }
@@ -0,0 +1,153 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.text;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.tartarus.snowball.ext.EnglishStemmer;
+
+/**
+ * The regex pipeline that {@link TextProcessor} ran before its single-pass tokenizer, kept as an uncached reference
+ * for the tests. It stems with a Snowball stemmer of its own, so neither the word nor the stem cache is involved.
+ */
+final class RegexTextProcessor {
+    private static final Set<String> STOPWORDS = new HashSet<>();
+
+    static {
+        try (InputStream is = RegexTextProcessor.class.getResourceAsStream("/stopwords.txt")) {
+            if (is != null) {
+                new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))
+                        .lines()
+                        .map(String::trim)
+                        .filter(line -> !line.isEmpty())
+                        .forEach(STOPWORDS::add);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private RegexTextProcessor() {}
+
+    static String processText(String text) {
+        if (text == null || text.isBlank()) {
+            return "";
+        }
+        String cleaned = cleanCharacters(text);
+        return Arrays.stream(cleaned.split("\\s+"))
+                .map(RegexTextProcessor::processWord)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.joining(" "));
+    }
+
+    static String processWord(String word) {
+        if (word == null || word.isBlank()) {
+            return "";
+        }
+        // Handle pluralized acronyms like "UAVs" before other processing
+        if (word.endsWith("s") && word.length() > 1 && Character.isUpperCase(word.charAt(word.length() - 2))) {
+            word = word.substring(0, word.length() - 1);
+        }
+
+        String camelCaseSplit = splitCamelCase(word);
+        String snakeCaseSplit = splitSnakeCase(camelCaseSplit);
+        String lowercased = snakeCaseSplit.toLowerCase(Locale.ROOT);
+        String stopwordsRemoved1 = removeStopwords(lowercased);
+        String stemmed = stemText(stopwordsRemoved1);
+        String stopwordsRemoved2 = removeStopwords(stemmed);
+        return lengthFilter(stopwordsRemoved2, 2).trim();
+    }
+
+    private static String cleanCharacters(String input) {
+        // Replace hyphens with spaces to split words like "content-type"
+        String hyphenAsSpace = input.replace("-", " ");
+        String cleaned = hyphenAsSpace
+                .replaceAll("[^a-zA-Z]", " ")
+                .replaceAll("\\s+", " ")
+                .trim();
+        // Special handling for acronyms must happen before lowercasing.
+        return cleaned.replaceAll("\\bUAVs\\b", "UAV");
+    }
+
+    private static String splitCamelCase(String s) {
+        String acronymProcessed = splitAcronyms(s);
+        return acronymProcessed
+                .replaceAll(
+                        String.format(
+                                "%s|%s|%s",
+                                "(?<=[A-Z])(?=[A-Z][a-z])", "(?<=[^A-Z])(?=[A-Z])", "(?<=[A-Za-z])(?=[^A-Za-z])"),
+                        " ")
+                .replaceAll("  ", " ");
+    }
+
+    private static String splitAcronyms(String input) {
+        List<String> words = new ArrayList<>();
+        for (String word : input.split("\\s+")) {
+            if (word.isEmpty()) continue;
+            StringBuilder currentWord = new StringBuilder();
+            for (int i = 0; i < word.length(); i++) {
+                char currentChar = word.charAt(i);
+                if (i > 0 && Character.isUpperCase(word.charAt(i - 1)) && currentChar == 's') {
+                    boolean isEndOfWord = (i == word.length() - 1);
+                    boolean isFollowedByUppercase = !isEndOfWord && Character.isUpperCase(word.charAt(i + 1));
+                    if (isEndOfWord || isFollowedByUppercase) {
+                        words.add(currentWord.toString());
+                        words.add("s");
+                        currentWord.setLength(0);
+                        continue;
+                    }
+                }
+                currentWord.append(currentChar);
+            }
+            if (currentWord.length() > 0) {
+                words.add(currentWord.toString());
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    private static String splitSnakeCase(String s) {
+        return s.replace("_", " ");
+    }
+
+    private static String lengthFilter(String input, int minLength) {
+        if (input == null || input.isBlank()) {
+            return "";
+        }
+        return Arrays.stream(input.split("\\s+"))
+                .filter(word -> word.length() >= minLength)
+                .collect(Collectors.joining(" "));
+    }
+
+    private static String removeStopwords(String text) {
+        if (STOPWORDS.isEmpty() || text == null || text.isBlank()) return text;
+        return Arrays.stream(text.split("\\s+"))
+                .filter(w -> !STOPWORDS.contains(w))
+                .collect(Collectors.joining(" "));
+    }
+
+    private static String stemText(String text) {
+        if (text == null || text.isBlank()) {
+            return "";
+        }
+        EnglishStemmer stemmer = new EnglishStemmer();
+        return Arrays.stream(text.split("\\s+"))
+                .map(word -> {
+                    stemmer.setCurrent(word.toLowerCase(Locale.ROOT));
+                    stemmer.stem();
+                    return stemmer.getCurrent();
+                })
+                .collect(Collectors.joining(" "));
+    }
+}
@@ -0,0 +1,35 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.text;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class StanfordLemmatizerTest {
+
+    @Test
+    @DisplayName("Test that batch lemmatization yields the lemmas of single texts, in input order")
+    void testLemmatizeAllMatchesLemmatize() {
+        List<String> texts = List.of(
+                "The mission planner shall manage pre-defined flight patterns.",
+                "When requested the VehicleCore shall transition the UAVs between states.",
+                "",
+                "The ground station sends the flight plans to the assigned UAV.",
+                "Drones were flying home because their batteries were low.");
+
+        System.setProperty(NlpParallelism.THREADS_PROPERTY, "3");
+        try {
+            List<String> batched = StanfordLemmatizer.lemmatizeAll(texts);
+
+            assertEquals(texts.size(), batched.size());
+            for (int i = 0; i < texts.size(); i++) {
+                assertEquals(StanfordLemmatizer.lemmatize(texts.get(i)), batched.get(i), texts.get(i));
+            }
+        } finally {
+            System.clearProperty(NlpParallelism.THREADS_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/* Licensed under MIT 2025. */
+package io.github.ardoco.triad.text;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TermCacheTest {
+
+    @Test
+    @DisplayName("Repeated keys are computed once and counted as hits")
+    void testRepeatedKeysHit() {
+        AtomicInteger computed = new AtomicInteger();
+        TermCache cache = new TermCache(
+                key -> {
+                    computed.incrementAndGet();
+                    return key.toUpperCase();
+                },
+                64);
+
+        assertEquals("FLIGHT", cache.apply("flight"));
+        assertEquals("FLIGHT", cache.apply("flight"));
+        assertEquals("ROUTE", cache.apply("route"));
+        assertEquals("FLIGHT", cache.apply("flight"));
+
+        assertEquals(2, computed.get());
+        TermCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(2, stats.size());
+        assertEquals(0.5, stats.hitRate(), 1e-12);
+    }
+
+    @Test
+    @DisplayName("The cache stays within its capacity")
+    void testEvictsBeyondCapacity() {
+        TermCache cache = new TermCache(key -> key, 32);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals("w" + i, cache.apply("w" + i));
+        }
+
+        TermCache.Stats stats = cache.stats();
+        assertTrue(stats.size() <= 32, "size " + stats.size());
+        assertEquals(1000 - stats.size(), stats.evictions());
+    }
+
+    @Test
+    @DisplayName("Cached word processing matches the uncached regex pipeline")
+    void testProcessWordCached() {
+        String[] words = {"getUAVState", "UAVs", "flight_route", "XMLHttpRequest", "naïveRoute"};
+        for (String word : words) {
+            assertEquals(RegexTextProcessor.processWord(word), TextProcessor.processWord(word), word);
+        }
+        long hits = TextProcessor.getWordCache().stats().hits();
+
+        for (String word : words) {
+            assertEquals(RegexTextProcessor.processWord(word), TextProcessor.processWord(word), word);
+        }
+        assertTrue(TextProcessor.getWordCache().stats().hits() >= hits + words.length);
+    }
+}
@@ -3,8 +3,15 @@ package io.github.ardoco.triad.text;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.IntStream;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.tartarus.snowball.ext.EnglishStemmer;
 
 /**
  * Tests the {@link TextProcessor} to ensure its output matches the intermediate
@@ -83,4 +90,62 @@ class TextProcessorTest {
         String actualProcessedIdentifier = TextProcessor.processIdentifier(rawIdentifier);
         assertEquals(expectedProcessedIdentifier, actualProcessedIdentifier);
     }
+
+    @Test
+    @DisplayName("Test splitting of acronyms, camel case and snake case")
+    void testProcessWord_SplitsAcronymsAndCases() {
+        assertEquals("xml http request", TextProcessor.processWord("XMLHttpRequest"));
+        assertEquals("uav", TextProcessor.processWord("UAVs"));
+        assertEquals("uav state", TextProcessor.processWord("uav_State"));
+    }
+
+    @Test
+    @DisplayName("Test that text and word processing match the former regex pipeline on random input")
+    void testProcessText_MatchesRegexReference() {
+        // Fragments run into each other when the separator is empty, e.g. "UAVsflight_route" or "GrößegetUavState".
+        String[] fragments = {
+            "UAV", "UAVs", "UAVsState", "uav", "XMLHttpRequest", "HTTPServer", "getUavState", "FlightManagerService",
+            "flight_route", "_VehicleCore_", "snake_Case_name", "route2", "v2X", "Größe", "naïve", "ÄRZTE", "façade",
+            "the", "shall", "a", "s", "S", "sS", "content-type", "pre-defined", "routes", "planning", "x"
+        };
+        String[] separators = {"", "", " ", "  ", "\t", "\n", "-", "_", ".", ", ", "; ", "2", "é", "\u00a0"};
+        Random random = new Random(21);
+        for (int n = 0; n < 5_000; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int piece = random.nextInt(8); piece >= 0; piece--) {
+                text.append(fragments[random.nextInt(fragments.length)]);
+                text.append(separators[random.nextInt(separators.length)]);
+            }
+            String rawText = text.toString();
+            String expected = RegexTextProcessor.processText(rawText);
+
+            assertEquals(expected, TextProcessor.processText(rawText), rawText);
+            List<String> terms = new ArrayList<>();
+            TextProcessor.processText(rawText, terms::add);
+            assertEquals(expected, String.join(" ", terms), rawText);
+            for (String word : rawText.split(" ")) {
+                assertEquals(RegexTextProcessor.processWord(word), TextProcessor.processWord(word), word);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Test that concurrent stemming matches a single stemmer")
+    void testStem_ConcurrentMatchesSequential() {
+        String[] suffixes = {"ing", "ed", "ations", "ness", "ly", "s", "ers", "ization"};
+        List<String> words = IntStream.range(0, 20_000)
+                .mapToObj(i -> "route" + Integer.toString(i, 26).replaceAll("[0-9]", "x") + suffixes[i % suffixes.length])
+                .toList();
+        EnglishStemmer reference = new EnglishStemmer();
+        List<String> expected = words.stream()
+                .map(word -> {
+                    reference.setCurrent(word.toLowerCase(Locale.ROOT));
+                    reference.stem();
+                    return reference.getCurrent();
+                })
+                .toList();
+
+        List<String> actual = words.parallelStream().map(Stemmer::stem).toList();
+        assertEquals(expected, actual);
+    }
 }